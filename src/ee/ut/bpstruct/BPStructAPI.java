@@ -73,6 +73,24 @@ public class BPStructAPI {
 	 * @return true if process is structured
 	 */
 	public static boolean checkStructure(Process process) {
+		return new StructureChecker().isStructured(process);
+	}
+	
+	/**
+	 * Check, in parallel, if the processes are already structured.
+	 * @param processes to check
+	 * @return for each process, true if it is structured
+	 */
+	public static boolean[] checkStructure(List<Process> processes) {
+		return StructureChecker.areStructured(processes);
+	}
+	
+	/**
+	 * Check if a process is already structured, by computing the RPST of a copy of the process.
+	 * @param process to check
+	 * @return true if process is structured
+	 */
+	static boolean checkStructureWithRPST(Process process) {
 		Process copy = null;
 		try {
 			copy = (Process) process.clone();
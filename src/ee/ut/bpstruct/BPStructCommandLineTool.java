@@ -1,19 +1,16 @@
 package ee.ut.bpstruct;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import de.hpi.bpt.process.Process;
 import de.hpi.bpt.process.checks.structural.ProcessStructureChecker;
-import de.hpi.bpt.process.serialize.JSON2Process;
-import de.hpi.bpt.process.serialize.Process2DOT;
-import de.hpi.bpt.process.serialize.Process2JSON;
 import de.hpi.bpt.process.serialize.SerializationException;
+import ee.ut.bpstruct.util.DOTProcessWriter;
+import ee.ut.bpstruct.util.JSONProcessReader;
+import ee.ut.bpstruct.util.JSONProcessWriter;
 
 /**
  * This Class wraps the functionality of the {@link BPStructAPI}
@@ -108,19 +105,11 @@ public class BPStructCommandLineTool {
 	 * @return loaded {@link Process} or null if loading failed
 	 */
 	public static Process loadProcess(String filename) {
-		StringBuilder sb = new StringBuilder();
+		Process process = null;
 		try {
-			BufferedReader reader = new BufferedReader(new FileReader(filename));
-			String line;
-			while ((line = reader.readLine()) != null)
-				sb.append(line);
-			reader.close();
+			process = JSONProcessReader.parse(new File(filename));
 		} catch (IOException e) {
 			System.err.println("ERROR: Couldn't open file: " + filename);
-		}
-		Process process = null;
-		try {
-			process = JSON2Process.convert(sb.toString());
 		} catch (SerializationException e) {
 			System.err.println(e.getMessage());
 		}
@@ -133,8 +122,11 @@ public class BPStructCommandLineTool {
 	 * @param filename
 	 */
 	public static void writeDot(Process process, String filename) {
-		String content = Process2DOT.convert(process);
-		writeContent(content, filename);
+		try {
+			DOTProcessWriter.write(process, new File(filename));
+		} catch (IOException e) {
+			System.err.println("ERROR: Couldn't write file: " + filename);
+		}
 	}
 	
 	/**
@@ -143,32 +135,17 @@ public class BPStructCommandLineTool {
 	 * @param filename
 	 */
 	public static void writeProcess(Process process, String filename) {
-		String json = null;
+		File file = new File(filename);
 		try {
-			json = Process2JSON.convert(process);
+			JSONProcessWriter.write(process, file);
 		} catch (SerializationException e) {
 			System.err.println("ERROR: " + e.getMessage());
+			file.delete();
+		} catch (IOException e) {
+			System.err.println("ERROR: Couldn't write file: " + filename);
 		}
-		writeContent(json, filename);
 	}	
 	
-	/**
-	 * Writes the given String content to the given file.
-	 * @param content to write
-	 * @param filename
-	 */
-	public static void writeContent(String content, String filename) {
-		if (content != null) {
-			try {
-				BufferedWriter writer = new BufferedWriter(new FileWriter(filename));
-				writer.write(content);
-				writer.close();
-			} catch (IOException e) {
-				System.err.println("ERROR: Couldn't write file: " + filename);
-			}
-		}
-	}
-	
 	/**
 	 * Structures the given {@link Process}.
 	 * @param {@link Process} to structure
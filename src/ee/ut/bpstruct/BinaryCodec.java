@@ -0,0 +1,366 @@
+package ee.ut.bpstruct;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.hpi.bpt.process.ControlFlow;
+import de.hpi.bpt.process.Gateway;
+import de.hpi.bpt.process.GatewayType;
+import de.hpi.bpt.process.Node;
+import de.hpi.bpt.process.Process;
+import de.hpi.bpt.process.Task;
+import de.hpi.bpt.process.serialize.SerializationException;
+
+/**
+ * Compact binary format for process models and structuring results, meant for corpora that are
+ * loaded again and again. A file is made of
+ *
+ *   header: magic "BPSB", format version (1 byte), record kind (1 byte: 1 process, 2 result)
+ *   result: flags (1 byte: structured, changed, has a process), followed by the process if any
+ *   process: string table, name, id, nodes {kind, id, name, description} and control flow {source, target, label}
+ *
+ * Integers are unsigned varints. Every distinct string (ids are typically long UUIDs, labels are
+ * repeated) is stored once in the string table, in UTF-8, and is referred to by its position
+ * (0 stands for null). Decoding reads directly from a buffer, e.g. a memory-mapped file, and
+ * creates a single String per table entry.
+ */
+public class BinaryCodec {
+	public static final int VERSION = 1;
+
+	private static final byte[] MAGIC = {'B', 'P', 'S', 'B'};
+	private static final int PROCESS = 1;
+	private static final int RESULT = 2;
+
+	private static final int STRUCTURED = 1;
+	private static final int CHANGED = 2;
+	private static final int HAS_PROCESS = 4;
+
+	// Node kinds: tasks, then gateways by type
+	private static final int TASK = 0;
+	private static final GatewayType[] GATEWAY_TYPES = GatewayType.values();
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * @return true if the buffer (from its position) starts with the header of this format
+	 */
+	public static boolean isBinary(ByteBuffer buffer) {
+		if (buffer.remaining() < MAGIC.length) return false;
+		for (int i = 0; i < MAGIC.length; i++)
+			if (buffer.get(buffer.position() + i) != MAGIC[i])
+				return false;
+		return true;
+	}
+
+	public static boolean isBinary(File file) throws IOException {
+		FileInputStream stream = new FileInputStream(file);
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate(MAGIC.length);
+			FileChannel channel = stream.getChannel();
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0);
+			buffer.flip();
+			return isBinary(buffer);
+		} finally {
+			stream.close();
+		}
+	}
+
+	// ------------------------------------------------------------------
+	// Encoding
+
+	public static ByteBuffer encode(Process process) {
+		Output out = new Output();
+		out.header(PROCESS);
+		writeProcess(out, process);
+		return out.toBuffer();
+	}
+
+	public static ByteBuffer encode(BPStructResult result) {
+		Output out = new Output();
+		out.header(RESULT);
+		Process process = result.getProcess();
+		out.writeInt((result.isStructured() ? STRUCTURED : 0) | (result.hasChanged() ? CHANGED : 0)
+				| (process != null ? HAS_PROCESS : 0));
+		if (process != null)
+			writeProcess(out, process);
+		return out.toBuffer();
+	}
+
+	public static void write(Process process, File file) throws IOException {
+		write(encode(process), file);
+	}
+
+	public static void write(BPStructResult result, File file) throws IOException {
+		write(encode(result), file);
+	}
+
+	private static void write(ByteBuffer buffer, File file) throws IOException {
+		FileOutputStream stream = new FileOutputStream(file);
+		try {
+			write(buffer, stream.getChannel());
+		} finally {
+			stream.close();
+		}
+	}
+
+	public static void write(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+
+	private static void writeProcess(Output out, Process process) {
+		// String table, in order of first use
+		Map<String, Integer> strings = new HashMap<String, Integer>();
+		List<String> table = new ArrayList<String>();
+		Collection<Node> nodes = process.getVertices();
+		Collection<ControlFlow> flows = process.getControlFlow();
+		intern(strings, table, process.getName());
+		intern(strings, table, process.getId());
+		for (Node node: nodes) {
+			intern(strings, table, node.getId());
+			intern(strings, table, node.getName());
+			intern(strings, table, node.getDescription());
+		}
+		for (ControlFlow flow: flows)
+			intern(strings, table, flow.getLabel());
+
+		out.writeInt(table.size());
+		for (String string: table)
+			out.writeString(string);
+
+		out.writeInt(ref(strings, process.getName()));
+		out.writeInt(ref(strings, process.getId()));
+		Map<Node, Integer> index = new HashMap<Node, Integer>();
+		out.writeInt(nodes.size());
+		for (Node node: nodes) {
+			index.put(node, index.size());
+			out.writeInt(kind(node));
+			out.writeInt(ref(strings, node.getId()));
+			out.writeInt(ref(strings, node.getName()));
+			out.writeInt(ref(strings, node.getDescription()));
+		}
+		out.writeInt(flows.size());
+		for (ControlFlow flow: flows) {
+			out.writeInt(index.get(flow.getSource()));
+			out.writeInt(index.get(flow.getTarget()));
+			out.writeInt(ref(strings, flow.getLabel()));
+		}
+	}
+
+	private static int kind(Node node) {
+		if (node instanceof Gateway)
+			return 1 + ((Gateway) node).getGatewayType().ordinal();
+		if (node instanceof Task)
+			return TASK;
+		throw new IllegalArgumentException("Cannot encode node " + node + " of " + node.getClass());
+	}
+
+	private static void intern(Map<String, Integer> strings, List<String> table, String string) {
+		if (string != null && !strings.containsKey(string)) {
+			table.add(string);
+			strings.put(string, table.size());
+		}
+	}
+
+	private static int ref(Map<String, Integer> strings, String string) {
+		return string == null ? 0 : strings.get(string);
+	}
+
+	private static class Output {
+		private byte[] bytes = new byte[1024];
+		private int size = 0;
+
+		private void ensure(int count) {
+			if (size + count > bytes.length)
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + count));
+		}
+
+		void header(int kind) {
+			ensure(MAGIC.length + 2);
+			System.arraycopy(MAGIC, 0, bytes, size, MAGIC.length);
+			size += MAGIC.length;
+			bytes[size++] = VERSION;
+			bytes[size++] = (byte) kind;
+		}
+
+		void writeInt(int value) {
+			ensure(5);
+			while ((value & ~0x7f) != 0) {
+				bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			bytes[size++] = (byte) value;
+		}
+
+		void writeString(String string) {
+			byte[] encoded = string.getBytes(UTF8);
+			writeInt(encoded.length);
+			ensure(encoded.length);
+			System.arraycopy(encoded, 0, bytes, size, encoded.length);
+			size += encoded.length;
+		}
+
+		ByteBuffer toBuffer() {
+			return ByteBuffer.wrap(bytes, 0, size);
+		}
+	}
+
+	// ------------------------------------------------------------------
+	// Decoding
+
+	/**
+	 * Decodes a process from the position of the buffer, which is left after the process
+	 */
+	public static Process decodeProcess(ByteBuffer buffer) throws SerializationException {
+		try {
+			header(buffer, PROCESS);
+			return readProcess(buffer);
+		} catch (BufferUnderflowException e) {
+			throw new SerializationException("Truncated binary model");
+		}
+	}
+
+	/**
+	 * Decodes a structuring result from the position of the buffer, which is left after the result
+	 */
+	public static BPStructResult decodeResult(ByteBuffer buffer) throws SerializationException {
+		try {
+			header(buffer, RESULT);
+			int flags = readInt(buffer);
+			BPStructResult result = new BPStructResult();
+			result.isStructured = (flags & STRUCTURED) != 0;
+			result.hasChanged = (flags & CHANGED) != 0;
+			if ((flags & HAS_PROCESS) != 0)
+				result.proc = readProcess(buffer);
+			return result;
+		} catch (BufferUnderflowException e) {
+			throw new SerializationException("Truncated binary model");
+		}
+	}
+
+	public static Process readProcess(File file) throws IOException, SerializationException {
+		return decodeProcess(map(file));
+	}
+
+	public static BPStructResult readResult(File file) throws IOException, SerializationException {
+		return decodeResult(map(file));
+	}
+
+	private static ByteBuffer map(File file) throws IOException {
+		FileInputStream stream = new FileInputStream(file);
+		try {
+			FileChannel channel = stream.getChannel();
+			// The mapping remains valid once the channel is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			stream.close();
+		}
+	}
+
+	private static void header(ByteBuffer buffer, int kind) throws SerializationException {
+		if (!isBinary(buffer))
+			throw new SerializationException("Not a binary model");
+		buffer.position(buffer.position() + MAGIC.length);
+		int version = buffer.get() & 0xff;
+		if (version > VERSION)
+			throw new SerializationException("Unsupported version of the binary format: " + version);
+		int found = buffer.get() & 0xff;
+		if (found != kind)
+			throw new SerializationException("Unexpected record kind: " + found);
+	}
+
+	private static Process readProcess(ByteBuffer buffer) throws SerializationException {
+		String[] table = new String[readCount(buffer) + 1];
+		for (int i = 1; i < table.length; i++) {
+			int length = readInt(buffer);
+			if (length > buffer.remaining())
+				throw new BufferUnderflowException();
+			ByteBuffer slice = buffer.duplicate();
+			slice.limit(buffer.position() + length);
+			table[i] = UTF8.decode(slice).toString();
+			buffer.position(buffer.position() + length);
+		}
+
+		Process process = new Process(string(table, readInt(buffer)));
+		String id = string(table, readInt(buffer));
+		if (id != null)
+			process.setId(id);
+		Node[] nodes = new Node[readCount(buffer)];
+		for (int i = 0; i < nodes.length; i++) {
+			int kind = readInt(buffer);
+			if (kind == TASK)
+				nodes[i] = new Task();
+			else if (kind <= GATEWAY_TYPES.length)
+				nodes[i] = new Gateway(GATEWAY_TYPES[kind - 1]);
+			else
+				throw new SerializationException("Unknown node kind: " + kind);
+			String nodeId = string(table, readInt(buffer));
+			if (nodeId == null)
+				throw new SerializationException("Missing node id");
+			nodes[i].setId(nodeId);
+			nodes[i].setName(string(table, readInt(buffer)));
+			nodes[i].setDescription(string(table, readInt(buffer)));
+		}
+		process.addVertices(Arrays.asList(nodes));
+		int flows = readCount(buffer);
+		for (int i = 0; i < flows; i++) {
+			Node source = node(nodes, readInt(buffer));
+			Node target = node(nodes, readInt(buffer));
+			String label = string(table, readInt(buffer));
+			ControlFlow flow = process.addControlFlow(source, target);
+			if (flow != null)
+				flow.setLabel(label);
+		}
+		return process;
+	}
+
+	private static String string(String[] table, int ref) throws SerializationException {
+		if (ref >= table.length)
+			throw new SerializationException("Invalid string reference: " + ref);
+		return table[ref];
+	}
+
+	private static Node node(Node[] nodes, int ref) throws SerializationException {
+		if (ref >= nodes.length)
+			throw new SerializationException("Invalid node reference: " + ref);
+		return nodes[ref];
+	}
+
+	/**
+	 * Reads the number of elements of a sequence. Every element takes at least one byte, so a count
+	 * larger than the rest of the input is rejected before anything is allocated for it.
+	 */
+	private static int readCount(ByteBuffer buffer) throws SerializationException {
+		int count = readInt(buffer);
+		if (count > buffer.remaining())
+			throw new SerializationException("Invalid element count: " + count);
+		return count;
+	}
+
+	private static int readInt(ByteBuffer buffer) throws SerializationException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = buffer.get();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				if (value < 0)
+					throw new SerializationException("Invalid integer");
+				return value;
+			}
+		}
+		throw new SerializationException("Invalid integer");
+	}
+}
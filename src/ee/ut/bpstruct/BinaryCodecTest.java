@@ -0,0 +1,168 @@
+package ee.ut.bpstruct;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import de.hpi.bpt.process.ControlFlow;
+import de.hpi.bpt.process.Gateway;
+import de.hpi.bpt.process.GatewayType;
+import de.hpi.bpt.process.Node;
+import de.hpi.bpt.process.Process;
+import de.hpi.bpt.process.Task;
+import de.hpi.bpt.process.serialize.SerializationException;
+
+public class BinaryCodecTest extends TestCase {
+
+	private static Process createProcess() {
+		Process process = new Process("M\u00fcller");
+		Task a = new Task("A");
+		a.setId("oryx_A");
+		Task b = new Task("B", "second task");
+		b.setId("oryx_B");
+		Gateway split = new Gateway(GatewayType.OR, "");
+		split.setId("oryx_split");
+		Gateway join = new Gateway(GatewayType.UNDEFINED, "");
+		join.setId("oryx_join");
+		process.addControlFlow(a, split);
+		process.addControlFlow(split, b).setLabel("x > 1");
+		process.addControlFlow(split, join).setLabel("x > 1");
+		process.addControlFlow(b, join);
+		return process;
+	}
+
+	public void testProcess() throws Exception {
+		Process process = createProcess();
+		ByteBuffer buffer = BinaryCodec.encode(process);
+		assertTrue(BinaryCodec.isBinary(buffer));
+		Process copy = BinaryCodec.decodeProcess(buffer);
+		assertFalse(buffer.hasRemaining());
+
+		assertEquals(process.getName(), copy.getName());
+		assertEquals(4, copy.getVertices().size());
+		assertEquals(4, copy.getControlFlow().size());
+		for (Node node: copy.getVertices()) {
+			Node original = find(process, node.getId());
+			assertEquals(original.getClass(), node.getClass());
+			assertEquals(original.getName(), node.getName());
+			assertEquals(original.getDescription(), node.getDescription());
+			if (node instanceof Gateway)
+				assertEquals(((Gateway) original).getGatewayType(), ((Gateway) node).getGatewayType());
+		}
+		for (ControlFlow flow: copy.getControlFlow()) {
+			boolean found = false;
+			for (ControlFlow original: process.getControlFlow())
+				if (original.getSource().getId().equals(flow.getSource().getId())
+						&& original.getTarget().getId().equals(flow.getTarget().getId())) {
+					assertEquals(original.getLabel(), flow.getLabel());
+					found = true;
+				}
+			assertTrue(found);
+		}
+	}
+
+	public void testResult() throws Exception {
+		BPStructResult result = new BPStructResult();
+		result.isStructured = true;
+		BPStructResult copy = BinaryCodec.decodeResult(BinaryCodec.encode(result));
+		assertTrue(copy.isStructured());
+		assertFalse(copy.hasChanged());
+		assertNull(copy.getProcess());
+
+		result.proc = createProcess();
+		result.hasChanged = true;
+		copy = BinaryCodec.decodeResult(BinaryCodec.encode(result));
+		assertTrue(copy.hasChanged());
+		assertEquals(4, copy.getProcess().getVertices().size());
+	}
+
+	public void testErrors() throws Exception {
+		ByteBuffer buffer = BinaryCodec.encode(createProcess());
+		buffer.limit(buffer.limit() - 1);
+		assertError(buffer, "Truncated binary model");
+
+		buffer = BinaryCodec.encode(createProcess());
+		buffer.put(buffer.position() + 4, (byte) (BinaryCodec.VERSION + 1));
+		assertError(buffer, "Unsupported version of the binary format: " + (BinaryCodec.VERSION + 1));
+
+		assertError(BinaryCodec.encode(new BPStructResult()), "Unexpected record kind: 2");
+		assertError(ByteBuffer.wrap("{}".getBytes()), "Not a binary model");
+	}
+
+	public void testInvalidCounts() throws Exception {
+		// String table of 2^31 - 1 entries
+		assertError(process(0xff, 0xff, 0xff, 0xff, 0x07), "Invalid element count: 2147483647");
+		// Empty string table, no name nor id, and more nodes than bytes left
+		assertError(process(0, 0, 0, 100, 0, 0, 0, 0), "Invalid element count: 100");
+		// One node without id
+		assertError(process(0, 0, 0, 1, 0, 0, 0, 0, 0), "Missing node id");
+		// One node with id "n", and more flows than bytes left
+		assertError(process(1, 1, 'n', 0, 0, 1, 0, 1, 0, 0, 50), "Invalid element count: 50");
+	}
+
+	public void testGarbage() throws Exception {
+		byte[] encoded = bytes(BinaryCodec.encode(createProcess()));
+		// Every truncation of a valid model
+		for (int length = 0; length < encoded.length; length++)
+			assertRejected(ByteBuffer.wrap(encoded, 0, length));
+
+		// Random bytes after a valid header, and random corruptions of a valid model
+		Random random = new Random(1);
+		for (int k = 0; k < 2000; k++) {
+			byte[] garbage = new byte[6 + random.nextInt(64)];
+			random.nextBytes(garbage);
+			System.arraycopy(encoded, 0, garbage, 0, 6);
+			assertRejected(ByteBuffer.wrap(garbage));
+
+			byte[] corrupt = encoded.clone();
+			for (int i = random.nextInt(4); i >= 0; i--)
+				corrupt[6 + random.nextInt(corrupt.length - 6)] = (byte) random.nextInt(256);
+			try {
+				BinaryCodec.decodeProcess(ByteBuffer.wrap(corrupt));
+			} catch (SerializationException e) {
+				// expected for most corruptions
+			}
+		}
+	}
+
+	private static ByteBuffer process(int... body) {
+		byte[] bytes = {'B', 'P', 'S', 'B', BinaryCodec.VERSION, 1};
+		ByteBuffer buffer = ByteBuffer.allocate(bytes.length + body.length);
+		buffer.put(bytes);
+		for (int b: body)
+			buffer.put((byte) b);
+		buffer.flip();
+		return buffer;
+	}
+
+	private static byte[] bytes(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	private static void assertRejected(ByteBuffer buffer) {
+		try {
+			BinaryCodec.decodeProcess(buffer);
+			fail();
+		} catch (SerializationException e) {
+			assertNotNull(e.getMessage());
+		}
+	}
+
+	private static void assertError(ByteBuffer buffer, String message) {
+		try {
+			BinaryCodec.decodeProcess(buffer);
+			fail();
+		} catch (SerializationException e) {
+			assertEquals(message, e.getMessage());
+		}
+	}
+
+	private static Node find(Process process, String id) {
+		for (Node node: process.getVertices())
+			if (node.getId().equals(id))
+				return node;
+		return null;
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2011 - Luciano Garcia Banuelos, Artem Polyvyanyy, Dirk Fahland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ee.ut.bpstruct;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import ee.ut.graph.util.BronKerbosch;
+
+/**
+ * Computes the conditions of the occurrence net synthesized by MaxStr (i.e. set B). For each
+ * event "e", there is one condition <e, ce> for every maximal conflict clique "ce" within the
+ * (reduced or implicit) flow successors of "e".
+ *
+ * Events are independent from each other, so they are processed in parallel on a fork-join pool
+ * (the pool of the caller if it already runs on one, otherwise the pool given to the constructor).
+ * Workers do not touch the Petri net: they only produce condition descriptors, which are returned
+ * in the order of the events, such that the places can be created deterministically.
+ */
+public class ConditionBuilder {
+	private static final int SEQUENTIAL_THRESHOLD = 16;
+
+	public static class Condition {
+		public final int event;
+		public final BitSet conflictSet;
+		public final String label;
+		public final int successors;
+		public final boolean implicit;
+
+		Condition(int event, BitSet conflictSet, String label, int successors, boolean implicit) {
+			this.event = event;
+			this.conflictSet = conflictSet;
+			this.label = label;
+			this.successors = successors;
+			this.implicit = implicit;
+		}
+	}
+
+	private BitSet[] conflict;
+	private BitSet[] flow;
+	private BitSet[] implicit;
+	private String[] labels;
+	private int limit;
+	private ForkJoinPool pool;
+
+	/**
+	 * @param conflict Conflict relation: conflict[e] is the set of events in conflict with e
+	 * @param flow Flow successors (reduced and implicit) of each event
+	 * @param implicit Implicit flow successors of each event
+	 * @param labels Original label of each event
+	 * @param limit Maximum number of conflict sets per event
+	 * @param pool Pool on which the events are processed (ForkJoinPool.commonPool() if null)
+	 */
+	public ConditionBuilder(BitSet[] conflict, BitSet[] flow, BitSet[] implicit, String[] labels, int limit, ForkJoinPool pool) {
+		this.conflict = conflict;
+		this.flow = flow;
+		this.implicit = implicit;
+		this.labels = labels;
+		this.limit = limit;
+		this.pool = pool == null ? ForkJoinPool.commonPool() : pool;
+	}
+
+	/**
+	 * @param events Events, in the order in which their conditions must be reported
+	 * @return the conditions of all the events, grouped by event and following the order of "events"
+	 */
+	public List<Condition> build(int[] events) throws CannotStructureException {
+		List<List<Condition>> conditions = new ArrayList<List<Condition>>(events.length);
+		for (int i = 0; i < events.length; i++)
+			conditions.add(null);
+
+		BuildTask task = new BuildTask(events, 0, events.length, conditions);
+		if (events.length <= SEQUENTIAL_THRESHOLD)
+			task.compute();
+		else if (ForkJoinTask.inForkJoinPool())
+			task.invoke();
+		else
+			pool.invoke(task);
+
+		List<Condition> result = new LinkedList<Condition>();
+		for (int i = 0; i < events.length; i++) {
+			if (conditions.get(i) == null)
+				throw new CannotStructureException("FAIL: Too many conflict sets for event " + events[i] + " (limit: " + limit + ")");
+			result.addAll(conditions.get(i));
+		}
+		return result;
+	}
+
+	private List<Condition> conditionsOf(int e, BronKerbosch cliques) {
+		List<BitSet> conflictSets = new LinkedList<BitSet>();
+		if (!cliques.enumerate(flow[e], conflictSets))
+			return null;
+
+		List<Condition> result = new ArrayList<Condition>(conflictSets.size());
+		StringBuilder buff = new StringBuilder();
+		for (BitSet ce: conflictSets) {
+			// translate the IDs of the defining events to the labels
+			// so that conditions are consistently labeled throughout the occurrence net
+			// then we can identify equivalent conditions based on their labels
+			buff.setLength(0);
+			buff.append('(').append(labels[e]);
+			for (int e2 = ce.nextSetBit(0); e2 >= 0; e2 = ce.nextSetBit(e2 + 1))
+				buff.append(',').append(labels[e2]);
+			buff.append(')');
+
+			result.add(new Condition(e, ce, buff.toString(), ce.cardinality(), ce.intersects(implicit[e])));
+		}
+		return result;
+	}
+
+	private class BuildTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private int[] events;
+		private int from, to;
+		private List<List<Condition>> conditions;
+
+		BuildTask(int[] events, int from, int to, List<List<Condition>> conditions) {
+			this.events = events;
+			this.from = from;
+			this.to = to;
+			this.conditions = conditions;
+		}
+
+		protected void compute() {
+			if (to - from <= SEQUENTIAL_THRESHOLD) {
+				BronKerbosch cliques = new BronKerbosch(conflict);
+				cliques.setLimit(limit);
+				for (int i = from; i < to; i++)
+					conditions.set(i, conditionsOf(events[i], cliques));
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new BuildTask(events, from, middle, conditions),
+						new BuildTask(events, middle, to, conditions));
+			}
+		}
+	}
+}
@@ -5,6 +5,7 @@ import hub.top.petrinet.PetriNet;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import de.hpi.bpt.process.ControlFlow;
 import de.hpi.bpt.process.Node;
@@ -20,6 +21,26 @@ public interface Helper {
 
 	Set<Node> getLabeledElements();
 
+	/**
+	 * @return maximum size of a cyclic rigid restructured by node splitting (0 disables node splitting)
+	 */
+	int getNodeSplittingLimit();
+
+	/**
+	 * @return maximum number of conflict sets computed per event when synthesizing a primitive (see MaxStr)
+	 */
+	int getConflictSetLimit();
+
+	/**
+	 * @return pool on which independent parts of the restructuring are computed in parallel
+	 */
+	ForkJoinPool getForkJoinPool();
+
+	/**
+	 * @return minimum number of edges of a set of sibling fragments of an unfolding to be structured in parallel
+	 */
+	int getParallelThreshold();
+
 	Set<Pair> flattenEdgeSet(Collection<ControlFlow> edges);
 
 	void foldRigidComponent(Set<Pair> ledges, Set<Node> vertices, Node entry,
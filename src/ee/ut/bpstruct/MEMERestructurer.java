@@ -14,6 +14,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
 
 import de.hpi.bpt.graph.abs.AbstractDirectedEdge;
 import de.hpi.bpt.graph.algo.rpst.RPST;
@@ -44,6 +45,7 @@ public class MEMERestructurer implements Helper {
 
 	private ProcessUtils putils;
 	private RPST<ControlFlow, Node> rpst;
+	private int conflictSetLimit = Integer.MAX_VALUE;
 	
 	public MEMERestructurer(Process proc) {
 		this.proc = proc;
@@ -220,6 +222,8 @@ public class MEMERestructurer implements Helper {
 
 					Pair pair = new Pair();
 					MaxStr maxstr = new MaxStr();
+					maxstr.setConflictSetLimit(getConflictSetLimit());
+					maxstr.setForkJoinPool(getForkJoinPool());
 					Process innerProc = new Process();
 					maxstr.perform(subgraph, taskspp, clonesp, innerProc, pair);
 	
@@ -577,6 +581,29 @@ public class MEMERestructurer implements Helper {
 		ledges.add(new Pair(placeHolder, exit));
 	}
 
+	public int getNodeSplittingLimit() {
+		return 0;
+	}
+
+	public int getConflictSetLimit() {
+		return conflictSetLimit;
+	}
+
+	public ForkJoinPool getForkJoinPool() {
+		return ForkJoinPool.commonPool();
+	}
+
+	public int getParallelThreshold() {
+		return UnfoldingRestructurer.DEFAULT_PARALLEL_THRESHOLD;
+	}
+
+	/**
+	 * @see Restructurer#setConflictSetLimit(int)
+	 */
+	public void setConflictSetLimit(int limit) {
+		this.conflictSetLimit = limit;
+	}
+
 	public Set<Node> getLabeledElements() {
 		return labeledElements;
 	}
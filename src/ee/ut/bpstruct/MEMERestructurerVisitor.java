@@ -3,15 +3,14 @@ package ee.ut.bpstruct;
 import hub.top.petrinet.PetriNet;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import de.hpi.bpt.process.Node;
 import de.hpi.bpt.process.Process;
 import ee.ut.bpstruct.jbpt.Pair;
-import ee.ut.bpstruct.util.DFSLabeler;
-import ee.ut.bpstruct.util.GraphUtils;
+import ee.ut.bpstruct.util.Fragment;
+import ee.ut.bpstruct.util.FragmentClassifier;
 
 public class MEMERestructurerVisitor extends RestructurerVisitor {
 	
@@ -25,18 +24,18 @@ public class MEMERestructurerVisitor extends RestructurerVisitor {
 	public void visitRigid(Process proc, Set<Pair> edges,
 			Set<Node> vertices, Node entry, Node exit) throws CannotStructureException {
 		System.out.println("Found a rigid");
-		Map<Node, List<Node>> adjlist = GraphUtils.edgelist2adjlist(edges, exit);
-		DFSLabeler labeler =  new DFSLabeler(adjlist, entry);
+		Fragment<Node> fragment = Fragment.fromPairs(edges);
+		FragmentClassifier<Node> classifier = new FragmentClassifier<Node>(fragment, entry, FragmentClassifier.GATEWAY_TYPE);
 
-		if (labeler.isCyclic()) {
+		if (classifier.isCyclic()) {
 //			restructureCyclicRigid(proc, edges, vertices, entry, exit);
 			throw new CannotStructureException("Cyclic structuring is not supported for MEME models");
 		} else
-			restructureAcyclicRigid(proc, edges, vertices, entry, exit, adjlist);
+			restructureAcyclicRigid(proc, edges, vertices, entry, exit, fragment);
 	}
 
 	public void restructureAcyclicRigid(Process proc, Set<Pair> edges,
-			Set<Node> vertices, Node entry, Node exit, Map<Node, List<Node>> adjlist) throws CannotStructureException {
+			Set<Node> vertices, Node entry, Node exit, Fragment<Node> fragment) throws CannotStructureException {
 		System.out.println("\tAcyclic rigid");
 		PetriNet net = helper.petrify(edges, vertices, entry, exit);
 		MEMEUnfolder unfolder = new MEMEUnfolder(net);
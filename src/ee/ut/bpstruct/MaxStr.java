@@ -31,10 +31,10 @@ import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import net.stixar.graph.BasicDigraph;
 import net.stixar.graph.Edge;
@@ -49,6 +49,7 @@ import de.hpi.bpt.process.Gateway;
 import de.hpi.bpt.process.GatewayType;
 import de.hpi.bpt.process.Process;
 import de.hpi.bpt.process.Task;
+import ee.ut.bpstruct.eventstruct.ConfGenerator;
 import ee.ut.bpstruct.eventstruct.RestrictedFlowEventStructure;
 import ee.ut.graph.moddec.ColoredGraph;
 
@@ -104,8 +105,45 @@ public class MaxStr {
 		}
 	}
 
+	private static final SynthesisCache cache = new SynthesisCache(SynthesisCache.DEFAULT_CAPACITY);
+	private int conflictSetLimit = Integer.MAX_VALUE;
+	private int maxLatticeSize = ConfGenerator.DEFAULT_MAX_SIZE;
+	private ForkJoinPool pool;
+
 	public MaxStr() {
 	}
+	
+	/**
+	 * Bounds the number of conflict sets (i.e. maximal conflict cliques) computed per event
+	 * during the synthesis. When the bound is exceeded, the synthesis is abandoned with a
+	 * CannotStructureException.
+	 */
+	public void setConflictSetLimit(int limit) {
+		this.conflictSetLimit = limit;
+	}
+
+	/**
+	 * Bounds the size of the configuration lattice explored to compute the prime event structure.
+	 * When the bound is exceeded, the synthesis is abandoned with a LatticeTooLargeException.
+	 */
+	public void setMaxLatticeSize(int maxLatticeSize) {
+		this.maxLatticeSize = maxLatticeSize;
+	}
+
+	/**
+	 * Pool on which the conditions of the synthesized net are computed (see ConditionBuilder).
+	 * By default, ForkJoinPool.commonPool() is used.
+	 */
+	public void setForkJoinPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * @return the cache of syntheses shared by all the instances of MaxStr
+	 */
+	public static SynthesisCache getSynthesisCache() {
+		return cache;
+	}
 
 	public String getModelName() {
 		return "model";
@@ -122,7 +160,30 @@ public class MaxStr {
 	 */
 	public void perform(ColoredGraph orgraph,
 			Map<String, de.hpi.bpt.process.Node> tasks,
-			Map<String, de.hpi.bpt.process.Node> clones, Process proc, ee.ut.bpstruct.jbpt.Pair pair) {
+			Map<String, de.hpi.bpt.process.Node> clones, Process proc, ee.ut.bpstruct.jbpt.Pair pair)
+			throws CannotStructureException {
+		// The synthesis only depends on the ordering relations graph up to vertex renaming
+		// (and on which vertices are mapped to the same task), so results are reused. The bounds are
+		// part of the key: a synthesis that succeeded under a larger bound must not be reused under a smaller one
+		SynthesisCache.Instance instance = cache.canonize(orgraph, tasks, clones, conflictSetLimit, maxLatticeSize);
+		if (instance != null) {
+			SynthesisCache.Template template = cache.get(instance);
+			if (template != null) {
+				template.instantiate(instance, proc, pair);
+				return;
+			}
+		}
+
+		synthesizeProcess(orgraph, tasks, clones, proc, pair);
+
+		if (instance != null)
+			cache.put(instance, SynthesisCache.Template.record(instance, proc, pair));
+	}
+
+	private void synthesizeProcess(ColoredGraph orgraph,
+			Map<String, de.hpi.bpt.process.Node> tasks,
+			Map<String, de.hpi.bpt.process.Node> clones, Process proc, ee.ut.bpstruct.jbpt.Pair pair)
+			throws CannotStructureException {
 
 		boolean hasConflict = false;
 		for (Integer v1: orgraph.getVertices())
@@ -206,6 +267,7 @@ public class MaxStr {
 			Map<String, String> labelMap = new HashMap<String, String>();
 			RestrictedFlowEventStructure fes = new RestrictedFlowEventStructure(
 					orgraph);
+			fes.setMaxLatticeSize(maxLatticeSize);
 			ColoredGraph primeEventStructure = fes.computePrimeEventStructure(
 					labelMap, getModelName());
 
@@ -327,7 +389,7 @@ public class MaxStr {
 	private PetriNet synthesize(ColoredGraph primeEventStructure,
 			Map<String, String> labelMap,
 			Map<String, de.hpi.bpt.process.Node> tasks,
-			Map<String, de.hpi.bpt.process.Node> clones) {
+			Map<String, de.hpi.bpt.process.Node> clones) throws CannotStructureException {
 		PetriNet pnet = new PetriNet();
 
 		Map<Integer, Set<Integer>> reducedFlow = new HashMap<Integer, Set<Integer>>();
@@ -351,35 +413,28 @@ public class MaxStr {
 	    // ---------------------------------------------------------
 	    // 2. COMPUTE CE
 	    // ---------------------------------------------------------
-	    
-	    
-	    Set<BitSet> CE = new HashSet<BitSet>();
-	    LinkedList<BitSet> queue = new LinkedList<BitSet>();
-	    for (Integer e : E.keySet()) { // add singletons
-	      BitSet singleton = new BitSet();
-	      singleton.set(e);
-	      CE.add(singleton);
-	      queue.add(singleton);
-	    }
-	    while (!queue.isEmpty()) {
-	      BitSet conflictSet = queue.removeFirst();
-	      for (Integer e : E.keySet()) {
-	        if (!conflictSet.get(e)) {
-	          boolean e_in_conflict_with_all = true;
-	          for (int e2 = conflictSet.nextSetBit(0); e2 >= 0; e2 = conflictSet.nextSetBit(e2 + 1)) {
-	            if (!(primeEventStructure.hasEdge(e, e2) && primeEventStructure.hasEdge(e2, e))) {
-	              // not in conflict ?
-	              e_in_conflict_with_all = false;
-	              break;
-	            }
-	          }
-	          if (e_in_conflict_with_all) {
-	            BitSet x = (BitSet)conflictSet.clone();
-	            x.set(e);
-	            CE.add(x);
-	            queue.add(x);
-	          }
-	        }
+	    // A set of events "ce" defines a condition <e, ce> only if "ce" is a conflict clique within
+	    // the (reduced or implicit) flow successors of "e". Non maximal cliques lead to conditions that
+	    // are removed later as subsumed conditions (cf. step 5), so only maximal cliques are computed.
+	    // The cliques are enumerated per event, together with the conditions in step 3.
+	    int size = 0;
+	    for (Integer e : E.keySet())
+	      if (e >= size) size = e + 1;
+	    BitSet[] conflict = new BitSet[size];
+	    BitSet[] flow = new BitSet[size];
+	    BitSet[] implicit = new BitSet[size];
+	    for (Integer e : E.keySet()) {
+	      conflict[e] = new BitSet();
+	      flow[e] = new BitSet();
+	      implicit[e] = new BitSet();
+	      for (Integer e2 : primeEventStructure.postSet(e))
+	        if (!e.equals(e2) && primeEventStructure.hasEdge(e2, e))
+	          conflict[e].set(e2);
+	      for (Integer e2 : reducedFlow.get(e))
+	        flow[e].set(e2);
+	      for (Integer e2 : implicitFlow.get(e)) {
+	        flow[e].set(e2);
+	        implicit[e].set(e2);
 	      }
 	    }
 	    
@@ -394,55 +449,30 @@ public class MaxStr {
 	    // ---------------------------------------------------------
 	    // 3. COMPUTE B
 	    // ---------------------------------------------------------
+	    // Conditions are computed in parallel (see ConditionBuilder) and then added to the net,
+	    // following the order of E
+	    String[] labels = new String[size];
+	    int[] events = new int[E.size()];
+	    int index = 0;
+	    for (Integer e : E.keySet()) {
+	      labels[e] = E.get(e).getName();
+	      events[index++] = e;
+	    }
+	    ConditionBuilder builder = new ConditionBuilder(conflict, flow, implicit, labels, conflictSetLimit, pool);
+	    
 	    Map<Pair, Place> B = new LinkedHashMap<Pair, Place>();
 	    Map<Place, Pair> B2 = new LinkedHashMap<Place,Pair>();
-	    for (Integer e : E.keySet()){
-	      for (BitSet ce : CE) {
-	        
-	        boolean isCondition = true;
-	        boolean isImplicit = false;
-	        for (Integer e2 = ce.nextSetBit(0);  e2 >= 0; e2 = ce.nextSetBit(e2 + 1)) {
-	          if (   !reducedFlow.get(e).contains(e2)
-	              && !implicitFlow.get(e).contains(e2)) isCondition = false;
-	          
-	          if (implicitFlow.get(e).contains(e2)) isImplicit = true;
-	          
-	          if (!isCondition) break;
-	        }
-
-	        if (isCondition) {
-	          Pair pair = new Pair(e, ce);
-
-	          String srcTransitionLabel = getOriginalLabel(labelMap.get(primeEventStructure.getLabel(e)), tasks, clones);
-
-	          // translate the IDs of the defining events to the labels
-	          // so that conditions are consistently labeled throughout the occurrence net
-	          // then we can identify equivalent conditions based on their labels
-	          String placeLabel = "("+srcTransitionLabel;
-	          
-	          int successors = 0;
-	          //String placeLabel = "(";
-	          for (int i=0; i<ce.length(); i++) {
-	            if (ce.get(i)) {
-	              String tgtTransitionLabel = getOriginalLabel(labelMap.get(primeEventStructure.getLabel(i)), tasks, clones);
-	              placeLabel += ","+tgtTransitionLabel;
-	              successors++;
-	            }
-	          }
-	          
-	          placeLabel += ")";
-	          
-	          Place place = pnet.addPlace(placeLabel);
-	          B.put(pair, place);
-	          B2.put(place, pair);
-	          //System.out.printf("<%s, %s>\n", e, ce);
-	          
-	          if (isImplicit) {
-	            if (successors == 1) implicitPlaces.add(place);
-	            else implicitPlaces_2ormore.add(place);
-	            //System.out.printf("implicit "+placeLabel+"\n");
-	          }
-	        }
+	    for (ConditionBuilder.Condition condition : builder.build(events)) {
+	      Pair pair = new Pair(condition.event, condition.conflictSet);
+	      Place place = pnet.addPlace(condition.label);
+	      B.put(pair, place);
+	      B2.put(place, pair);
+	      //System.out.printf("<%s, %s>\n", e, ce);
+	      
+	      if (condition.implicit) {
+	        if (condition.successors == 1) implicitPlaces.add(place);
+	        else implicitPlaces_2ormore.add(place);
+	        //System.out.printf("implicit "+placeLabel+"\n");
 	      }
 	    }
 
@@ -744,7 +774,7 @@ public class MaxStr {
 //		return result;
 //	}
 
-	private static String getOriginalLabel(String label,
+	static String getOriginalLabel(String label,
 			Map<String, de.hpi.bpt.process.Node> tasks,
 			Map<String, de.hpi.bpt.process.Node> clones) {
 
@@ -0,0 +1,502 @@
+package ee.ut.bpstruct;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+
+import de.bpt.hpi.graph.Graph;
+import de.hpi.bpt.process.Gateway;
+import de.hpi.bpt.process.GatewayType;
+import de.hpi.bpt.process.Node;
+import de.hpi.bpt.process.Process;
+import ee.ut.bpstruct.jbpt.Pair;
+import ee.ut.bpstruct.jbpt.PlaceHolder;
+import ee.ut.comptech.DJGraph;
+import ee.ut.comptech.DJGraphHelper;
+import ee.ut.comptech.Processor;
+
+/**
+ * Restructures cyclic rigids with XOR gateways only, without unfolding them.
+ *
+ * The rigid is first made reducible by controlled node splitting (see Processor). Then, the loops are
+ * identified on the DJ graph (see DJGraph) and every loop is restructured, innermost first, into the
+ * canonical form:
+ *
+ *     join -> [paths from the header to the exit node] -> exit node -> [paths back to the join]
+ *                                                                  -> [exits of the loop]
+ *
+ * where inner loops are handled as single nodes. In the acyclic parts, the branches of a split are joined
+ * at its immediate post-dominator, such that only the nodes reached from several branches before that point
+ * are duplicated. This form exists if every loop is left from a single node, which lies on
+ * every path from the header back to itself. Otherwise (or if the restructured rigid would be larger than
+ * the limit given by the helper), perform() returns false and the rigid is left untouched.
+ */
+public class NodeSplittingRestructurer {
+	private Helper helper;
+	private Set<Pair> edges;
+	private Set<Node> vertices;
+	private Node entry;
+	private Node exit;
+	private int limit;
+
+	// Rigid after node splitting: node i stands for a copy of original.get(i)
+	private List<Node> original = new ArrayList<Node>();
+	private List<List<Integer>> successors = new ArrayList<List<Integer>>();
+	private int root, sink;
+
+	// Loops are identified by n + index in this list (n being the number of nodes)
+	private List<Loop> loops = new ArrayList<Loop>();
+	private Loop[] innermost;
+
+	// Immediate post-dominators of the elements, within the region of the loop they belong to
+	private Map<Integer, Integer> ipdoms = new HashMap<Integer, Integer>();
+
+	private Process proc = new Process();
+	private int size = 0;
+	// Number of nodes of the fragments folded into place holders (including nested ones)
+	private Map<Node, Integer> fragmentSizes = new HashMap<Node, Integer>();
+
+	private class Loop {
+		int id;
+		int header;
+		Set<Integer> body = new HashSet<Integer>();
+		Loop parent;
+		int exitNode = -1;
+		// successors of the exit node within the loop, and out of the loop
+		List<Integer> continues = new ArrayList<Integer>();
+		List<Integer> exits = new ArrayList<Integer>();
+		// post-dominator of the continues, i.e. where the paths back to the header merge
+		int merge;
+	}
+
+	public NodeSplittingRestructurer(Helper helper, Set<Pair> edges, Set<Node> vertices,
+			Node entry, Node exit) {
+		this.helper = helper;
+		this.edges = edges;
+		this.vertices = vertices;
+		this.entry = entry;
+		this.exit = exit;
+		this.limit = helper.getNodeSplittingLimit();
+	}
+
+	/**
+	 * @return true if the rigid has been restructured (i.e. folded into a place holder)
+	 */
+	public boolean perform() {
+		if (limit <= 0 || !split() || !identifyLoops())
+			return false;
+
+		Gateway entry2 = new Gateway(GatewayType.XOR);
+		Gateway exit2 = new Gateway(GatewayType.XOR);
+		size = 0;
+		try {
+			int start = successors(root, null).get(0);
+			postDominators(Collections.singletonList(start), null, sink);
+			for (Loop loop: loops) {
+				postDominators(Collections.singletonList(loop.header), loop, loop.exitNode);
+				loop.merge = postDominators(loop.continues, loop, loop.header);
+			}
+			expand(start, entry2, null, sink, exit2);
+		} catch (CannotSplit e) {
+			return false;
+		}
+
+		helper.foldRigidComponent(edges, vertices, entry, exit, proc, entry2, exit2);
+		return true;
+	}
+
+	/**
+	 * Builds the graph of the rigid, with a virtual root (resp. sink) before the entry (resp. after the
+	 * exit), and splits nodes until it is reducible.
+	 */
+	private boolean split() {
+		Map<Node, Integer> ids = new HashMap<Node, Integer>();
+		Graph graph = new Graph();
+		// Nodes are sorted by name, such that the choice of the nodes to split does not depend on
+		// the iteration order of the vertex set
+		List<Node> nodes = new ArrayList<Node>(vertices);
+		Collections.sort(nodes, new Comparator<Node>() {
+			public int compare(Node a, Node b) {
+				return a.getName().compareTo(b.getName());
+			}
+		});
+		for (Node v: nodes) {
+			if (!(v instanceof Gateway || v instanceof PlaceHolder)) return false;
+			ids.put(v, ids.size());
+			graph.addVertex(ids.get(v), v.getName());
+		}
+		int vroot = nodes.size(), vsink = vroot + 1;
+		graph.addVertex(vroot, "_root_");
+		graph.addVertex(vsink, "_sink_");
+
+		Map<Integer, List<Integer>> adjList = new HashMap<Integer, List<Integer>>();
+		for (int i = 0; i <= vsink; i++)
+			adjList.put(i, new ArrayList<Integer>());
+		for (Pair edge: edges)
+			adjList.get(ids.get(edge.getSource())).add(ids.get(edge.getTarget()));
+		for (List<Integer> succs: adjList.values())
+			Collections.sort(succs);
+		adjList.get(vroot).add(ids.get(entry));
+		adjList.get(ids.get(exit)).add(vsink);
+
+		Processor processor = new Processor(graph, adjList, vroot, limit);
+		if (!processor.isReducible())
+			return false;
+
+		Map<Processor.Node, Integer> index = new HashMap<Processor.Node, Integer>();
+		for (Processor.Node node: processor.getNodes()) {
+			index.put(node, original.size());
+			int id = node.getOriginal();
+			original.add(id < nodes.size() ? nodes.get(id) : null);
+			if (id == vroot) root = index.get(node);
+			if (id == vsink) sink = index.get(node);
+		}
+		for (Processor.Node node: processor.getNodes()) {
+			List<Integer> succs = new ArrayList<Integer>();
+			for (Processor.Node succ: node.getSuccs())
+				succs.add(index.get(succ));
+			successors.add(succs);
+		}
+		return true;
+	}
+
+	/**
+	 * Identifies the loops on the DJ graph of the split rigid (merging the loops with the same header)
+	 * and checks that each of them can be put in canonical form.
+	 */
+	private boolean identifyLoops() {
+		int n = original.size();
+		final List<Set<Integer>> bodies = new LinkedList<Set<Integer>>();
+		final List<Integer> entries = new LinkedList<Integer>();
+		final boolean[] irreducible = new boolean[1];
+
+		Graph graph = new Graph();
+		Map<Integer, List<Integer>> adjList = new HashMap<Integer, List<Integer>>();
+		for (int v = 0; v < n; v++)
+			graph.addVertex(v, String.valueOf(v));
+		for (int v = 0; v < n; v++) {
+			adjList.put(v, successors.get(v));
+			for (Integer w: successors.get(v))
+				graph.addEdge(v, w);
+		}
+		new DJGraph(graph, adjList, root).identifyLoops(new DJGraphHelper() {
+			public List<Integer> processSEME(Set<Integer> loopbody, Set<Integer> loopentries, Set<Integer> loopexits) {
+				// The header is the only node of a natural loop with predecessors out of the loop
+				bodies.add(new HashSet<Integer>(loopbody));
+				entries.add(loopentries.size() == 1 ? loopentries.iterator().next() : -1);
+				return null;
+			}
+			public List<Integer> processMEME(Set<Integer> loopbody, Set<Integer> loopentries, Set<Integer> loopexits) {
+				irreducible[0] = true;
+				return null;
+			}
+		});
+		if (irreducible[0])
+			return false;
+
+		Map<Integer, Loop> headers = new HashMap<Integer, Loop>();
+		Iterator<Integer> entry = entries.iterator();
+		for (Set<Integer> body: bodies) {
+			int header = entry.next();
+			if (header < 0) return false;
+			Loop loop = headers.get(header);
+			if (loop == null) {
+				headers.put(header, loop = new Loop());
+				loop.header = header;
+				loop.id = n + loops.size();
+				loops.add(loop);
+			}
+			loop.body.addAll(body);
+		}
+
+		// Loops are nested (or disjoint): the parent of a loop is the smallest loop containing it
+		innermost = new Loop[n];
+		for (Loop loop: loops) {
+			for (Loop other: loops)
+				if (other != loop && other.body.size() > loop.body.size() && other.body.containsAll(loop.body)
+						&& (loop.parent == null || loop.parent.body.size() > other.body.size()))
+					loop.parent = other;
+			for (Integer v: loop.body)
+				if (innermost[v] == null || innermost[v].body.size() > loop.body.size())
+					innermost[v] = loop;
+		}
+
+		for (Loop loop: loops)
+			if (!isCanonical(loop))
+				return false;
+		return true;
+	}
+
+	/**
+	 * A loop can be put in canonical form iff all its exits leave from the same node (or inner loop),
+	 * which lies on every path from the header to the header.
+	 */
+	private boolean isCanonical(Loop loop) {
+		Set<Integer> latches = new HashSet<Integer>();
+		for (Integer v: loop.body) {
+			int elem = element(v, loop);
+			for (Integer w: successors.get(v)) {
+				if (loop.body.contains(w)) {
+					if (w == loop.header && elem != loop.header) latches.add(elem);
+				} else {
+					if (loop.exitNode >= 0 && loop.exitNode != elem)
+						return false;
+					loop.exitNode = elem;
+					int target = element(w, loop.parent);
+					if (!loop.exits.contains(target))
+						loop.exits.add(target);
+				}
+			}
+		}
+		if (loop.exitNode < 0 || latches.isEmpty())
+			return false;
+
+		for (Integer v: loop.body)
+			if (element(v, loop) == loop.exitNode)
+				for (Integer w: successors.get(v)) {
+					int target = element(w, loop);
+					if (loop.body.contains(w) && target != loop.exitNode && !loop.continues.contains(target))
+						loop.continues.add(target);
+				}
+
+		// The header must not reach a latch without going through the exit node
+		if (loop.exitNode != loop.header) {
+			Set<Integer> visited = new HashSet<Integer>();
+			Stack<Integer> worklist = new Stack<Integer>();
+			worklist.push(loop.header);
+			visited.add(loop.header);
+			while (!worklist.isEmpty()) {
+				int curr = worklist.pop();
+				if (latches.contains(curr)) return false;
+				for (Integer succ: successors(curr, loop))
+					if (succ != loop.header && succ != loop.exitNode && visited.add(succ))
+						worklist.push(succ);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the node, or the outermost loop nested in "context", that stands for node v in the context
+	 */
+	private int element(int v, Loop context) {
+		int elem = v;
+		Loop loop = innermost[v];
+		while (loop != null && loop != context) {
+			elem = loop.id;
+			loop = loop.parent;
+		}
+		return elem;
+	}
+
+	/**
+	 * @return successors of an element within a context (i.e. the exits, if the element is a loop)
+	 */
+	private List<Integer> successors(int elem, Loop context) {
+		if (elem >= original.size())
+			return loops.get(elem - original.size()).exits;
+		List<Integer> result = new ArrayList<Integer>();
+		for (Integer w: successors.get(elem)) {
+			int target = element(w, context);
+			if (!result.contains(target))
+				result.add(target);
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the immediate post-dominators of the elements of a region, i.e. the elements reachable
+	 * from "starts" (within "context") until "stop", which must be reached by all of them.
+	 *
+	 * @return post-dominator of the starts (i.e. where the control flow from the starts merges)
+	 */
+	private int postDominators(List<Integer> starts, Loop context, int stop) throws CannotSplit {
+		// Depth-first post-order: all the successors of an element precede it
+		List<Integer> order = new ArrayList<Integer>();
+		Set<Integer> visited = new HashSet<Integer>();
+		Set<Integer> onPath = new HashSet<Integer>();
+		Stack<Integer> path = new Stack<Integer>();
+		Stack<Integer> next = new Stack<Integer>();
+		for (Integer start: starts) {
+			if (!visited.add(start)) continue;
+			onPath.add(start);
+			path.push(start);
+			next.push(0);
+			while (!path.isEmpty()) {
+				int elem = path.peek();
+				int i = next.pop();
+				List<Integer> succs = elem == stop ? new ArrayList<Integer>() : successors(elem, context);
+				if (i < succs.size()) {
+					next.push(i + 1);
+					int succ = succs.get(i);
+					if (visited.add(succ)) {
+						onPath.add(succ);
+						path.push(succ);
+						next.push(0);
+					} else if (onPath.contains(succ))
+						throw new CannotSplit();
+				} else {
+					onPath.remove(elem);
+					order.add(path.pop());
+				}
+			}
+		}
+
+		Map<Integer, Integer> depth = new HashMap<Integer, Integer>();
+		for (Integer elem: order) {
+			if (elem == stop) {
+				depth.put(elem, 0);
+				continue;
+			}
+			List<Integer> succs = successors(elem, context);
+			if (succs.isEmpty())
+				throw new CannotSplit();
+			int ipdom = succs.get(0);
+			for (Integer succ: succs)
+				ipdom = merge(ipdom, succ, depth);
+			ipdoms.put(elem, ipdom);
+			depth.put(elem, depth.get(ipdom) + 1);
+		}
+
+		int result = starts.get(0);
+		for (Integer start: starts)
+			result = merge(result, start, depth);
+		return result;
+	}
+
+	/**
+	 * @return nearest common ancestor of two elements in the post-dominator tree
+	 */
+	private int merge(int a, int b, Map<Integer, Integer> depth) {
+		while (a != b) {
+			if (depth.get(a) >= depth.get(b))
+				a = ipdoms.get(a);
+			else
+				b = ipdoms.get(b);
+		}
+		return a;
+	}
+
+	/**
+	 * Copies the elements from "elem" until "stop", which is replaced by "target". The branches of
+	 * a split are merged where the control flow merges (i.e. at the post-dominator of the split), such
+	 * that only the elements shared by several branches before that point are copied more than once.
+	 */
+	private void expand(int elem, Node pred, Loop context, int stop, Node target) throws CannotSplit {
+		while (elem != stop) {
+			Pair copy = copy(elem);
+			proc.addControlFlow(pred, copy.getFirst());
+			pred = copy.getSecond();
+			List<Integer> succs = successors(elem, context);
+			if (succs.size() == 1) {
+				elem = succs.get(0);
+				continue;
+			}
+			elem = ipdoms.get(elem);
+			if (elem == stop) {
+				expandBranches(succs, pred, context, stop, target);
+				return;
+			}
+			expandBranches(succs, pred, context, elem, null);
+			pred = lastJoin;
+		}
+		proc.addControlFlow(pred, target);
+	}
+
+	private Node lastJoin;
+
+	/**
+	 * Copies the branches starting at "starts" until their post-dominator "merge", which is replaced
+	 * by "join" (a new gateway, if null, that is left in lastJoin)
+	 */
+	private void expandBranches(List<Integer> starts, Node pred, Loop context, int merge, Node join) throws CannotSplit {
+		if (join == null)
+			join = newGateway();
+		for (Integer start: starts)
+			expand(start, pred, context, merge, join);
+		lastJoin = join;
+	}
+
+	/**
+	 * @return the first and last nodes of a copy of an element
+	 */
+	private Pair copy(int elem) throws CannotSplit {
+		if (elem >= original.size())
+			return copyLoop(loops.get(elem - original.size()));
+		Node v = original.get(elem);
+		Node vertexp;
+		if (v instanceof PlaceHolder) {
+			PlaceHolder ph = (PlaceHolder)v;
+			vertexp = new PlaceHolder(ph.getEdges(), ph.getVertices(), ph.getEntry(), ph.getExit());
+			vertexp.setName(ph.getName());
+			size += fragmentSize(ph);
+			if (size > limit)
+				throw new CannotSplit();
+		} else
+			vertexp = newGateway();
+		return new Pair(vertexp, vertexp);
+	}
+
+	/**
+	 * @return number of nodes of the fragment folded into the place holder, without its entry and exit
+	 * (at least 1), where nested place holders count as the nodes of their fragments
+	 */
+	private int fragmentSize(PlaceHolder ph) {
+		Integer result = fragmentSizes.get(ph);
+		if (result == null) {
+			int count = 0;
+			for (Node v: ph.getVertices())
+				if (v != ph.getEntry() && v != ph.getExit())
+					count += v instanceof PlaceHolder ? fragmentSize((PlaceHolder) v) : 1;
+			fragmentSizes.put(ph, result = Math.max(count, 1));
+		}
+		return result;
+	}
+
+	/**
+	 * Copies a loop in canonical form. The last node is a split towards the exits of the loop.
+	 */
+	private Pair copyLoop(Loop loop) throws CannotSplit {
+		Gateway join = newGateway();
+		Pair exitNode;
+		if (loop.exitNode == loop.header) {
+			exitNode = copy(loop.header);
+			proc.addControlFlow(join, exitNode.getFirst());
+		} else {
+			Gateway beforeExit = newGateway();
+			expand(loop.header, join, loop, loop.exitNode, beforeExit);
+			exitNode = copy(loop.exitNode);
+			proc.addControlFlow(beforeExit, exitNode.getFirst());
+		}
+
+		Gateway repeat = newGateway();
+		Gateway leave = newGateway();
+		proc.addControlFlow(exitNode.getSecond(), repeat);
+		proc.addControlFlow(exitNode.getSecond(), leave);
+		expandBranches(loop.continues, repeat, loop, loop.merge, loop.merge == loop.header ? join : null);
+		if (loop.merge != loop.header)
+			expand(loop.merge, lastJoin, loop, loop.header, join);
+		return new Pair(join, leave);
+	}
+
+	private Gateway newGateway() throws CannotSplit {
+		if (++size > limit)
+			throw new CannotSplit();
+		return new Gateway(GatewayType.XOR);
+	}
+
+	/**
+	 * The rigid cannot be restructured by node splitting (or the result would be too large)
+	 */
+	private static class CannotSplit extends Exception {
+		private static final long serialVersionUID = 1L;
+	}
+}
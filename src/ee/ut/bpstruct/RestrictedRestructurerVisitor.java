@@ -1,15 +1,13 @@
 package ee.ut.bpstruct;
 
-import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import de.hpi.bpt.process.GatewayType;
 import de.hpi.bpt.process.Node;
 import de.hpi.bpt.process.Process;
 import ee.ut.bpstruct.jbpt.Pair;
-import ee.ut.bpstruct.util.DFSLabeler;
-import ee.ut.bpstruct.util.GraphUtils;
+import ee.ut.bpstruct.util.Fragment;
+import ee.ut.bpstruct.util.FragmentClassifier;
 
 public class RestrictedRestructurerVisitor extends RestructurerVisitor
 		implements Visitor {
@@ -20,11 +18,11 @@ public class RestrictedRestructurerVisitor extends RestructurerVisitor
 	
 	public void visitRigid(Process proc, Set<Pair> edges,
 			Set<Node> vertices, Node entry, Node exit) throws CannotStructureException {
-		Map<Node, List<Node>> adjlist = GraphUtils.edgelist2adjlist(edges, exit);
-		DFSLabeler labeler =  new DFSLabeler(adjlist, entry);
+		Fragment<Node> fragment = Fragment.fromPairs(edges);
+		FragmentClassifier<Node> classifier = new FragmentClassifier<Node>(fragment, entry, FragmentClassifier.GATEWAY_TYPE);
 
-		if (!labeler.isMixedLogic() && labeler.getLogic() == GatewayType.XOR && !labeler.isCyclic())
-			restructureXORAcyclicRigid(proc, edges, vertices, entry, exit, adjlist);
+		if (!classifier.isMixedLogic() && classifier.getLogic() == GatewayType.XOR && !classifier.isCyclic())
+			restructureXORAcyclicRigid(proc, edges, vertices, entry, exit, fragment);
 		else 
 			helper.foldComponent(edges, vertices, entry, exit);
 	}
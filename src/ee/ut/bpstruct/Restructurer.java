@@ -5,14 +5,19 @@ import hub.top.petrinet.Place;
 import hub.top.petrinet.Transition;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
 
 import de.hpi.bpt.graph.abs.AbstractDirectedEdge;
 import de.hpi.bpt.graph.algo.rpst.RPST;
@@ -46,6 +51,42 @@ public class Restructurer implements Helper {
 	private PrintStream profiling = null;
 	private boolean maxStrRequired;
 	
+	public static final int DEFAULT_NODE_SPLITTING_LIMIT = 500;
+	private int nodeSplittingLimit = DEFAULT_NODE_SPLITTING_LIMIT;
+	private int conflictSetLimit = Integer.MAX_VALUE;
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+	private int parallelThreshold = UnfoldingRestructurer.DEFAULT_PARALLEL_THRESHOLD;
+	
+	// Incremental mode: structured fragments of the previous revision, indexed by signature
+	private Map<String, FragmentResult> fragments;
+	private Map<String, FragmentResult> nextFragments;
+	private ProcessUtils putils;
+	private int reusedFragments;
+	
+	private static class FragmentResult {
+		Set<Pair> edges;
+		Set<Node> vertices;
+		Set<Node> labeled;
+		
+		FragmentResult(Set<Pair> edges, Set<Node> vertices, Set<Node> labeled) {
+			this.edges = edges;
+			this.vertices = vertices;
+			this.labeled = labeled;
+		}
+	}
+	
+	// Dense ids of the process elements, only valid during perform()
+	private Map<Node, Integer> nodeIds;
+	private List<Node> nodes;
+	private Map<Long, Integer> flowIds;
+	private List<Pair> flows;
+	// Edges and vertices of the children of a fragment, one buffer per depth of the RPST (reused)
+	private List<Set<Pair>> edgeBuffers;
+	private List<Set<Node>> vertexBuffers;
+	
+	// RPST of the process with materialized decisions, when computed by the creator of this object
+	private RPST<ControlFlow, Node> precomputedRPST;
+	
 	public Restructurer(Process proc) {
 		this(proc, new FullVisitorFactory());
 	}
@@ -54,32 +95,136 @@ public class Restructurer implements Helper {
 		this.proc = proc;
 		this.visitor = factory.createVisitor(this);
 	}
+	
+	/**
+	 * Creates a restructurer for a process whose decisions have already been materialized (with putils)
+	 * and whose RPST has already been computed, e.g. by a caller that needed the RPST to decide whether
+	 * restructuring is required. The decomposition is used only by the first call to perform().
+	 */
+	Restructurer(Process proc, VisitorFactory factory, ProcessUtils putils, RPST<ControlFlow, Node> rpst) {
+		this(proc, factory);
+		this.putils = putils;
+		this.precomputedRPST = rpst;
+	}
 		
 	public void setProfiling(PrintStream profiling) {
 		this.profiling = profiling;
 	}
+	
+	/**
+	 * Cyclic rigids with XOR gateways only are restructured by node splitting, as long as the
+	 * restructured rigid has at most "limit" nodes; larger ones are restructured by unfolding.
+	 * A limit of 0 disables node splitting.
+	 */
+	public void setNodeSplittingLimit(int limit) {
+		this.nodeSplittingLimit = limit;
+	}
+	
+	public int getNodeSplittingLimit() {
+		return nodeSplittingLimit;
+	}
+	
+	/**
+	 * Bounds the number of conflict sets computed per event when the ordering relations of a
+	 * primitive are synthesized (see MaxStr.setConflictSetLimit). When the bound is exceeded,
+	 * the process cannot be structured. There is no bound by default.
+	 */
+	public void setConflictSetLimit(int limit) {
+		this.conflictSetLimit = limit;
+	}
+	
+	public int getConflictSetLimit() {
+		return conflictSetLimit;
+	}
+	
+	/**
+	 * Sets the pool on which sibling fragments of unfoldings and the conditions of synthesized
+	 * nets are computed in parallel. By default, ForkJoinPool.commonPool() is used.
+	 */
+	public void setForkJoinPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+	
+	public ForkJoinPool getForkJoinPool() {
+		return pool;
+	}
+	
+	/**
+	 * Sibling fragments of an unfolding are structured in parallel when they have at least
+	 * "threshold" edges in total. 0 structures any two or more siblings in parallel, and
+	 * Integer.MAX_VALUE structures them sequentially. The result is the same in every case.
+	 */
+	public void setParallelThreshold(int threshold) {
+		this.parallelThreshold = threshold;
+	}
+	
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+	
+	/**
+	 * In incremental mode, the structured form of every fragment is kept together with a signature
+	 * of its content (i.e. edges, labels and gateway types). When a new revision of the model is
+	 * structured (see perform(Process)), fragments whose signature did not change are not structured
+	 * again. Only the fragments of the last revision are kept.
+	 */
+	public void setIncremental(boolean incremental) {
+		fragments = incremental ? new HashMap<String, FragmentResult>() : null;
+	}
+	
+	/**
+	 * @return number of fragments reused from the previous revision during the last run
+	 */
+	public int getReusedFragments() {
+		return reusedFragments;
+	}
+	
+	/**
+	 * Structures a new revision of the model. In incremental mode, the results for the fragments
+	 * that did not change since the previous call are reused.
+	 */
+	public boolean perform(Process revision) {
+		this.proc = revision;
+		return perform();
+	}
 
 	public boolean perform() {
 		boolean result = true;
-		ProcessUtils putils = new ProcessUtils();
+		nextFragments = fragments == null ? null : new HashMap<String, FragmentResult>();
+		reusedFragments = 0;
 //		IOUtils.toFile(String.format("bpstruct2/proc_%s.dot", proc.getName()), Process2DOT.convert(proc));
 
-		putils.materializeDecisions(proc);
+		RPST<ControlFlow, Node> rpst = precomputedRPST;
+		precomputedRPST = null;
+		if (rpst == null) {
+			putils = new ProcessUtils();
+			putils.setStableLabels(fragments != null);
+			putils.materializeDecisions(proc);
+		}
 
 		labeledElements.clear();
 		labeledElements.addAll(proc.getTasks());
 
-		RPST<ControlFlow, Node> rpst = new RPST<ControlFlow, Node>(proc);
+		if (rpst == null)
+			rpst = new RPST<ControlFlow, Node>(proc);
 
 		if (rpst.getVertices(TCType.R).size() >= 0) {
 			RPSTNode<ControlFlow, Node> root = rpst.getRoot();
-			Set<Pair> edges = flattenEdgeSet(root.getFragment().getEdges());
-			Set<Node> vertices = new HashSet<Node>(root.getFragment().getVertices());
+			Set<Pair> edges = new HashSet<Pair>();
+			Set<Node> vertices = new HashSet<Node>();
+			indexElements();
 			try {
-				traverse(rpst, root, edges, vertices);
+				traverse(rpst, root, edges, vertices, 0);
 				proc = installStructured(edges, vertices, root);
 			} catch (CannotStructureException e) {
 				result = false;
+			} finally {
+				nodeIds = null; nodes = null;
+				flowIds = null; flows = null;
+				edgeBuffers = null; vertexBuffers = null;
+				if (nextFragments != null)
+					fragments = nextFragments;
+				nextFragments = null;
 			}
 		}
 		
@@ -87,34 +232,164 @@ public class Restructurer implements Helper {
 		return result;
 	}
 	
+	/**
+	 * Prepares the assignment of dense integer ids to the nodes and control flow of the process,
+	 * such that the edges and vertices of RPST fragments can be handled as bitsets while traversing.
+	 * Ids are assigned on first use. Fragments refer to control flow by its end points, hence an
+	 * edge is identified by the ids of its source and target.
+	 */
+	private void indexElements() {
+		nodeIds = new HashMap<Node, Integer>();
+		nodes = new ArrayList<Node>();
+		flowIds = new HashMap<Long, Integer>();
+		flows = new ArrayList<Pair>();
+		edgeBuffers = new ArrayList<Set<Pair>>();
+		vertexBuffers = new ArrayList<Set<Node>>();
+	}
+	
+	private int nodeId(Node node) {
+		Integer id = nodeIds.get(node);
+		if (id == null) {
+			id = nodes.size();
+			nodeIds.put(node, id);
+			nodes.add(node);
+		}
+		return id;
+	}
+	
+	private int flowId(AbstractDirectedEdge<Node> flow) {
+		long key = ((long) nodeId(flow.getSource()) << 32) | nodeId(flow.getTarget());
+		Integer id = flowIds.get(key);
+		if (id == null) {
+			id = flows.size();
+			flowIds.put(key, id);
+			flows.add(new Pair(flow.getSource(), flow.getTarget()));
+		}
+		return id;
+	}
+	
+	private BitSet edgeIds(RPSTNode<ControlFlow, Node> fragment) {
+		BitSet set = new BitSet(flows.size());
+		for (AbstractDirectedEdge<Node> flow: fragment.getFragment().getEdges())
+			set.set(flowId(flow));
+		return set;
+	}
+
+	private BitSet vertexIds(RPSTNode<ControlFlow, Node> fragment) {
+		BitSet set = new BitSet(nodes.size());
+		for (Node node: fragment.getFragment().getVertices())
+			set.set(nodeId(node));
+		return set;
+	}
+	
+	/**
+	 * Describes the content of a fragment, independently of the revision of the model: nodes are
+	 * identified by their identifiers (tasks materializing decisions by their label, which is
+	 * derived from identifiers), and the names and gateway types are part of the description.
+	 */
+	private String signature(RPSTNode<ControlFlow, Node> fragment) {
+		List<String> edges = new ArrayList<String>();
+		for (AbstractDirectedEdge<Node> flow: fragment.getFragment().getEdges())
+			edges.add(describe(flow.getSource()) + "->" + describe(flow.getTarget()));
+		Collections.sort(edges);
+		
+		StringBuilder buff = new StringBuilder();
+		buff.append(fragment.getType()).append('|').append(describe(fragment.getEntry()))
+			.append('|').append(describe(fragment.getExit()));
+		for (String edge: edges)
+			buff.append('|').append(edge);
+		return buff.toString();
+	}
+	
+	private String describe(Node node) {
+		if (node instanceof Gateway)
+			return "G:" + ((Gateway)node).getGatewayType() + ":" + node.getId() + ":" + node.getName();
+		if (putils.isMaterialized(node))
+			return "F:" + node.getName();
+		return "T:" + node.getId() + ":" + node.getName() + ":" + node.getDescription();
+	}
+	
+	/**
+	 * @return the labeled elements among the vertices, including those nested in place holders
+	 */
+	private Set<Node> labeledIn(Set<Node> vertices) {
+		Set<Node> labeled = new HashSet<Node>();
+		Stack<Node> worklist = new Stack<Node>();
+		worklist.addAll(vertices);
+		while (!worklist.isEmpty()) {
+			Node node = worklist.pop();
+			if (labeledElements.contains(node) && labeled.add(node) && node instanceof PlaceHolder)
+				worklist.addAll(((PlaceHolder) node).getVertices());
+		}
+		return labeled;
+	}
+	
+	/**
+	 * Restructures the children of the "current" fragment (bottom-up) and computes the edges and
+	 * vertices of the fragment once its children have been folded. The children are folded in the
+	 * buffers of the given depth, which are cleared before each child.
+	 * 
+	 * @param edges OUT: edges of the current fragment
+	 * @param vertices OUT: vertices of the current fragment
+	 */
 	private void traverse(RPST<ControlFlow, Node> rpst, RPSTNode<ControlFlow, Node> current,
-			Set<Pair> edges, Set<Node> vertices) throws CannotStructureException {
-		if (current.getType() == TCType.T) return;
-
-		for (RPSTNode<ControlFlow, Node> child: rpst.getChildren(current)) {
-			if (child.getType() == TCType.T) continue;
-			Set<Pair> ledges = flattenEdgeSet(child.getFragment().getEdges());
-			Set<Node> lvertices = new HashSet<Node>(child.getFragment().getVertices());
-			Set<Pair> cledges = new HashSet<Pair>(ledges);
-			traverse(rpst, child, ledges, lvertices);
-			Node entry = child.getEntry();
-			Node exit = child.getExit();
-			switch (child.getType()) {
-			case P:
-				visitor.visitPolygon(proc, ledges, lvertices, entry, exit);
-				break;
-			case B:
-				visitor.visitBond(proc, ledges, lvertices, entry, exit);
-				break;
-			case R:
-				visitor.visitRigid(proc, ledges, lvertices, entry, exit);
-				break;
+			Set<Pair> edges, Set<Node> vertices, int depth) throws CannotStructureException {
+		BitSet remainingEdges = edgeIds(current);
+		BitSet remainingVertices = vertexIds(current);
+
+		if (current.getType() != TCType.T) {
+			if (edgeBuffers.size() == depth) {
+				edgeBuffers.add(new HashSet<Pair>());
+				vertexBuffers.add(new HashSet<Node>());
+			}
+			Set<Pair> ledges = edgeBuffers.get(depth);
+			Set<Node> lvertices = vertexBuffers.get(depth);
+			for (RPSTNode<ControlFlow, Node> child: rpst.getChildren(current)) {
+				if (child.getType() == TCType.T) continue;
+				ledges.clear();
+				lvertices.clear();
+				String signature = nextFragments == null ? null : signature(child);
+				FragmentResult cached = signature == null ? null : fragments.get(signature);
+				if (cached != null) {
+					ledges.addAll(cached.edges);
+					lvertices.addAll(cached.vertices);
+					labeledElements.addAll(cached.labeled);
+					nextFragments.put(signature, cached);
+					reusedFragments++;
+				} else {
+					traverse(rpst, child, ledges, lvertices, depth + 1);
+					Node entry = child.getEntry();
+					Node exit = child.getExit();
+					switch (child.getType()) {
+					case P:
+						visitor.visitPolygon(proc, ledges, lvertices, entry, exit);
+						break;
+					case B:
+						visitor.visitBond(proc, ledges, lvertices, entry, exit);
+						break;
+					case R:
+						visitor.visitRigid(proc, ledges, lvertices, entry, exit);
+						break;
+					}
+					if (signature != null)
+						nextFragments.put(signature, new FragmentResult(new HashSet<Pair>(ledges),
+								new HashSet<Node>(lvertices), labeledIn(lvertices)));
+				}
+				remainingEdges.andNot(edgeIds(child));
+				remainingVertices.andNot(vertexIds(child));
+				edges.addAll(ledges);
+				vertices.addAll(lvertices);
 			}
-			edges.removeAll(cledges);
-			vertices.removeAll(child.getFragment().getVertices());
-			edges.addAll(ledges);
-			vertices.addAll(lvertices);
+			ledges.clear();
+			lvertices.clear();
+		}
+
+		for (int i = remainingEdges.nextSetBit(0); i >= 0; i = remainingEdges.nextSetBit(i + 1)) {
+			Pair flow = flows.get(i);
+			edges.add(new Pair(flow.getSource(), flow.getTarget()));
 		}
+		for (int i = remainingVertices.nextSetBit(0); i >= 0; i = remainingVertices.nextSetBit(i + 1))
+			vertices.add(nodes.get(i));
 	}
 
 	public Set<Pair> flattenEdgeSet(Collection<ControlFlow> edges) {
@@ -241,17 +516,25 @@ public class Restructurer implements Helper {
 				
 				Pair pair = new Pair();
 				MaxStr maxstr = new MaxStr();
+				maxstr.setConflictSetLimit(getConflictSetLimit());
+				maxstr.setForkJoinPool(getForkJoinPool());
 				Process innerProc = new Process();
 				maxstr.perform(subgraph, tasksppp, clonespp, innerProc, pair);				
+				
+				// The nested restructurer works on the same decomposition: the dummy tasks and the
+				// materialized decisions do not change the rigid fragments of innerProc
+				Task dummyEntry = new Task("_dummy_entry_");
+				Task dummyExit = new Task("_dummy_exit_");
+				innerProc.addControlFlow(dummyEntry, pair.getFirst());
+				innerProc.addControlFlow(pair.getSecond(), dummyExit);
+				ProcessUtils innerUtils = new ProcessUtils();
+				innerUtils.materializeDecisions(innerProc);
 				RPST<ControlFlow, Node> rpst = new RPST<ControlFlow, Node>(innerProc);
 				
-				if (rpst.getVertices(TCType.R).size() > 0) {
-					RPSTNode<ControlFlow, Node> rigid = rpst.getVertices(TCType.R).iterator().next();
-					if (((Gateway)rigid.getEntry()).getGatewayType().equals(GatewayType.XOR)) {
-					
-					innerProc.addControlFlow(new Task("_dummy_entry_"), pair.getFirst());
-					innerProc.addControlFlow(pair.getSecond(), new Task("_dummy_exit_"));
-					Restructurer recstr = new Restructurer(innerProc, new RestrictedVisitorFactory());
+				Collection<RPSTNode<ControlFlow, Node>> rigids = rpst.getVertices(TCType.R);
+				if (rigids.size() > 0 &&
+						((Gateway)rigids.iterator().next().getEntry()).getGatewayType().equals(GatewayType.XOR)) {
+					Restructurer recstr = new Restructurer(innerProc, new RestrictedVisitorFactory(), innerUtils, rpst);
 					recstr.perform();
 					innerProc = recstr.proc;
 					Set<Node> entries = new HashSet<Node>(innerProc.getNodes());
@@ -267,7 +550,10 @@ public class Restructurer implements Helper {
 					pair.setSecond(innerProc.getPredecessors(texit).iterator().next());
 					innerProc.removeVertex(tentry);
 					innerProc.removeVertex(texit);
-					}
+				} else {
+					innerUtils.dematerializeDecisions(innerProc);
+					innerProc.removeVertex(dummyEntry);
+					innerProc.removeVertex(dummyExit);
 				}
 		
 
@@ -391,53 +677,102 @@ public class Restructurer implements Helper {
 
 	/**
 	 * This method does a depth-first traversal to update control flow so as to skip superfluous gateways.
+	 * The traversal uses an explicit stack (instead of recursion), so that it does not overflow the call
+	 * stack on long sequences; nodes are visited in the same order as in the recursive formulation.
 	 */
 	protected void simplify(Map<Node, List<Node>> adjlist, Node curr,
 			Map<Node, ControlFlow> toremove, Process nproc, Set<Node> visited, Node last) {
-		visited.add(curr);
-		if (!toremove.containsKey(curr))
-			last = curr;
-		for (Node succ: adjlist.get(curr)) {
+		Stack<SimplifyFrame> stack = new Stack<SimplifyFrame>();
+		stack.push(new SimplifyFrame(adjlist, curr, toremove, visited, last));
+		while (!stack.isEmpty()) {
+			SimplifyFrame frame = stack.peek();
+			if (!frame.successors.hasNext()) {
+				stack.pop();
+				continue;
+			}
+			Node succ = frame.successors.next();
 			if (toremove.containsKey(succ))
 				nproc.removeEdge(toremove.get(succ));
 			else
-				nproc.addControlFlow(last, succ);
+				nproc.addControlFlow(frame.last, succ);
 			if (!visited.contains(succ))
-				simplify(adjlist, succ, toremove, nproc, visited, last);
+				stack.push(new SimplifyFrame(adjlist, succ, toremove, visited, frame.last));
+		}
+	}
+	
+	private static class SimplifyFrame {
+		Node last;
+		Iterator<Node> successors;
+		
+		SimplifyFrame(Map<Node, List<Node>> adjlist, Node curr, Map<Node, ControlFlow> toremove,
+				Set<Node> visited, Node last) {
+			visited.add(curr);
+			this.last = toremove.containsKey(curr) ? last : curr;
+			this.successors = adjlist.get(curr).iterator();
 		}
 	}
 
+	/**
+	 * Installs the content of a (possibly nested) fragment into "nproc", replacing every PlaceHolder
+	 * with the fragment it stands for. Nested fragments are handled with an explicit stack, so that
+	 * the nesting depth is not bounded by the call stack.
+	 */
 	private void installStructured(Process nproc,
 			Set<Pair> edges, Set<Node> vertices, Node entry, Node exit, Pair pair) {
-		Map<Node, Pair> lmap = new HashMap<Node, Pair>();
-
-		for (Node v: vertices) {
-//			System.out.println("Analyzing: " + v);
-			if (v instanceof PlaceHolder) {
-				PlaceHolder pholder = (PlaceHolder) v;
-				Pair cpair = new Pair();
-				installStructured(nproc, pholder.getEdges(), pholder.getVertices(), pholder.getEntry(), pholder.getExit(), cpair);
-				lmap.put(v, cpair);
-			} else {
-				Node nv = null;
-				if (v instanceof Gateway)
-					nv = new Gateway(((Gateway)v).getGatewayType(), v.getName());
-				else 
-					nv = new Task(v.getName(), v.getDescription());
-				nproc.addVertex(nv);
-				lmap.put(v, new Pair(nv, nv));
+		Stack<InstallFrame> stack = new Stack<InstallFrame>();
+		stack.push(new InstallFrame(edges, vertices, entry, exit, pair));
+		
+		while (!stack.isEmpty()) {
+			InstallFrame frame = stack.peek();
+			if (frame.vertices.hasNext()) {
+				Node v = frame.vertices.next();
+//				System.out.println("Analyzing: " + v);
+				if (v instanceof PlaceHolder) {
+					PlaceHolder pholder = (PlaceHolder) v;
+					Pair cpair = new Pair();
+					frame.lmap.put(v, cpair);
+					stack.push(new InstallFrame(pholder.getEdges(), pholder.getVertices(), pholder.getEntry(), pholder.getExit(), cpair));
+				} else {
+					Node nv = null;
+					if (v instanceof Gateway)
+						nv = new Gateway(((Gateway)v).getGatewayType(), v.getName());
+					else 
+						nv = new Task(v.getName(), v.getDescription());
+					nproc.addVertex(nv);
+					frame.lmap.put(v, new Pair(nv, nv));
+				}
+				continue;
 			}
-		}
-		for (Pair e: edges) {
-			if (lmap.containsKey(e.getSource()) && lmap.containsKey(e.getTarget())) {
-				Node src = lmap.get(e.getSource()).getSecond();
-				Node tgt = lmap.get(e.getTarget()).getFirst();
-				nproc.addControlFlow(src, tgt);
+			
+			stack.pop();
+			Map<Node, Pair> lmap = frame.lmap;
+			for (Pair e: frame.edges) {
+				if (lmap.containsKey(e.getSource()) && lmap.containsKey(e.getTarget())) {
+					Node src = lmap.get(e.getSource()).getSecond();
+					Node tgt = lmap.get(e.getTarget()).getFirst();
+					nproc.addControlFlow(src, tgt);
+				}
 			}
+			
+			frame.pair.setFirst(lmap.get(frame.entry).getFirst());
+			frame.pair.setSecond(lmap.get(frame.exit).getSecond());
 		}
+	}
+	
+	private static class InstallFrame {
+		Set<Pair> edges;
+		Iterator<Node> vertices;
+		Node entry, exit;
+		Pair pair;
+		Map<Node, Pair> lmap = new HashMap<Node, Pair>();
 		
-		pair.setFirst(lmap.get(entry).getFirst());
-		pair.setSecond(lmap.get(exit).getSecond());
+		InstallFrame(Set<Pair> edges, Set<Node> vertices, Node entry, Node exit, Pair pair) {
+			this.edges = edges;
+			this.vertices = vertices.iterator();
+			this.entry = entry;
+			this.exit = exit;
+			this.pair = pair;
+		}
 	}
 
 
@@ -458,10 +793,14 @@ public class Restructurer implements Helper {
 		Map<Node, hub.top.petrinet.Node> map = new HashMap<Node, hub.top.petrinet.Node>();
 		hub.top.petrinet.Node entry = null, exit = null;
 		PetriNet net = new PetriNet();
+		Set<Node> withIncoming = new HashSet<Node>();
+		Set<Node> withOutgoing = new HashSet<Node>();
 
 		for (Pair edge : ledges) {
 			Node src = edge.getSource();
 			Node tgt = edge.getTarget();
+			withOutgoing.add(src);
+			withIncoming.add(tgt);
 			
 			if (labeledElements.contains(src) || isANDGateway(src)) {
 				if (labeledElements.contains(tgt) || isANDGateway(tgt)) {
@@ -504,7 +843,7 @@ public class Restructurer implements Helper {
 			net.addArc(p, (Transition)entry);
 			net.setTokens(p, 1);
 		}
-		else if (hasInternalIncoming(_entry, ledges)) {
+		else if (withIncoming.contains(_entry)) {
 			Place p = net.addPlace("_entry_");
 			Transition t = net.addTransition("_from_entry_");
 
@@ -519,7 +858,7 @@ public class Restructurer implements Helper {
 			net.addArc((Transition)exit, p);
 		}
 
-		if (exit instanceof Place && isXORGateway(_exit) && hasInternalOutgoing(_exit, ledges)) {
+		if (exit instanceof Place && isXORGateway(_exit) && withOutgoing.contains(_exit)) {
 			Transition t = net.addTransition("_to_exit_");
 			Place p = net.addPlace("_exit_");
 			net.addArc((Place)exit, t);
@@ -529,18 +868,6 @@ public class Restructurer implements Helper {
 		return net;
 	}
 
-	private boolean hasInternalIncoming(Node node, Set<Pair> ledges) {
-		for (Pair e: ledges)
-			if (node.equals(e.getTarget()))
-				return true;
-		return false;
-	}
-	private boolean hasInternalOutgoing(Node node, Set<Pair> edges) {
-		for (Pair e: edges)
-			if (node.equals(e.getSource()))
-				return true;
-		return false;
-	}
 	private boolean isANDGateway(Node node) {
 		return node instanceof Gateway && ((Gateway)node).getGatewayType() == GatewayType.AND;
 	}
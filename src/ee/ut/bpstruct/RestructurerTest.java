@@ -0,0 +1,140 @@
+package ee.ut.bpstruct;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import de.hpi.bpt.process.ControlFlow;
+import de.hpi.bpt.process.Gateway;
+import de.hpi.bpt.process.Node;
+import de.hpi.bpt.process.Process;
+import de.hpi.bpt.process.Task;
+import ee.ut.bpstruct.util.JSONProcessReader;
+import ee.ut.graph.util.StronglyConnectedComponents;
+import ee.ut.graph.util.StronglyConnectedComponents.Successors;
+
+public class RestructurerTest extends TestCase {
+
+	public void testConflictSetLimit() throws Exception {
+		// The primitive of this model has events with more than one conflict set
+		File file = new File("models/unstruct/0005.json");
+
+		Restructurer bounded = new Restructurer(JSONProcessReader.parse(file));
+		bounded.setConflictSetLimit(1);
+		assertEquals(1, bounded.getConflictSetLimit());
+		assertFalse(bounded.perform());
+
+		// Syntheses made under the bound are not reused without it
+		Restructurer unbounded = new Restructurer(JSONProcessReader.parse(file));
+		assertEquals(Integer.MAX_VALUE, unbounded.getConflictSetLimit());
+		assertTrue(unbounded.perform());
+		assertTrue(new StructureChecker().isStructured(unbounded.proc));
+	}
+
+	public void testNodeSplittingDL() throws Exception {
+		// Cyclic rigid with XOR gateways only, restructured by node splitting (used to throw a NullPointerException)
+		Process process = JSONProcessReader.parse(new File("models/oulsnam/DL.json"));
+		Set<String> labels = labels(process);
+
+		Restructurer restructurer = new Restructurer(process);
+		assertTrue(restructurer.getNodeSplittingLimit() > 0);
+		assertTrue(restructurer.perform());
+		final Process structured = restructurer.proc;
+		assertTrue(new StructureChecker().isStructured(structured));
+		assertEquals(labels, labels(structured));
+
+		// The loop is kept
+		boolean cyclic = false;
+		for (Set<Node> scc: StronglyConnectedComponents.compute(structured.getVertices(), new Successors<Node>() {
+			public Collection<Node> successors(Node vertex) {
+				return structured.getSuccessors(vertex);
+			}
+		}))
+			cyclic |= scc.size() > 1;
+		assertTrue(cyclic);
+	}
+
+	public void testParallelUnfolding() throws Exception {
+		// The unfoldings of these models have several sibling fragments with rigids
+		for (String name: new String[] {"unstruct/0032", "unstruct/0043", "unstruct/0044"}) {
+			File file = new File("models/" + name + ".json");
+			List<String> sequential = describe(structure(file, Integer.MAX_VALUE));
+			assertFalse(sequential.isEmpty());
+			for (int k = 0; k < 3; k++)
+				assertEquals(name, sequential, describe(structure(file, 0)));
+		}
+	}
+
+	public void testIncremental() throws Exception {
+		// The unfolding of this model has several sibling fragments with rigids: only one of them is edited
+		File file = new File("models/unstruct/0032.json");
+		Restructurer restructurer = new Restructurer(JSONProcessReader.parse(file));
+		restructurer.setIncremental(true);
+		assertTrue(restructurer.perform());
+		assertEquals(0, restructurer.getReusedFragments());
+
+		Process revision = edit(JSONProcessReader.parse(file));
+		assertTrue(restructurer.perform(revision));
+		assertTrue(restructurer.getReusedFragments() > 0);
+
+		Restructurer full = new Restructurer(edit(JSONProcessReader.parse(file)));
+		assertTrue(full.perform());
+		assertEquals(describe(full.proc), describe(restructurer.proc));
+	}
+
+	/**
+	 * Renames the task with the smallest name
+	 */
+	private static Process edit(Process process) {
+		Task first = null;
+		for (Task task: process.getTasks())
+			if (first == null || task.getName().compareTo(first.getName()) < 0)
+				first = task;
+		first.setName(first.getName() + "'");
+		return process;
+	}
+
+	private static Process structure(File file, int parallelThreshold) throws Exception {
+		Restructurer restructurer = new Restructurer(JSONProcessReader.parse(file));
+		restructurer.setParallelThreshold(parallelThreshold);
+		assertTrue(restructurer.perform());
+		return restructurer.proc;
+	}
+
+	/**
+	 * @return description of the process that only depends on its structure and on the labels of
+	 * the tasks (the nodes created by the restructuring have fresh ids)
+	 */
+	private static List<String> describe(Process process) {
+		List<String> edges = new ArrayList<String>();
+		for (ControlFlow flow: process.getControlFlow())
+			edges.add(describe(process, flow.getSource()) + " -> " + describe(process, flow.getTarget()));
+		Collections.sort(edges);
+		return edges;
+	}
+
+	private static String describe(Process process, Node node) {
+		if (node instanceof Gateway) {
+			List<String> neighbors = new ArrayList<String>();
+			for (Node pred: process.getPredecessors(node))
+				neighbors.add("<" + (pred instanceof Gateway ? "" : describe(process, pred)));
+			for (Node succ: process.getSuccessors(node))
+				neighbors.add(">" + (succ instanceof Gateway ? "" : describe(process, succ)));
+			Collections.sort(neighbors);
+			return ((Gateway) node).getGatewayType() + neighbors.toString();
+		}
+		return node.getName();
+	}
+
+	private static Set<String> labels(Process process) {
+		Set<String> labels = new HashSet<String>();
+		for (Task task: process.getTasks())
+			labels.add(task.getName());
+		return labels;
+	}
+}
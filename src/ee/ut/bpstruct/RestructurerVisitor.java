@@ -5,7 +5,6 @@ import hub.top.uma.DNode;
 
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
@@ -18,8 +17,8 @@ import de.hpi.bpt.process.Process;
 import de.hpi.bpt.utils.IOUtils;
 import ee.ut.bpstruct.jbpt.Pair;
 import ee.ut.bpstruct.jbpt.PlaceHolder;
-import ee.ut.bpstruct.util.DFSLabeler;
-import ee.ut.bpstruct.util.GraphUtils;
+import ee.ut.bpstruct.util.Fragment;
+import ee.ut.bpstruct.util.FragmentClassifier;
 
 public class RestructurerVisitor implements Visitor {
 	
@@ -32,15 +31,27 @@ public class RestructurerVisitor implements Visitor {
 	public void visitRigid(Process proc, Set<Pair> edges,
 			Set<Node> vertices, Node entry, Node exit) throws CannotStructureException {
 //		System.out.println("Found a rigid");
-		Map<Node, List<Node>> adjlist = GraphUtils.edgelist2adjlist(edges, exit);
-		DFSLabeler labeler =  new DFSLabeler(adjlist, entry);
-
-		if (labeler.isCyclic())
-			restructureCyclicRigid(proc, edges, vertices, entry, exit);
-		else if (!labeler.isMixedLogic() && labeler.getLogic() == GatewayType.XOR)
-			restructureXORAcyclicRigid(proc, edges, vertices, entry, exit, adjlist);
+		Fragment<Node> fragment = Fragment.fromPairs(edges);
+		FragmentClassifier<Node> classifier = new FragmentClassifier<Node>(fragment, entry, FragmentClassifier.GATEWAY_TYPE);
+
+		if (classifier.isCyclic()) {
+			if (classifier.isMixedLogic() || classifier.getLogic() != GatewayType.XOR ||
+					!restructureXORCyclicRigid(proc, edges, vertices, entry, exit))
+				restructureCyclicRigid(proc, edges, vertices, entry, exit);
+		} else if (!classifier.isMixedLogic() && classifier.getLogic() == GatewayType.XOR)
+			restructureXORAcyclicRigid(proc, edges, vertices, entry, exit, fragment);
 		else 
-			restructureAcyclicRigid(proc, edges, vertices, entry, exit, adjlist);			
+			restructureAcyclicRigid(proc, edges, vertices, entry, exit, fragment);			
+	}
+
+	/**
+	 * Fast path for cyclic rigids with XOR gateways only: node splitting instead of unfolding.
+	 * 
+	 * @return false if the rigid has not been restructured (e.g. the result would be too large)
+	 */
+	public boolean restructureXORCyclicRigid(Process proc, Set<Pair> edges,
+			Set<Node> vertices, Node entry, Node exit) {
+		return new NodeSplittingRestructurer(helper, edges, vertices, entry, exit).perform();
 	}
 
 	public void restructureCyclicRigid(Process proc, Set<Pair> edges,
@@ -72,7 +83,7 @@ public class RestructurerVisitor implements Visitor {
 	}
 
 	public void restructureXORAcyclicRigid(Process proc, Set<Pair> edges,
-			Set<Node> vertices, Node entry, Node exit, Map<Node, List<Node>> adjlist) throws CannotStructureException {
+			Set<Node> vertices, Node entry, Node exit, Fragment<Node> fragment) throws CannotStructureException {
 //		System.out.println("\tXOR Acyclic rigid");
 		Process childProc = new Process();
 		Gateway entry2 = new Gateway(GatewayType.XOR);
@@ -85,7 +96,7 @@ public class RestructurerVisitor implements Visitor {
 		worklist.push(entry);
 		while (!worklist.isEmpty()) {
 			Node curr = worklist.pop();
-			for (Node succ: adjlist.get(curr)) {
+			for (Node succ: fragment.getSuccessors(curr)) {
 				if (!succ.equals(exit)) {
 					if (!(succ instanceof Gateway)) {
 						PlaceHolder ph = (PlaceHolder)succ;
@@ -105,7 +116,7 @@ public class RestructurerVisitor implements Visitor {
 	}
 	
 	public void restructureAcyclicRigid(Process proc, Set<Pair> edges,
-			Set<Node> vertices, Node entry, Node exit, Map<Node, List<Node>> adjlist) throws CannotStructureException {
+			Set<Node> vertices, Node entry, Node exit, Fragment<Node> fragment) throws CannotStructureException {
 //		System.out.println("\tAcyclic rigid");
 		PetriNet net = helper.petrify(edges, vertices, entry, exit);
 		Unfolder unfolder = new Unfolder(net);
@@ -0,0 +1,186 @@
+package ee.ut.bpstruct;
+
+import hub.top.uma.DNode;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import de.hpi.bpt.process.petri.Node;
+import de.hpi.bpt.process.petri.PetriNet;
+import de.hpi.bpt.process.petri.Place;
+import de.hpi.bpt.process.petri.Transition;
+
+/**
+ * Array-based Petri net obtained by rewiring an unfolding (see UnfoldingHelper). Nodes and arcs are
+ * identified by integers, in order of creation, and every node refers to the node of the unfolding
+ * it comes from. Neither names nor jbpt objects are created until the net is converted with toPetriNet().
+ *
+ * As in jbpt, arcs are not duplicated and removing a node removes its arcs.
+ */
+public class RewiredNet {
+	private static final int NONE = -1;
+
+	private boolean[] isPlace = new boolean[64];
+	private DNode[] origin = new DNode[64];
+	// For the nodes added when splitting a place: the place that was split
+	private int[] splitOf = new int[64];
+	private boolean[] removedNode = new boolean[64];
+	private int nodes = 0;
+
+	private int[] sources = new int[64];
+	private int[] targets = new int[64];
+	private boolean[] removedArc = new boolean[64];
+	private int arcs = 0;
+	private Map<Long, Integer> arcIndex = new HashMap<Long, Integer>();
+
+	public int addPlace(DNode origin) {
+		return addNode(true, origin, NONE);
+	}
+
+	public int addTransition(DNode origin) {
+		return addNode(false, origin, NONE);
+	}
+
+	private int addNode(boolean place, DNode dnode, int split) {
+		if (nodes == isPlace.length) {
+			int size = nodes * 2;
+			isPlace = Arrays.copyOf(isPlace, size);
+			origin = Arrays.copyOf(origin, size);
+			splitOf = Arrays.copyOf(splitOf, size);
+			removedNode = Arrays.copyOf(removedNode, size);
+		}
+		isPlace[nodes] = place;
+		origin[nodes] = dnode;
+		splitOf[nodes] = split;
+		return nodes++;
+	}
+
+	/**
+	 * Adds an arc, unless there is already one between the same nodes
+	 */
+	public void addArc(int source, int target) {
+		Long key = key(source, target);
+		if (arcIndex.containsKey(key)) return;
+		if (arcs == sources.length) {
+			sources = Arrays.copyOf(sources, arcs * 2);
+			targets = Arrays.copyOf(targets, arcs * 2);
+			removedArc = Arrays.copyOf(removedArc, arcs * 2);
+		}
+		sources[arcs] = source;
+		targets[arcs] = target;
+		arcIndex.put(key, arcs++);
+	}
+
+	public void removeArc(int source, int target) {
+		Integer arc = arcIndex.remove(key(source, target));
+		if (arc != null)
+			removedArc[arc] = true;
+	}
+
+	/**
+	 * Removes a node together with its arcs
+	 */
+	public void removeNode(int v) {
+		removedNode[v] = true;
+	}
+
+	private boolean isLive(int e) {
+		return !removedArc[e] && !removedNode[sources[e]] && !removedNode[targets[e]];
+	}
+
+	private static Long key(int source, int target) {
+		return ((long) source << 32) | (target & 0xffffffffL);
+	}
+
+	public int size() {
+		return nodes;
+	}
+
+	public boolean isPlace(int v) {
+		return isPlace[v];
+	}
+
+	public DNode getOrigin(int v) {
+		return origin[v];
+	}
+
+	/**
+	 * Splits every place in "places" with several incoming and several outgoing arcs: the outgoing arcs
+	 * are moved to a new place p', which is connected to the original place p either directly (p -> p')
+	 * or through a new transition (p -> t -> p'). The new nodes have the same origin as p.
+	 */
+	public void splitPlaces(int[] places, int count, boolean withTransition) {
+		int[] in = new int[nodes];
+		int[] out = new int[nodes];
+		for (int e = 0; e < arcs; e++)
+			if (isLive(e)) {
+				out[sources[e]]++;
+				in[targets[e]]++;
+			}
+
+		int[] copy = new int[nodes];
+		Arrays.fill(copy, NONE);
+		for (int i = 0; i < count; i++) {
+			int v = places[i];
+			if (removedNode[v] || copy[v] != NONE || in[v] <= 1 || out[v] <= 1) continue;
+			copy[v] = addNode(true, origin[v], v);
+		}
+
+		// The moved arcs get new keys: the index is rebuilt
+		arcIndex.clear();
+		for (int e = 0; e < arcs; e++)
+			if (isLive(e)) {
+				if (copy[sources[e]] != NONE)
+					sources[e] = copy[sources[e]];
+				arcIndex.put(key(sources[e], targets[e]), e);
+			} else
+				removedArc[e] = true;
+
+		for (int v = 0; v < copy.length; v++)
+			if (copy[v] != NONE) {
+				if (withTransition) {
+					int t = addNode(false, origin[v], v);
+					addArc(v, t);
+					addArc(t, copy[v]);
+				} else
+					addArc(v, copy[v]);
+			}
+	}
+
+	/**
+	 * Names of the nodes in the jbpt view of the net
+	 */
+	public interface Naming {
+		String getPlaceName(DNode origin);
+		String getTransitionName(DNode origin);
+	}
+
+	/**
+	 * Builds the jbpt view of the net
+	 *
+	 * @param nodeMap OUT: jbpt node of every node, indexed by node
+	 * @param rmap OUT: node of the unfolding that every place and transition of the view comes from
+	 * (except for the transitions added when splitting places)
+	 */
+	public PetriNet toPetriNet(Naming naming, Node[] nodeMap, Map<Node, DNode> rmap) {
+		PetriNet net = new PetriNet();
+		String[] names = new String[nodes];
+		for (int v = 0; v < nodes; v++) {
+			if (removedNode[v]) continue;
+			if (splitOf[v] != NONE)
+				names[v] = "_" + names[splitOf[v]] + "_";
+			else
+				names[v] = isPlace[v] ? naming.getPlaceName(origin[v]) : naming.getTransitionName(origin[v]);
+			Node node = isPlace[v] ? new Place(names[v]) : new Transition(names[v]);
+			net.addVertex(node);
+			nodeMap[v] = node;
+			if (isPlace[v] || splitOf[v] == NONE)
+				rmap.put(node, origin[v]);
+		}
+		for (int e = 0; e < arcs; e++)
+			if (isLive(e))
+				net.addFlow(nodeMap[sources[e]], nodeMap[targets[e]]);
+		return net;
+	}
+}
@@ -0,0 +1,58 @@
+package ee.ut.bpstruct;
+
+import hub.top.uma.DNode;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import de.hpi.bpt.process.petri.Node;
+import de.hpi.bpt.process.petri.PetriNet;
+import de.hpi.bpt.process.petri.Place;
+import de.hpi.bpt.process.petri.Transition;
+
+public class RewiredNetTest extends TestCase {
+	private static final RewiredNet.Naming NAMING = new RewiredNet.Naming() {
+		public String getPlaceName(DNode origin) {
+			return "p" + origin.id;
+		}
+		public String getTransitionName(DNode origin) {
+			return "t" + origin.id;
+		}
+	};
+
+	public void testSplitWithTransition() {
+		// t0 -> p -> {t1, t2}, t1 -> p, plus a duplicated arc and a removed place
+		RewiredNet net = new RewiredNet();
+		int t0 = net.addTransition(new DNode((short) 0, 0));
+		int t1 = net.addTransition(new DNode((short) 1, 0));
+		int t2 = net.addTransition(new DNode((short) 2, 0));
+		int p = net.addPlace(new DNode((short) 3, 0));
+		int q = net.addPlace(new DNode((short) 4, 0));
+		net.addArc(t0, p);
+		net.addArc(t0, p);
+		net.addArc(p, t1);
+		net.addArc(p, t2);
+		net.addArc(t1, p);
+		net.addArc(t2, q);
+		net.removeNode(q);
+		net.splitPlaces(new int[] {p, q}, 2, true);
+
+		Node[] nodes = new Node[net.size()];
+		Map<Node, DNode> rmap = new HashMap<Node, DNode>();
+		PetriNet pnet = net.toPetriNet(NAMING, nodes, rmap);
+		assertEquals(6, pnet.getVertices().size());
+		assertEquals(6, pnet.getEdges().size());
+		assertNull(nodes[q]);
+
+		Node split = pnet.getSuccessors((Transition) nodes[t0]).iterator().next();
+		assertSame(nodes[p], split);
+		Node transition = pnet.getSuccessors(split).iterator().next();
+		assertEquals("_p3_", transition.getName());
+		assertNull(rmap.get(transition));
+		Node copy = pnet.getSuccessors(transition).iterator().next();
+		assertTrue(copy instanceof Place);
+		assertEquals(2, pnet.getSuccessors(copy).size());
+		assertSame(rmap.get(nodes[p]), rmap.get(copy));
+	}
+}
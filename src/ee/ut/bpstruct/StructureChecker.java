@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2011 - Luciano Garcia Banuelos, Artem Polyvyanyy
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ee.ut.bpstruct;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.hpi.bpt.graph.abs.AbstractDirectedEdge;
+import de.hpi.bpt.process.Node;
+import de.hpi.bpt.process.Process;
+
+/**
+ * Checks whether a process is well-structured, i.e. whether its RPST has no rigid fragment,
+ * without cloning the process nor computing the RPST.
+ *
+ * A biconnected graph has no rigid triconnected component iff it is series-parallel, i.e. iff
+ * it can be reduced to a single edge by repeatedly merging parallel edges and replacing vertices
+ * of degree 2 by a single edge. The check considers the (undirected) control flow graph closed with
+ * a return edge from the sink to the source (or from a virtual sink to a virtual source, if the
+ * process has several sources or sinks). The reduction stops as soon as no vertex can be reduced.
+ *
+ * The equivalence with the RPST holds for acyclic processes: every node lies on a path from the
+ * source to the sink, so the triconnected components are oriented consistently and are fragments
+ * of the RPST. Cyclic processes, as well as graphs that are not biconnected, are delegated to the
+ * RPST-based check.
+ *
+ * Deliberate change with respect to BPStructAPI.checkStructureWithRPST(): for some processes the RPST
+ * of jbpt is made of a single root node, hence it has no rigid fragment and the process used to be
+ * reported as structured although it is not series-parallel. For instance, t0 -> {t1, t2, t5},
+ * t1 -> g3, t2 -> {g3, g4}, g3 -> t5, g4 -> t5 reduces to K4, and is now reported as unstructured.
+ */
+public class StructureChecker {
+	private static final int SEQUENTIAL_THRESHOLD = 4;
+	private static final ForkJoinPool pool = new ForkJoinPool();
+
+	private List<Set<Integer>> adjacency;
+
+	/**
+	 * @return true if the RPST of the process has no rigid fragments
+	 */
+	public boolean isStructured(Process process) {
+		Boolean result = reduce(process);
+		if (result == null)
+			return BPStructAPI.checkStructureWithRPST(process);
+		return result;
+	}
+
+	/**
+	 * Checks a collection of processes in parallel
+	 *
+	 * @return for each process (in the same order), true if it is well-structured
+	 */
+	public static boolean[] areStructured(List<Process> processes) {
+		boolean[] result = new boolean[processes.size()];
+		CheckTask task = new CheckTask(processes, 0, processes.size(), result);
+		if (processes.size() <= SEQUENTIAL_THRESHOLD)
+			task.compute();
+		else
+			pool.invoke(task);
+		return result;
+	}
+
+	/**
+	 * @return whether the process is series-parallel, or null if the answer requires the RPST
+	 */
+	private Boolean reduce(Process process) {
+		Map<Node, Integer> ids = new HashMap<Node, Integer>();
+		adjacency = new ArrayList<Set<Integer>>();
+		List<List<Integer>> successors = new ArrayList<List<Integer>>();
+
+		for (Node node: process.getVertices()) {
+			ids.put(node, ids.size());
+			adjacency.add(new HashSet<Integer>());
+			successors.add(new ArrayList<Integer>());
+		}
+		int n = ids.size();
+		int[] indegree = new int[n];
+		for (AbstractDirectedEdge<Node> flow: process.getEdges()) {
+			int src = ids.get(flow.getSource());
+			int tgt = ids.get(flow.getTarget());
+			if (src == tgt) return null;
+			successors.get(src).add(tgt);
+			indegree[tgt]++;
+			connect(src, tgt);
+		}
+
+		List<Integer> sources = new ArrayList<Integer>();
+		List<Integer> sinks = new ArrayList<Integer>();
+		for (int v = 0; v < n; v++) {
+			if (indegree[v] == 0) sources.add(v);
+			if (successors.get(v).isEmpty()) sinks.add(v);
+		}
+		if (sources.isEmpty() || sinks.isEmpty() || !isAcyclic(successors, indegree, sources))
+			return null;
+
+		int source = sources.size() == 1 ? sources.get(0) : addVertex(sources);
+		int sink = sinks.size() == 1 ? sinks.get(0) : addVertex(sinks);
+		if (source == sink)
+			return null;
+		connect(sink, source);
+
+		if (!isBiconnected())
+			return null;
+
+		return isSeriesParallel();
+	}
+
+	/**
+	 * Kahn's algorithm: all vertices are sorted iff the graph is acyclic
+	 */
+	private boolean isAcyclic(List<List<Integer>> successors, int[] indegree, List<Integer> sources) {
+		LinkedList<Integer> worklist = new LinkedList<Integer>(sources);
+		int sorted = 0;
+		while (!worklist.isEmpty()) {
+			int v = worklist.removeFirst();
+			sorted++;
+			for (Integer w: successors.get(v))
+				if (--indegree[w] == 0)
+					worklist.add(w);
+		}
+		return sorted == successors.size();
+	}
+
+	private int addVertex(List<Integer> neighbors) {
+		int v = adjacency.size();
+		adjacency.add(new HashSet<Integer>());
+		for (Integer w: neighbors)
+			connect(v, w);
+		return v;
+	}
+
+	private void connect(int v, int w) {
+		adjacency.get(v).add(w);
+		adjacency.get(w).add(v);
+	}
+
+	/**
+	 * Series-parallel reduction. Parallel edges are merged as they are created (adjacency is kept as
+	 * a set), hence only series reductions are applied explicitly.
+	 */
+	private boolean isSeriesParallel() {
+		int remaining = adjacency.size();
+		LinkedList<Integer> worklist = new LinkedList<Integer>();
+		boolean[] removed = new boolean[remaining];
+		for (int v = 0; v < remaining; v++)
+			if (adjacency.get(v).size() <= 2)
+				worklist.add(v);
+
+		while (!worklist.isEmpty() && remaining > 2) {
+			int v = worklist.removeFirst();
+			Set<Integer> neighbors = adjacency.get(v);
+			if (removed[v] || neighbors.size() != 2) continue;
+
+			Integer[] pair = neighbors.toArray(new Integer[2]);
+			int a = pair[0], b = pair[1];
+			adjacency.get(a).remove(v);
+			adjacency.get(b).remove(v);
+			neighbors.clear();
+			removed[v] = true;
+			remaining--;
+			connect(a, b);
+
+			if (adjacency.get(a).size() <= 2) worklist.add(a);
+			if (adjacency.get(b).size() <= 2) worklist.add(b);
+		}
+		return remaining <= 2;
+	}
+
+	/**
+	 * Iterative depth-first search computing low points: the graph is biconnected iff it is
+	 * connected and has no articulation point.
+	 */
+	private boolean isBiconnected() {
+		int n = adjacency.size();
+		if (n < 3) return true;
+		int[] order = new int[n];
+		int[] low = new int[n];
+		int[] parent = new int[n];
+		int[] stack = new int[n];
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		Iterator<Integer>[] iterators = new Iterator[n];
+
+		int counter = 1, top = 0, rootChildren = 0;
+		order[0] = low[0] = counter++;
+		parent[0] = -1;
+		iterators[0] = adjacency.get(0).iterator();
+		stack[top++] = 0;
+
+		while (top > 0) {
+			int v = stack[top - 1];
+			if (iterators[v].hasNext()) {
+				int w = iterators[v].next();
+				if (order[w] == 0) {
+					parent[w] = v;
+					order[w] = low[w] = counter++;
+					iterators[w] = adjacency.get(w).iterator();
+					stack[top++] = w;
+					if (v == 0) rootChildren++;
+				} else if (w != parent[v])
+					low[v] = Math.min(low[v], order[w]);
+			} else {
+				top--;
+				int p = parent[v];
+				if (p >= 0) {
+					low[p] = Math.min(low[p], low[v]);
+					// p separates the subtree of v from the rest of the graph
+					if (p != 0 && low[v] >= order[p])
+						return false;
+				}
+			}
+		}
+
+		return rootChildren == 1 && counter == n + 1;
+	}
+
+	private static class CheckTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private List<Process> processes;
+		private int from, to;
+		private boolean[] result;
+
+		CheckTask(List<Process> processes, int from, int to, boolean[] result) {
+			this.processes = processes;
+			this.from = from;
+			this.to = to;
+			this.result = result;
+		}
+
+		protected void compute() {
+			if (to - from <= SEQUENTIAL_THRESHOLD) {
+				StructureChecker checker = new StructureChecker();
+				for (int i = from; i < to; i++)
+					result[i] = checker.isStructured(processes.get(i));
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new CheckTask(processes, from, middle, result),
+						new CheckTask(processes, middle, to, result));
+			}
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package ee.ut.bpstruct;
+
+import java.io.File;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import de.hpi.bpt.graph.algo.rpst.RPST;
+import de.hpi.bpt.process.ControlFlow;
+import de.hpi.bpt.process.Gateway;
+import de.hpi.bpt.process.GatewayType;
+import de.hpi.bpt.process.Node;
+import de.hpi.bpt.process.Process;
+import de.hpi.bpt.process.Task;
+import ee.ut.bpstruct.util.JSONProcessReader;
+
+public class StructureCheckerTest extends TestCase {
+
+	public void testBundledModels() throws Exception {
+		int count = 0;
+		for (File dir: new File("models").listFiles())
+			if (dir.isDirectory())
+				for (File file: dir.listFiles())
+					if (file.getName().endsWith(".json")) {
+						Process process = JSONProcessReader.parse(file);
+						assertEquals(file.getPath(), BPStructAPI.checkStructureWithRPST(process),
+								new StructureChecker().isStructured(process));
+						count++;
+					}
+		assertTrue(count > 0);
+	}
+
+	public void testRandomDAGs() {
+		Random random = new Random(1);
+		int disagreements = 0;
+		for (int k = 0; k < 2000; k++) {
+			Process process = randomDAG(random);
+			boolean structured = new StructureChecker().isStructured(process);
+			if (structured != BPStructAPI.checkStructureWithRPST(process)) {
+				// Only the deliberate change: the RPST of jbpt is a single root node (see StructureChecker)
+				assertFalse(structured);
+				assertEquals(1, new RPST<ControlFlow, Node>(process).getVertices().size());
+				disagreements++;
+			}
+		}
+		assertTrue(disagreements > 0);
+	}
+
+	public void testK4() {
+		// t0 -> {t1, t2, t5}, t1 -> g3, t2 -> {g3, g4}, g3 -> t5, g4 -> t5
+		Process process = new Process();
+		Node t0 = new Task("t0"), t1 = new Task("t1"), t2 = new Task("t2"), t5 = new Task("t5");
+		Node g3 = new Gateway(GatewayType.XOR, "g3"), g4 = new Gateway(GatewayType.XOR, "g4");
+		process.addControlFlow(t0, t1);
+		process.addControlFlow(t0, t2);
+		process.addControlFlow(t0, t5);
+		process.addControlFlow(t1, g3);
+		process.addControlFlow(t2, g3);
+		process.addControlFlow(t2, g4);
+		process.addControlFlow(g3, t5);
+		process.addControlFlow(g4, t5);
+
+		assertFalse(new StructureChecker().isStructured(process));
+		// Behaviour of the former check, which relies on a degenerate RPST
+		assertTrue(BPStructAPI.checkStructureWithRPST(process));
+		assertEquals(1, new RPST<ControlFlow, Node>(process).getVertices().size());
+	}
+
+	/**
+	 * Every vertex but the first has a predecessor among the previous vertices, plus random forward edges
+	 */
+	private static Process randomDAG(Random random) {
+		int n = 4 + random.nextInt(9);
+		Process process = new Process();
+		Node[] nodes = new Node[n];
+		for (int i = 0; i < n; i++)
+			nodes[i] = random.nextBoolean() ? new Task("t" + i)
+					: new Gateway(random.nextBoolean() ? GatewayType.XOR : GatewayType.AND, "g" + i);
+		for (int j = 1; j < n; j++)
+			process.addControlFlow(nodes[random.nextInt(j)], nodes[j]);
+		int extra = random.nextInt(n);
+		for (int e = 0; e < extra; e++) {
+			int i = random.nextInt(n - 1);
+			process.addControlFlow(nodes[i], nodes[i + 1 + random.nextInt(n - 1 - i)]);
+		}
+		return process;
+	}
+}
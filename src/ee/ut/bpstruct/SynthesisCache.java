@@ -0,0 +1,413 @@
+/*
+ * Copyright (C) 2011 - Luciano Garcia Banuelos, Artem Polyvyanyy, Dirk Fahland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ee.ut.bpstruct;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import de.hpi.bpt.process.ControlFlow;
+import de.hpi.bpt.process.Gateway;
+import de.hpi.bpt.process.GatewayType;
+import de.hpi.bpt.process.Node;
+import de.hpi.bpt.process.Process;
+import de.hpi.bpt.process.Task;
+import ee.ut.bpstruct.jbpt.Pair;
+import ee.ut.graph.moddec.ColoredGraph;
+
+/**
+ * Bounded cache of MaxStr syntheses. Primitive ordering relations graphs often repeat up to
+ * vertex renaming, so the synthesized process is stored as a template over the positions of a
+ * canonical ordering of the vertices, and instantiated with the tasks of each new occurrence.
+ *
+ * The canonical ordering is computed by color refinement, followed by an exhaustive search among
+ * the orderings of the vertices that refinement cannot tell apart. Graphs that would require too
+ * many orderings to be explored are not cached.
+ */
+public class SynthesisCache {
+	public static final int DEFAULT_CAPACITY = 256;
+	private static final int MAX_ORDERINGS = 720;
+
+	private static final int GATEWAY = 0, TASK_REF = 1, TASK_NEW = 2;
+
+	/**
+	 * Canonical form of an ordering relations graph, together with the vertex at each canonical position.
+	 */
+	static class Instance {
+		private int[] key;
+		private int[] order;
+		private ColoredGraph orgraph;
+		private Map<String, Node> tasks;
+		private Map<String, Node> clones;
+
+		private String label(int position) {
+			return orgraph.getLabel(order[position]);
+		}
+		private String originalLabel(int position) {
+			return MaxStr.getOriginalLabel(label(position), tasks, clones);
+		}
+	}
+
+	/**
+	 * Synthesized process, where tasks refer to canonical positions.
+	 */
+	static class Template {
+		int[] kinds;
+		int[] refs;
+		GatewayType[] types;
+		int[] edges;
+		int entry, exit;
+
+		void instantiate(Instance instance, Process proc, Pair pair) {
+			Node[] nodes = new Node[kinds.length];
+			for (int i = 0; i < kinds.length; i++) {
+				switch (kinds[i]) {
+				case GATEWAY:
+					nodes[i] = new Gateway(types[i]);
+					break;
+				case TASK_REF:
+					nodes[i] = instance.tasks.get(instance.label(refs[i]));
+					break;
+				default:
+					nodes[i] = new Task(instance.originalLabel(refs[i]));
+				}
+			}
+			for (int i = 0; i < edges.length; i += 2)
+				proc.addControlFlow(nodes[edges[i]], nodes[edges[i + 1]]);
+			pair.setFirst(entry < 0 ? null : nodes[entry]);
+			pair.setSecond(exit < 0 ? null : nodes[exit]);
+		}
+
+		/**
+		 * @return the template of the process synthesized for the given instance, or null if some
+		 * task in the process cannot be traced back to a vertex of the ordering relations graph
+		 */
+		static Template record(Instance instance, Process proc, Pair pair) {
+			int n = instance.order.length;
+			Map<Node, Integer> references = new IdentityHashMap<Node, Integer>();
+			Map<String, Integer> labels = new HashMap<String, Integer>();
+			for (int p = n - 1; p >= 0; p--) {
+				Node task = instance.tasks.get(instance.label(p));
+				if (task != null)
+					references.put(task, p);
+				labels.put(instance.originalLabel(p), p);
+			}
+
+			List<Node> nodes = new ArrayList<Node>(proc.getVertices());
+			Map<Node, Integer> indexes = new IdentityHashMap<Node, Integer>();
+			Template template = new Template();
+			template.kinds = new int[nodes.size()];
+			template.refs = new int[nodes.size()];
+			template.types = new GatewayType[nodes.size()];
+			for (int i = 0; i < nodes.size(); i++) {
+				Node node = nodes.get(i);
+				indexes.put(node, i);
+				if (node instanceof Gateway) {
+					template.kinds[i] = GATEWAY;
+					template.types[i] = ((Gateway) node).getGatewayType();
+				} else if (references.containsKey(node)) {
+					template.kinds[i] = TASK_REF;
+					template.refs[i] = references.get(node);
+				} else if (node instanceof Task && labels.containsKey(node.getName())) {
+					template.kinds[i] = TASK_NEW;
+					template.refs[i] = labels.get(node.getName());
+				} else
+					return null;
+			}
+
+			template.edges = new int[proc.getEdges().size() * 2];
+			int i = 0;
+			for (ControlFlow flow: proc.getEdges()) {
+				template.edges[i++] = indexes.get(flow.getSource());
+				template.edges[i++] = indexes.get(flow.getTarget());
+			}
+			template.entry = pair.getFirst() == null ? -1 : indexes.get(pair.getFirst());
+			template.exit = pair.getSecond() == null ? -1 : indexes.get(pair.getSecond());
+			return template;
+		}
+	}
+
+	private static class Key {
+		int[] code;
+		Key(int[] code) { this.code = code; }
+		public boolean equals(Object obj) {
+			return obj instanceof Key && Arrays.equals(code, ((Key) obj).code);
+		}
+		public int hashCode() {
+			return Arrays.hashCode(code);
+		}
+	}
+
+	private int capacity;
+	private long hits, misses, uncacheable;
+	private Map<Key, Template> templates;
+
+	public SynthesisCache(int capacity) {
+		setCapacity(capacity);
+	}
+
+	/**
+	 * @param capacity Maximum number of templates kept (least recently used ones are evicted). 0 disables the cache.
+	 */
+	public synchronized void setCapacity(final int capacity) {
+		this.capacity = capacity;
+		Map<Key, Template> old = templates;
+		templates = new LinkedHashMap<Key, Template>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			protected boolean removeEldestEntry(Map.Entry<Key, Template> eldest) {
+				return size() > capacity;
+			}
+		};
+		if (old != null && capacity > 0)
+			templates.putAll(old);
+	}
+
+	public synchronized int getCapacity() { return capacity; }
+	public synchronized int size() { return templates.size(); }
+	public synchronized long getHits() { return hits; }
+	public synchronized long getMisses() { return misses; }
+	/** @return number of syntheses whose input was too symmetric to be canonized */
+	public synchronized long getUncacheable() { return uncacheable; }
+
+	public synchronized double getHitRate() {
+		long total = hits + misses + uncacheable;
+		return total == 0 ? 0.0 : (double) hits / total;
+	}
+
+	public synchronized void clear() {
+		templates.clear();
+		hits = misses = uncacheable = 0;
+	}
+
+	public String toString() {
+		return String.format("SynthesisCache(size=%d, hits=%d, misses=%d, uncacheable=%d, hit rate=%.2f)",
+				size(), getHits(), getMisses(), getUncacheable(), getHitRate());
+	}
+
+	/**
+	 * Computes the canonical form of the given input of MaxStr.
+	 *
+	 * @param parameters Configuration values that may change the outcome of the synthesis (e.g. its
+	 * bounds), so that syntheses made under different settings never share a template
+	 * @return the canonical form, or null if the cache is disabled or the graph has too many symmetries
+	 */
+	Instance canonize(ColoredGraph orgraph, Map<String, Node> tasks, Map<String, Node> clones, int... parameters) {
+		if (getCapacity() <= 0) return null;
+
+		Instance instance = new Instance();
+		instance.orgraph = orgraph;
+		instance.tasks = tasks;
+		instance.clones = clones;
+
+		int n = orgraph.getVertices().size();
+		int[] vertices = new int[n];
+		int i = 0;
+		for (Integer v: orgraph.getVertices())
+			vertices[i++] = v;
+
+		// Two vertices with the same original label are folded together by the synthesis, and so are
+		// two labels mapped to the same task: both partitions are part of the canonical form
+		int[] originalClass = new int[n];
+		int[] taskClass = new int[n];
+		int[] isTask = new int[n];
+		Map<String, Integer> originals = new HashMap<String, Integer>();
+		Map<Node, Integer> nodes = new IdentityHashMap<Node, Integer>();
+		int[][] relation = new int[n][n];
+		for (i = 0; i < n; i++) {
+			String label = orgraph.getLabel(vertices[i]);
+			String original = MaxStr.getOriginalLabel(label, tasks, clones);
+			if (!originals.containsKey(original)) originals.put(original, originals.size());
+			originalClass[i] = originals.get(original);
+			Node task = tasks.get(label);
+			if (task == null)
+				taskClass[i] = -1;
+			else {
+				if (!nodes.containsKey(task)) nodes.put(task, nodes.size());
+				taskClass[i] = nodes.get(task);
+			}
+			isTask[i] = tasks.containsKey(original) ? 1 : 0;
+			for (int j = 0; j < n; j++)
+				relation[i][j] = (orgraph.hasEdge(vertices[i], vertices[j]) ? 1 : 0) | (orgraph.hasEdge(vertices[j], vertices[i]) ? 2 : 0);
+		}
+
+		int[] color = refine(n, relation, originalClass, taskClass, isTask);
+
+		// Group the vertices by color, and bound the number of orderings to be explored
+		TreeMap<Integer, List<Integer>> cells = new TreeMap<Integer, List<Integer>>();
+		for (i = 0; i < n; i++) {
+			if (!cells.containsKey(color[i])) cells.put(color[i], new ArrayList<Integer>());
+			cells.get(color[i]).add(i);
+		}
+		long orderings = 1;
+		for (List<Integer> cell: cells.values())
+			for (int k = 2; k <= cell.size(); k++) {
+				orderings *= k;
+				if (orderings > MAX_ORDERINGS) {
+					synchronized (this) { uncacheable++; }
+					return null;
+				}
+			}
+
+		List<List<Integer>> cellList = new ArrayList<List<Integer>>(cells.values());
+		int[] current = new int[n];
+		int[][] best = new int[2][];
+		search(cellList, 0, 0, current, new boolean[n], relation, originalClass, taskClass, isTask, parameters, best);
+
+		instance.key = best[0];
+		instance.order = new int[n];
+		for (i = 0; i < n; i++)
+			instance.order[i] = vertices[best[1][i]];
+		return instance;
+	}
+
+	/**
+	 * @return the template for the given instance, or null if there is none
+	 */
+	synchronized Template get(Instance instance) {
+		Template template = templates.get(new Key(instance.key));
+		if (template != null) hits++;
+		else misses++;
+		return template;
+	}
+
+	synchronized void put(Instance instance, Template template) {
+		if (template != null)
+			templates.put(new Key(instance.key), template);
+	}
+
+	/**
+	 * Color refinement: vertices are iteratively distinguished by the colors of their neighbors,
+	 * until the number of colors is stable. Colors only depend on the structure, not on vertex ids.
+	 */
+	private int[] refine(int n, int[][] relation, int[] originalClass, int[] taskClass, int[] isTask) {
+		int[] originalSize = new int[n], taskSize = new int[n];
+		for (int i = 0; i < n; i++) {
+			originalSize[originalClass[i]]++;
+			if (taskClass[i] >= 0) taskSize[taskClass[i]]++;
+		}
+		String[] signatures = new String[n];
+		for (int i = 0; i < n; i++)
+			signatures[i] = isTask[i] + ":" + originalSize[originalClass[i]] + ":" + (taskClass[i] < 0 ? 0 : taskSize[taskClass[i]]);
+		int[] color = rank(signatures);
+		int colors = count(color);
+
+		while (true) {
+			for (int i = 0; i < n; i++) {
+				int[] neighbors = new int[n];
+				for (int j = 0; j < n; j++)
+					neighbors[j] = j == i ? -1 : relation[i][j] * n + color[j];
+				Arrays.sort(neighbors);
+				signatures[i] = color[i] + ":" + Arrays.toString(neighbors);
+			}
+			int[] newColor = rank(signatures);
+			int newColors = count(newColor);
+			color = newColor;
+			if (newColors == colors) break;
+			colors = newColors;
+		}
+		return color;
+	}
+
+	private int[] rank(String[] signatures) {
+		TreeMap<String, Integer> ranks = new TreeMap<String, Integer>();
+		for (String signature: signatures)
+			ranks.put(signature, 0);
+		int r = 0;
+		for (Map.Entry<String, Integer> entry: ranks.entrySet())
+			entry.setValue(r++);
+		int[] result = new int[signatures.length];
+		for (int i = 0; i < signatures.length; i++)
+			result[i] = ranks.get(signatures[i]);
+		return result;
+	}
+
+	private int count(int[] color) {
+		int max = -1;
+		for (int c: color)
+			if (c > max) max = c;
+		return max + 1;
+	}
+
+	/**
+	 * Explores the orderings that respect the colors, and keeps the one with the smallest code.
+	 */
+	private void search(List<List<Integer>> cells, int cell, int position, int[] current, boolean[] used,
+			int[][] relation, int[] originalClass, int[] taskClass, int[] isTask, int[] parameters, int[][] best) {
+		if (cell == cells.size()) {
+			int[] code = encode(current, relation, originalClass, taskClass, isTask, parameters);
+			if (best[0] == null || compare(code, best[0]) < 0) {
+				best[0] = code;
+				best[1] = current.clone();
+			}
+			return;
+		}
+		List<Integer> members = cells.get(cell);
+		int end = 0;
+		for (int k = 0; k <= cell; k++)
+			end += cells.get(k).size();
+		if (position == end) {
+			search(cells, cell + 1, position, current, used, relation, originalClass, taskClass, isTask, parameters, best);
+			return;
+		}
+		for (Integer v: members) {
+			if (used[v]) continue;
+			used[v] = true;
+			current[position] = v;
+			search(cells, cell, position + 1, current, used, relation, originalClass, taskClass, isTask, parameters, best);
+			used[v] = false;
+		}
+	}
+
+	private int[] encode(int[] order, int[][] relation, int[] originalClass, int[] taskClass, int[] isTask, int[] parameters) {
+		int n = order.length;
+		int[] code = new int[2 + parameters.length + 3 * n + n * n];
+		int k = 0;
+		code[k++] = parameters.length;
+		for (int parameter: parameters)
+			code[k++] = parameter;
+		code[k++] = n;
+		for (int p = 0; p < n; p++) {
+			int v = order[p];
+			code[k++] = isTask[v];
+			code[k++] = firstPosition(order, p, originalClass);
+			code[k++] = taskClass[v] < 0 ? -1 : firstPosition(order, p, taskClass);
+		}
+		for (int p = 0; p < n; p++)
+			for (int q = 0; q < n; q++)
+				code[k++] = relation[order[p]][order[q]];
+		return code;
+	}
+
+	private int firstPosition(int[] order, int p, int[] partition) {
+		for (int q = 0; q < p; q++)
+			if (partition[order[q]] == partition[order[p]])
+				return q;
+		return p;
+	}
+
+	private int compare(int[] a, int[] b) {
+		for (int i = 0; i < a.length; i++)
+			if (a[i] != b[i])
+				return a[i] < b[i] ? -1 : 1;
+		return 0;
+	}
+}
@@ -0,0 +1,202 @@
+package ee.ut.bpstruct;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import de.hpi.bpt.process.ControlFlow;
+import de.hpi.bpt.process.Gateway;
+import de.hpi.bpt.process.Node;
+import de.hpi.bpt.process.Process;
+import de.hpi.bpt.process.Task;
+import ee.ut.bpstruct.eventstruct.LatticeTooLargeException;
+import ee.ut.bpstruct.jbpt.Pair;
+import ee.ut.graph.moddec.ColoredGraph;
+
+public class SynthesisCacheTest extends TestCase {
+	private SynthesisCache cache = MaxStr.getSynthesisCache();
+	private int capacity;
+
+	protected void setUp() {
+		capacity = cache.getCapacity();
+		cache.clear();
+	}
+
+	protected void tearDown() {
+		cache.setCapacity(capacity);
+		cache.clear();
+	}
+
+	/**
+	 * Ordering relations graph of a choice between b and c, preceded by a and followed by d.
+	 * The vertices are added in the given order.
+	 */
+	private static ColoredGraph choice(String a, String b, String c, String d, String[] order) {
+		ColoredGraph orgraph = new ColoredGraph();
+		for (String label: order)
+			orgraph.addVertex(label);
+		orgraph.addEdge(a, b);
+		orgraph.addEdge(a, c);
+		orgraph.addEdge(a, d);
+		orgraph.addEdge(b, c);
+		orgraph.addEdge(c, b);
+		orgraph.addEdge(b, d);
+		orgraph.addEdge(c, d);
+		return orgraph;
+	}
+
+	/**
+	 * Ordering relations graph of a sequence of the given tasks
+	 */
+	private static ColoredGraph sequence(String... labels) {
+		ColoredGraph orgraph = new ColoredGraph();
+		for (String label: labels)
+			orgraph.addVertex(label);
+		for (int i = 0; i < labels.length; i++)
+			for (int j = i + 1; j < labels.length; j++)
+				orgraph.addEdge(labels[i], labels[j]);
+		return orgraph;
+	}
+
+	private static Map<String, Node> tasks(ColoredGraph orgraph) {
+		Map<String, Node> tasks = new HashMap<String, Node>();
+		for (Integer v: orgraph.getVertices())
+			tasks.put(orgraph.getLabel(v), new Task(orgraph.getLabel(v)));
+		return tasks;
+	}
+
+	private static Process synthesize(MaxStr maxstr, ColoredGraph orgraph) throws CannotStructureException {
+		Process proc = new Process();
+		maxstr.perform(orgraph, tasks(orgraph), new HashMap<String, Node>(), proc, new Pair());
+		return proc;
+	}
+
+	/**
+	 * @return description of the process that does not depend on node identities, where the tasks are renamed
+	 */
+	private static List<String> describe(Process proc, Map<String, String> renaming) {
+		List<String> edges = new ArrayList<String>();
+		for (ControlFlow flow: proc.getControlFlow())
+			edges.add(describe(proc, flow.getSource(), renaming) + " -> " + describe(proc, flow.getTarget(), renaming));
+		Collections.sort(edges);
+		return edges;
+	}
+
+	private static String describe(Process proc, Node node, Map<String, String> renaming) {
+		if (node instanceof Gateway) {
+			List<String> neighbors = new ArrayList<String>();
+			for (Node pred: proc.getPredecessors(node))
+				neighbors.add("<" + (pred instanceof Gateway ? "" : renaming.get(pred.getName())));
+			for (Node succ: proc.getSuccessors(node))
+				neighbors.add(">" + (succ instanceof Gateway ? "" : renaming.get(succ.getName())));
+			Collections.sort(neighbors);
+			return ((Gateway) node).getGatewayType() + neighbors.toString();
+		}
+		return renaming.get(node.getName());
+	}
+
+	public void testRelabeledHit() throws Exception {
+		Process first = synthesize(new MaxStr(), choice("a", "b", "c", "d", new String[] {"a", "b", "c", "d"}));
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.size());
+
+		ColoredGraph relabeled = choice("w", "x", "y", "z", new String[] {"z", "y", "x", "w"});
+		Process cached = synthesize(new MaxStr(), relabeled);
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		cache.setCapacity(0);
+		Process fresh = synthesize(new MaxStr(), relabeled);
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		Map<String, String> identity = new HashMap<String, String>();
+		Map<String, String> renaming = new HashMap<String, String>();
+		String[] from = {"w", "x", "y", "z"}, to = {"a", "b", "c", "d"};
+		for (int i = 0; i < from.length; i++) {
+			identity.put(to[i], to[i]);
+			renaming.put(from[i], to[i]);
+		}
+		List<String> expected = describe(fresh, renaming);
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, describe(cached, renaming));
+		assertEquals(expected, describe(first, identity));
+		for (Task task: cached.getTasks())
+			assertTrue(relabeled.inverse.containsKey(task.getName()));
+	}
+
+	public void testBoundsArePartOfTheKey() throws Exception {
+		synthesize(new MaxStr(), choice("a", "b", "c", "d", new String[] {"a", "b", "c", "d"}));
+		MaxStr bounded = new MaxStr();
+		bounded.setMaxLatticeSize(2);
+		try {
+			synthesize(bounded, choice("w", "x", "y", "z", new String[] {"w", "x", "y", "z"}));
+			fail("A template synthesized under a larger lattice bound was reused");
+		} catch (LatticeTooLargeException e) {
+			assertEquals(2, e.getLimit());
+		}
+		assertEquals(0, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+
+	public void testEviction() {
+		SynthesisCache cache = new SynthesisCache(2);
+		ColoredGraph[] graphs = {sequence("a"), sequence("a", "b"), sequence("a", "b", "c")};
+		for (ColoredGraph orgraph: graphs) {
+			SynthesisCache.Instance instance = cache.canonize(orgraph, tasks(orgraph), new HashMap<String, Node>());
+			assertNull(cache.get(instance));
+			cache.put(instance, new SynthesisCache.Template());
+			assertTrue(cache.size() <= 2);
+		}
+		assertEquals(2, cache.size());
+
+		// The least recently used graph was evicted
+		assertNull(cache.get(cache.canonize(graphs[0], tasks(graphs[0]), new HashMap<String, Node>())));
+		assertNotNull(cache.get(cache.canonize(graphs[2], tasks(graphs[2]), new HashMap<String, Node>())));
+		assertNotNull(cache.get(cache.canonize(graphs[1], tasks(graphs[1]), new HashMap<String, Node>())));
+
+		cache.setCapacity(1);
+		assertEquals(1, cache.size());
+		assertNotNull(cache.get(cache.canonize(graphs[1], tasks(graphs[1]), new HashMap<String, Node>())));
+
+		cache.setCapacity(0);
+		assertEquals(0, cache.size());
+		assertNull(cache.canonize(graphs[1], tasks(graphs[1]), new HashMap<String, Node>()));
+	}
+
+	public void testCounters() {
+		SynthesisCache cache = new SynthesisCache(SynthesisCache.DEFAULT_CAPACITY);
+		assertEquals(0.0, cache.getHitRate());
+		ColoredGraph orgraph = sequence("a", "b", "c");
+		SynthesisCache.Instance instance = cache.canonize(orgraph, tasks(orgraph), new HashMap<String, Node>(), 1);
+		assertNull(cache.get(instance));
+		cache.put(instance, new SynthesisCache.Template());
+		assertNotNull(cache.get(instance));
+
+		// Same graph under another parameter
+		assertNull(cache.get(cache.canonize(orgraph, tasks(orgraph), new HashMap<String, Node>(), 2)));
+		ColoredGraph relabeled = sequence("x", "y", "z");
+		assertNotNull(cache.get(cache.canonize(relabeled, tasks(relabeled), new HashMap<String, Node>(), 1)));
+
+		// Seven concurrent tasks cannot be told apart: 7! orderings
+		ColoredGraph concurrent = new ColoredGraph();
+		for (int i = 0; i < 7; i++)
+			concurrent.addVertex("t" + i);
+		assertNull(cache.canonize(concurrent, tasks(concurrent), new HashMap<String, Node>(), 1));
+
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(1, cache.getUncacheable());
+		assertEquals(0.4, cache.getHitRate(), 1e-9);
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getHits());
+		assertEquals(0, cache.getMisses());
+		assertEquals(0, cache.getUncacheable());
+	}
+}
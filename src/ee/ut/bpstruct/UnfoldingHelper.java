@@ -19,20 +19,15 @@ package ee.ut.bpstruct;
 import hub.top.uma.DNode;
 import hub.top.uma.DNodeSys;
 
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
-import de.hpi.bpt.graph.abs.IDirectedEdge;
 import de.hpi.bpt.hypergraph.abs.Vertex;
-import de.hpi.bpt.process.petri.Flow;
 import de.hpi.bpt.process.petri.Node;
 import de.hpi.bpt.process.petri.PetriNet;
-import de.hpi.bpt.process.petri.Place;
-import de.hpi.bpt.process.petri.Transition;
 import ee.ut.bpstruct.jbpt.PNPair;
 import ee.ut.bpstruct.unfolding.uma.BPstructBPSys;
 
@@ -40,169 +35,178 @@ import ee.ut.bpstruct.unfolding.uma.BPstructBPSys;
 public class UnfoldingHelper {
 	protected Unfolding unf;
 
+	// Rewired unfolding, and its jbpt view (built on demand)
+	protected RewiredNet net;
+	protected int[] mappedConditions;
+	protected int conditions;
+	protected Map<DNode, Integer> index;
+	protected DNode exitCond;
+	protected RewiredNet.Naming naming;
+
 	protected PetriNet graph;
-	protected List<Node> mappedConditions;
 	protected Map<DNode, Node> map;
 	protected Map<Node, DNode> rmap;
-	protected DNode exitCond;
 
 	public UnfoldingHelper(Unfolding unf) {
 		this.unf = unf;
 	}
 	
+	/**
+	 * @return jbpt view of the rewired unfolding
+	 */
 	public PetriNet getGraph() {
+		if (graph == null && net != null) {
+			Node[] nodes = new Node[net.size()];
+			map = new HashMap<DNode, Node>();
+			rmap = new HashMap<Node, DNode>();
+			graph = net.toPetriNet(naming, nodes, rmap);
+			for (Entry<DNode, Integer> entry: index.entrySet())
+				if (nodes[entry.getValue()] != null)
+					map.put(entry.getKey(), nodes[entry.getValue()]);
+		}
 		return graph;
 	}
 	
 	protected void initialize() {
-		graph = new PetriNet();
-		mappedConditions = new LinkedList<Node>();
-		map = new HashMap<DNode, Node>();
-		rmap = new HashMap<Node, DNode>();
+		net = new RewiredNet();
+		mappedConditions = new int[16];
+		conditions = 0;
+		index = new HashMap<DNode, Integer>();
 		exitCond = null;
+		graph = null;
+		map = null;
+		rmap = null;
 	}
 
 	public Node getVertex(DNode n) {
+		getGraph();
 		return map.get(n);
 	}
 
 	public DNode getDNode(Node v) {
+		getGraph();
 		return rmap.get(v);
 	}
 	
-	protected Node getCondition(DNode n) {
+	protected int getCondition(DNode n) {
 		if (n.post == null) {
 			if (exitCond == null)
 				exitCond = n;
 			n = exitCond;
 		}
-		Node condition = map.get(n);
+		Integer condition = index.get(n);
 		if (condition == null) {
-			condition = new Place(String.format("%s",n.toString()));
-			graph.addVertex(condition);
-			map.put(n, condition);
-			rmap.put(condition, n);
-			mappedConditions.add(condition);
+			condition = net.addPlace(n);
+			index.put(n, condition);
+			if (conditions == mappedConditions.length)
+				mappedConditions = Arrays.copyOf(mappedConditions, conditions * 2);
+			mappedConditions[conditions++] = condition;
 		}
 		return condition;
 	}
 
+	protected int getEvent(DNode n) {
+		Integer event = index.get(n);
+		if (event == null) {
+			event = net.addTransition(n);
+			index.put(n, event);
+		}
+		return event;
+	}
+
 	public void rewire(Set<DNode> properRepCutoffs) {
 		initialize();
-		for (DNode _event: unf.getAllEvents()) {
-			Node event = map.get(_event);
-			if (event == null) {
-				event = new Transition(String.format("\"%s\"",_event.toString()));
-				graph.addVertex(event);
-				map.put(_event, event);
-				rmap.put(event, _event);
+		naming = new RewiredNet.Naming() {
+			public String getPlaceName(DNode origin) {
+				return origin.toString();
 			}
-
-			for (DNode _cond: _event.pre) {
-				Node cond = getCondition(_cond);
-				graph.addFlow(cond, event);
+			public String getTransitionName(DNode origin) {
+				return "\"" + origin + "\"";
 			}
+		};
+		for (DNode _event: unf.getAllEvents()) {
+			int event = getEvent(_event);
+
+			for (DNode _cond: _event.pre)
+				net.addArc(getCondition(_cond), event);
 
 			for (DNode _cond: _event.post) {
 				if (_cond == null) continue;
-				Node cond = null;
-				DNode _condp = null;
+				int cond;
 				if (unf.getCutoffs().contains(_event) && (properRepCutoffs == null || !properRepCutoffs.contains(_event))) {
-					_condp = unf.elementary_ccPair.get(_cond);
-//					if (_condp == null) continue;
-					
+					DNode _condp = unf.elementary_ccPair.get(_cond);
 					cond = getCondition(_condp);
-					map.put(_cond, cond);
+					index.put(_cond, cond);
 				} else
 					cond = getCondition(_cond);
-				graph.addFlow(event, cond);
+				net.addArc(event, cond);
 			}
 		}
 
-		List<Node> tosplit = new LinkedList<Node>();
-		for (Node v: mappedConditions)
-			if (graph.getIncomingEdges(v).size() > 1 && graph.getOutgoingEdges(v).size() > 1) {
-				tosplit.add(v);
-				Node vp = new Place("_" + v.getName() + "_");
-				graph.addVertex(vp);
-				rmap.put(vp, rmap.get(v));
-				for (IDirectedEdge<Node> edge: graph.getOutgoingEdges(v))
-					edge.setSource(vp);
-				graph.addFlow(v, vp);
-			}
+		net.splitPlaces(mappedConditions, conditions, false);
 	}
 
 	public void rewire() {
 		rewire(null);
 	}
 
-
-	public void rewire2() {
+	/**
+	 * Rewires the unfolding such that the conditions produced by cutoff events are merged with the
+	 * corresponding conditions.
+	 * 
+	 * @throws CannotStructureException if a cutoff event with several postconditions is preceded by an
+	 * event with several postconditions
+	 */
+	public void rewire2() throws CannotStructureException {
 		initialize();
+		naming = new RewiredNet.Naming() {
+			public String getPlaceName(DNode origin) {
+				return origin.toString();
+			}
+			public String getTransitionName(DNode origin) {
+				return unf.getProperName(origin);
+			}
+		};
 
-		Set<Node> vertices2remove = new HashSet<Node>();
-		Set<Flow> edges2remove = new HashSet<Flow>();
 		for (DNode _event: unf.getAllEvents()) {
 			if (_event.isCutOff && _event.post.length > 1) {
 				DNode _corr = unf.getCorr(_event);
 				DNode _precondp = _event.pre[0];
 				DNode _precond = _corr.pre[0];
 				for (DNode _preevent: _precondp.pre) {
-					if (_preevent.post.length > 1) {
-						System.err.println("Check the topology of this unfolding ... seems to be very special");
-						System.exit(-1);
-					}
+					if (_preevent.post.length > 1)
+						throw new CannotStructureException("Unexpected topology of the unfolding: the cutoff event " +
+								_event + " is preceded by the event " + _preevent + ", which has several postconditions");
 					_preevent.post[0] = _precond;
 					_precond.addPreNode(_preevent);
-					graph.addFlow(map.get(_preevent), getCondition(_precond));
-					vertices2remove.add(getCondition(_precondp));
-					edges2remove.add(graph.getDirectedEdge(map.get(_preevent), getCondition(_precondp)));
+					Integer preevent = index.get(_preevent);
+					if (preevent != null) {
+						net.addArc(preevent, getCondition(_precond));
+						net.removeArc(preevent, getCondition(_precondp));
+					}
+					net.removeNode(getCondition(_precondp));
 				}
 				
 			} else {
-				Node event = map.get(_event);
-				if (event == null) {
-					event = new Transition(unf.getProperName(_event));
-					graph.addVertex(event);
-					map.put(_event, event);
-					rmap.put(event, _event);
-				}
+				int event = getEvent(_event);
 				
-				for (DNode _cond: _event.pre) {
-					Node cond = getCondition(_cond);
-					graph.addFlow(cond, event);
-				}
+				for (DNode _cond: _event.pre)
+					net.addArc(getCondition(_cond), event);
 				
 				for (DNode _cond: _event.post) {
-					Node cond = null;
+					int cond;
 					if (_cond.isCutOff) {
 						DNode _condp = unf.elementary_ccPair.get(_cond);
-//						if (_condp == null) continue;
 						cond = getCondition(_condp);
-						map.put(_cond, cond);
+						index.put(_cond, cond);
 					} else
 						cond = getCondition(_cond);
-					graph.addFlow(event, cond);
+					net.addArc(event, cond);
 				}
 			}
 		}
 		
-		graph.removeVertices(vertices2remove);
-		graph.removeEdges(edges2remove);
-		
-//		List<Node> tosplit = new LinkedList<Node>();
-		for (Node v: mappedConditions)
-			if (graph.getIncomingEdges(v).size() > 1 && graph.getOutgoingEdges(v).size() > 1) {
-//				tosplit.add(v);
-				Node vt = new Transition("_" + v.getName() + "_");
-				Node vp = new Place("_" + v.getName() + "_");
-				graph.addVertex(vp);
-				rmap.put(vp, rmap.get(v));
-				for (IDirectedEdge<Node> edge: graph.getOutgoingEdges(v))
-					edge.setSource(vp);
-				graph.addFlow(v, vt);
-				graph.addFlow(vt, vp);
-			}
+		net.splitPlaces(mappedConditions, conditions, true);
 	}
 
 	public Unfolding extractSubnetFromAbstracted(Set<PNPair> edges2,
@@ -212,6 +216,7 @@ public class UnfoldingHelper {
 		DNodeSys dnsys = this.unf.dnodesys;
 		Map<Vertex, DNode> lmap = new HashMap<Vertex, DNode>();
 
+		getGraph();
 		for (Vertex vertex: vertices2) {
 			DNode node = rmap.get(vertex);
 			if (node == null) {
@@ -2,15 +2,18 @@ package ee.ut.bpstruct;
 
 import java.io.FileNotFoundException;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import de.hpi.bpt.graph.abs.IDirectedEdge;
 import de.hpi.bpt.graph.algo.rpst.RPST;
@@ -30,8 +33,9 @@ import de.hpi.bpt.process.petri.Transition;
 import ee.ut.bpstruct.jbpt.PNPair;
 import ee.ut.bpstruct.jbpt.Pair;
 import ee.ut.bpstruct.jbpt.PlaceHolder;
+import ee.ut.bpstruct.util.Fragment;
+import ee.ut.bpstruct.util.FragmentClassifier;
 import ee.ut.bpstruct.util.GraphUtils;
-import ee.ut.bpstruct.util.PNDFSLabeler;
 import ee.ut.graph.moddec.ColoredGraph;
 import ee.ut.graph.moddec.MDTNode;
 import ee.ut.graph.moddec.MDTVisitor;
@@ -45,14 +49,42 @@ public class UnfoldingRestructurer {
 	private Node exit;
 	private Map<String, Node> tasks;
 	
-	private Set<Vertex> nonEmpty = new HashSet<Vertex>();
-	private Set<Node> alreadyUsed = new HashSet<Node>();
-	private Map<Vertex, Pair> map = new HashMap<Vertex, Pair>();
-	private Process proc = new Process();
-
+	/**
+	 * By default, sibling fragments with at least this number of edges (in total) are structured in parallel
+	 */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 64;
+	private int parallelThreshold;
+	private ForkJoinPool pool;
+
+	// Shared by all the threads: accesses are synchronized on pnet
 	private PetriNet pnet;
 	
-	private int counter = 0;
+	// Number of fragments folded in the subtree of each node of the RPST
+	private Map<RPSTNode<Flow, de.hpi.bpt.process.petri.Node>, Integer> folds;
+
+	/**
+	 * Structuring state of a subtree of the RPST: the placeholders of the fragments folded so far,
+	 * and the process fragments they stand for. The state is confined to the thread that structures
+	 * the subtree, and merged into the state of the parent once the subtree is done.
+	 */
+	private static class Context {
+		Set<Vertex> nonEmpty = new HashSet<Vertex>();
+		Map<Vertex, Pair> map = new HashMap<Vertex, Pair>();
+		Process proc = new Process();
+		// Tasks that the subtree may use as such (once): any other use gets a clone
+		Set<Node> originals = new HashSet<Node>();
+		// Number of the next placeholder folded in the subtree
+		int placeHolders;
+
+		void merge(Context other) {
+			nonEmpty.addAll(other.nonEmpty);
+			map.putAll(other.map);
+			for (Node node: other.proc.getVertices())
+				proc.addVertex(node);
+			for (ControlFlow flow: other.proc.getControlFlow())
+				proc.addControlFlow(flow.getSource(), flow.getTarget());
+		}
+	}
 	
 	public UnfoldingRestructurer(Helper helper, UnfoldingHelper unfhelper,
 			Set<Pair> edges, Set<Node> vertices, Node entry, Node exit, Map<String, Node> tasks) throws CannotStructureException {
@@ -62,6 +94,8 @@ public class UnfoldingRestructurer {
 		this.entry = entry;
 		this.exit = exit;
 		this.tasks = tasks;
+		this.parallelThreshold = helper.getParallelThreshold();
+		this.pool = helper.getForkJoinPool();
 		this.pnet = unfhelper.getGraph();
 		
 		process();
@@ -73,7 +107,11 @@ public class UnfoldingRestructurer {
 		RPSTNode<Flow, de.hpi.bpt.process.petri.Node> root = rpst.getRoot();
 		Set<PNPair> ledges = flattenEdgeSet(root.getFragment().getEdges());
 		Set<Vertex> lvertices = new HashSet<Vertex>(root.getFragment().getVertices());
-		traverse(rpst, rpst.getRoot(), ledges, lvertices);
+		folds = new HashMap<RPSTNode<Flow, de.hpi.bpt.process.petri.Node>, Integer>();
+		countFolds(rpst, root);
+		Context ctx = new Context();
+		ctx.originals.addAll(tasks.values());
+		traverse(rpst, rpst.getRoot(), ledges, lvertices, ctx);
 		
 		lvertices.clear();
 		
@@ -84,17 +122,7 @@ public class UnfoldingRestructurer {
 		
 		Vertex lentry = root.getEntry();
 		Vertex lexit = root.getExit();
-		switch (root.getType()) {
-		case P:
-			visitPolygon(ledges, lvertices, lentry, lexit);
-			break;
-		case B:
-			visitBond(ledges, lvertices, lentry, lexit);
-			break;
-		case R:
-			visitRigid(ledges, lvertices, lentry, lexit);
-			break;
-		}
+		visit(root, ledges, lvertices, lentry, lexit, ctx);
 
 		Vertex placeHolder = null;
 		for (Vertex v: lvertices)
@@ -103,9 +131,9 @@ public class UnfoldingRestructurer {
 				placeHolder = v;
 			}
 		
-		Pair pair = map.get(placeHolder);
+		Pair pair = ctx.map.get(placeHolder);
 		
-		helper.foldRigidComponent(edges, vertices, entry, exit, proc, pair.getFirst(), pair.getSecond());
+		helper.foldRigidComponent(edges, vertices, entry, exit, ctx.proc, pair.getFirst(), pair.getSecond());
 	}
 
 	private Set<PNPair> flattenEdgeSet(Collection<Flow> edges2) {
@@ -115,73 +143,180 @@ public class UnfoldingRestructurer {
 		return set;
 	}
 
+	private int countFolds(RPST<Flow, de.hpi.bpt.process.petri.Node> rpst, RPSTNode<Flow, de.hpi.bpt.process.petri.Node> node) {
+		if (node.getType() == TCType.T) return 0;
+		int count = 1;
+		for (RPSTNode<Flow, de.hpi.bpt.process.petri.Node> child: rpst.getChildren(node))
+			count += countFolds(rpst, child);
+		folds.put(node, count);
+		return count;
+	}
+
+	/**
+	 * Structures the children of "current", bottom-up. Large sets of sibling fragments are structured
+	 * in parallel, each one with its own context: the fragments are disjoint (but for their boundary
+	 * nodes). Everything that depends on the order of the siblings is decided beforehand, following
+	 * the order of the children, whether they are structured in parallel or not: each child is handed
+	 * the original of the tasks inside it (the tasks on the boundary stay with the parent), and a
+	 * range of placeholder numbers as large as the number of fragments folded in its subtree.
+	 */
 	private void traverse(RPST<Flow, de.hpi.bpt.process.petri.Node> rpst,
 			RPSTNode<Flow, de.hpi.bpt.process.petri.Node> current,
 			Set<PNPair> edges2,
-			Set<Vertex> vertices2) throws CannotStructureException {
+			Set<Vertex> vertices2, Context ctx) throws CannotStructureException {
 		if (current.getType() == TCType.T) return;
 
+		List<StructuringTask> children = new ArrayList<StructuringTask>();
+		int size = 0;
 		for (RPSTNode<Flow, de.hpi.bpt.process.petri.Node> child: rpst.getChildren(current)) {
 			if (child.getType() == TCType.T) continue;
-			Set<PNPair> ledges = flattenEdgeSet(child.getFragment().getEdges());
-			Set<Vertex> lvertices = new HashSet<Vertex>(child.getFragment().getVertices());
-			Set<PNPair> cledges = new HashSet<PNPair>(ledges);
-			traverse(rpst, child, ledges, lvertices);
-			Vertex entry = child.getEntry();
-			Vertex exit = child.getExit();
-			switch (child.getType()) {
-			case P:
-				visitPolygon(ledges, lvertices, entry, exit);
-				break;
-			case B:
-				visitBond(ledges, lvertices, entry, exit);
-				break;
-			case R:
-				visitRigid(ledges, lvertices, entry, exit);
-				break;
+			StructuringTask task = new StructuringTask(rpst, child);
+			for (Vertex v: child.getFragment().getVertices()) {
+				if (v.equals(child.getEntry()) || v.equals(child.getExit())) continue;
+				Node original = tasks.get(v.getName());
+				if (original != null && ctx.originals.remove(original))
+					task.originals.add(original);
+			}
+			children.add(task);
+			size += child.getFragment().getEdges().size();
+		}
+
+		if (children.size() > 1 && size >= parallelThreshold) {
+			int next = ctx.placeHolders;
+			for (StructuringTask child: children) {
+				child.ctx.placeHolders = next;
+				next += folds.get(child.node);
+			}
+			RecursiveAction siblings = new Siblings(children);
+			if (ForkJoinTask.inForkJoinPool())
+				siblings.invoke();
+			else
+				pool.invoke(siblings);
+			for (StructuringTask child: children)
+				if (child.error != null)
+					throw child.error;
+			for (StructuringTask child: children)
+				ctx.merge(child.ctx);
+			ctx.placeHolders = next;
+		} else
+			for (StructuringTask child: children) {
+				child.ctx = ctx;
+				child.structure();
+			}
+
+		for (StructuringTask child: children) {
+			edges2.removeAll(child.cledges);
+			vertices2.removeAll(child.node.getFragment().getVertices());
+			edges2.addAll(child.ledges);
+			vertices2.addAll(child.lvertices);
+		}
+	}
+
+	private void visit(RPSTNode<Flow, de.hpi.bpt.process.petri.Node> node, Set<PNPair> ledges,
+			Set<Vertex> lvertices, Vertex entry, Vertex exit, Context ctx) throws CannotStructureException {
+		switch (node.getType()) {
+		case P:
+			visitPolygon(ledges, lvertices, entry, exit, ctx);
+			break;
+		case B:
+			visitBond(ledges, lvertices, entry, exit, ctx);
+			break;
+		case R:
+			visitRigid(ledges, lvertices, entry, exit, ctx);
+			break;
+		}
+	}
+
+	/**
+	 * Structures (and folds) a child fragment, after its own children
+	 */
+	private class StructuringTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		RPST<Flow, de.hpi.bpt.process.petri.Node> rpst;
+		RPSTNode<Flow, de.hpi.bpt.process.petri.Node> node;
+		Context ctx = new Context();
+		Set<PNPair> ledges, cledges;
+		Set<Vertex> lvertices;
+		Set<Node> originals = new HashSet<Node>();
+		CannotStructureException error;
+
+		StructuringTask(RPST<Flow, de.hpi.bpt.process.petri.Node> rpst, RPSTNode<Flow, de.hpi.bpt.process.petri.Node> node) {
+			this.rpst = rpst;
+			this.node = node;
+		}
+
+		void structure() throws CannotStructureException {
+			ledges = flattenEdgeSet(node.getFragment().getEdges());
+			lvertices = new HashSet<Vertex>(node.getFragment().getVertices());
+			cledges = new HashSet<PNPair>(ledges);
+			Set<Node> parentOriginals = ctx.originals;
+			ctx.originals = originals;
+			try {
+				traverse(rpst, node, ledges, lvertices, ctx);
+				visit(node, ledges, lvertices, node.getEntry(), node.getExit(), ctx);
+			} finally {
+				ctx.originals = parentOriginals;
+			}
+		}
+
+		protected void compute() {
+			try {
+				structure();
+			} catch (CannotStructureException e) {
+				error = e;
 			}
-			edges2.removeAll(cledges);
-			vertices2.removeAll(child.getFragment().getVertices());
-			edges2.addAll(ledges);
-			vertices2.addAll(lvertices);
+		}
+	}
+
+	private static class Siblings extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private List<StructuringTask> tasks;
+
+		Siblings(List<StructuringTask> tasks) {
+			this.tasks = tasks;
+		}
+
+		protected void compute() {
+			invokeAll(tasks);
 		}
 	}
 	
 	private void visitRigid(Set<PNPair> edges, Set<Vertex> vertices,
-			Vertex entry2, Vertex exit2) throws CannotStructureException {		
-		Map<Vertex, List<Vertex>> incoming = new HashMap<Vertex, List<Vertex>>();
-		Map<Vertex, List<Vertex>> outgoing = new HashMap<Vertex, List<Vertex>>();
-
-		Set<Vertex> _vertices = extractSubnet(vertices, entry2, exit2,
-				incoming, outgoing);
+			Vertex entry2, Vertex exit2, Context ctx) throws CannotStructureException {		
+		Fragment<Vertex> fragment = extractSubnet(vertices, entry2, exit2);
+		FragmentClassifier<Vertex> classifier = new FragmentClassifier<Vertex>(fragment, entry2, FragmentClassifier.NODE_CLASS);
 		
-		PNDFSLabeler labeler = new PNDFSLabeler(incoming, outgoing, entry2);
-		
-		if (labeler.isCyclic()) {
-			if (!labeler.isMixedLogic())
-				processXORCyclicRigid(edges, vertices, entry2, exit2);
+		if (classifier.isCyclic()) {
+			if (!classifier.isMixedLogic())
+				processXORCyclicRigid(edges, vertices, entry2, exit2, ctx);
 			else {
 				System.err.println("Found a multi-exit loop embeded inside a parallel block ... still working in this case");
 				throw new CannotStructureException("Found a multi-exit loop embeded inside a parallel block ... still working in this case");
 			}
 		} else {
-			if (labeler.getLogic().equals(Place.class))
-				processXORAcyclicRigid(edges, vertices, entry2, exit2);
+			if (classifier.getLogic().equals(Place.class))
+				processXORAcyclicRigid(edges, vertices, entry2, exit2, ctx);
 			else
-				processGeneralRigid(edges, vertices, entry2, exit2, incoming, outgoing, _vertices);
+				processGeneralRigid(edges, vertices, entry2, exit2, fragment, ctx);
 		}
 	}
 	
 	
 	private void processGeneralRigid(Set<PNPair> edges2, Set<Vertex> vertices2,
-			Vertex entry2, Vertex exit2, Map<Vertex, List<Vertex>> incoming, Map<Vertex, List<Vertex>> outgoing, Set<Vertex> _vertices) throws CannotStructureException {
+			Vertex entry2, Vertex exit2, Fragment<Vertex> fragment, final Context ctx) throws CannotStructureException {
 						
 		final Map<String, Vertex> ltasks = new HashMap<String, Vertex>();
 		final Map<String, Vertex> clones = new HashMap<String, Vertex>();
+		Map<Vertex, List<Vertex>> incoming = new HashMap<Vertex, List<Vertex>>();
+		Map<Vertex, List<Vertex>> outgoing = new HashMap<Vertex, List<Vertex>>();
 
-		for (Vertex v: _vertices)
-			if (nonEmpty.contains(v))
+		for (int i = 0; i < fragment.size(); i++) {
+			Vertex v = fragment.getVertex(i);
+			incoming.put(v, fragment.getPredecessors(v));
+			outgoing.put(v, fragment.getSuccessors(v));
+			if (ctx.nonEmpty.contains(v))
 				ltasks.put(v.getName(), v);
+		}
 
 		PNBehavioralProfiler prof = new PNBehavioralProfiler(incoming, outgoing, entry2, ltasks, clones);
 
@@ -226,18 +361,18 @@ public class UnfoldingRestructurer {
 			public void visitLeaf(MDTNode node, String label) {
 				Vertex n = ltasks.get(label);
 //				proc.addVertex(n);
-				nestedEntry.put(node, map.get(n).getFirst());
-				nestedExit.put(node, map.get(n).getSecond());
+				nestedEntry.put(node, ctx.map.get(n).getFirst());
+				nestedExit.put(node, ctx.map.get(n).getSecond());
 			}
 			public void visitComplete(MDTNode node, Set<MDTNode> children, int color) {
 				GatewayType type = color == 0 ? GatewayType.AND : GatewayType.XOR;
 				Gateway _entry = new Gateway(type);
 				Gateway _exit = new Gateway(type);
-				proc.addVertex(_entry);
-				proc.addVertex(_exit);
+				ctx.proc.addVertex(_entry);
+				ctx.proc.addVertex(_exit);
 				for (MDTNode child : children) {
-					proc.addControlFlow(_entry, nestedEntry.get(child));
-					proc.addControlFlow(nestedExit.get(child), _exit);
+					ctx.proc.addControlFlow(_entry, nestedEntry.get(child));
+					ctx.proc.addControlFlow(nestedExit.get(child), _exit);
 				}
 				nestedEntry.put(node, _entry);
 				nestedExit.put(node, _exit);				
@@ -248,7 +383,7 @@ public class UnfoldingRestructurer {
 					MDTNode _target = children.get(i);
 					Node source = nestedExit.get(_source);
 					Node target = nestedEntry.get(_target);
-					proc.addControlFlow(source, target);
+					ctx.proc.addControlFlow(source, target);
 				}
 
 				MDTNode _entry = children.get(0);
@@ -278,6 +413,8 @@ public class UnfoldingRestructurer {
 				
 				Pair pair = new Pair();
 				MaxStr maxstr = new MaxStr();
+				maxstr.setConflictSetLimit(helper.getConflictSetLimit());
+				maxstr.setForkJoinPool(helper.getForkJoinPool());
 				Process innerProc = new Process();
 				maxstr.perform(subgraph, _tasks, _clones, innerProc, pair);
 				
@@ -288,16 +425,16 @@ public class UnfoldingRestructurer {
 						ControlFlow in = innerProc.getIncomingEdges(n).iterator().next();
 						ControlFlow out = innerProc.getOutgoingEdges(n).iterator().next();
 						
-						in.setTarget(map.get(v).getFirst());
-						out.setSource(map.get(v).getSecond());
+						in.setTarget(ctx.map.get(v).getFirst());
+						out.setSource(ctx.map.get(v).getSecond());
 						toremove.add(n);
 					} else if (clonesMap.containsKey(n)) {
 						Vertex v = clonesMap.get(n);
 						ControlFlow in = innerProc.getIncomingEdges(n).iterator().next();
 						ControlFlow out = innerProc.getOutgoingEdges(n).iterator().next();
 						
-						in.setTarget(map.get(v).getFirst());
-						out.setSource(map.get(v).getSecond());
+						in.setTarget(ctx.map.get(v).getFirst());
+						out.setSource(ctx.map.get(v).getSecond());
 						toremove.add(n);						
 					}
 				}
@@ -305,7 +442,7 @@ public class UnfoldingRestructurer {
 				innerProc.removeVertices(toremove);
 				
 				for (Gateway gw: innerProc.getGateways())
-					proc.addGateway(gw);
+					ctx.proc.addGateway(gw);
 				for (ControlFlow flow: innerProc.getControlFlow()) {
 					Node src = flow.getSource();
 					Node tgt = flow.getTarget();
@@ -319,7 +456,7 @@ public class UnfoldingRestructurer {
 						tgt = nestedEntry.get(mdtnode);
 					}
 					
-					proc.addControlFlow(src, tgt);
+					ctx.proc.addControlFlow(src, tgt);
 				}
 				
 				nestedEntry.put(node, pair.getFirst());
@@ -348,74 +485,74 @@ public class UnfoldingRestructurer {
 		Node first = nestedEntry.get(mdec.getRoot());
 		Node last = nestedExit.get(mdec.getRoot());
 
-		foldComponent(edges2, vertices2, entry2, exit2, first, last, false);		
+		foldComponent(edges2, vertices2, entry2, exit2, first, last, false, ctx);		
 
 	}
 
-	private Set<Vertex> extractSubnet(Set<Vertex> vertices2, Vertex entry2,
-			Vertex exit2, Map<Vertex, List<Vertex>> incoming,
-			Map<Vertex, List<Vertex>> outgoing) {
-		Set<Vertex> _vertices = new HashSet<Vertex>();
+	private Fragment<Vertex> extractSubnet(Set<Vertex> vertices2, Vertex entry2, Vertex exit2) {
+		Fragment<Vertex> fragment = new Fragment<Vertex>();
 		Set<Flow> _edges = new HashSet<Flow>();
-		for (Vertex v: vertices2) {
-			if (!v.equals(exit2))
-				_edges.addAll(pnet.getOutgoingEdges((de.hpi.bpt.process.petri.Node) v));
-			if (!v.equals(entry2))
-				_edges.addAll(pnet.getIncomingEdges((de.hpi.bpt.process.petri.Node) v));
+		synchronized (pnet) {
+			for (Vertex v: vertices2) {
+				if (!v.equals(exit2))
+					_edges.addAll(pnet.getOutgoingEdges((de.hpi.bpt.process.petri.Node) v));
+				if (!v.equals(entry2))
+					_edges.addAll(pnet.getIncomingEdges((de.hpi.bpt.process.petri.Node) v));
+			}
 		}
 				
+		// Vertices of the fragment, and the vertices attached to its inner vertices (e.g. the places
+		// added around a placeholder): entry2 and exit2 may also be connected to sibling fragments
+		Set<Vertex> _vertices = new HashSet<Vertex>(vertices2);
 		for (Flow f: _edges) {
-			Vertex src = f.getSource();
-			Vertex tgt = f.getTarget();
-			if (!_vertices.contains(src)) {
-				_vertices.add(src);
-				incoming.put(src, new LinkedList<Vertex>());
-				outgoing.put(src, new LinkedList<Vertex>());
-			}
-			if (!_vertices.contains(tgt)) {
-				_vertices.add(tgt);
-				incoming.put(tgt, new LinkedList<Vertex>());
-				outgoing.put(tgt, new LinkedList<Vertex>());
-			}
-			outgoing.get(src).add(tgt);
-			incoming.get(tgt).add(src);
+			if (!isBoundary(f.getSource(), entry2, exit2) && vertices2.contains(f.getSource()))
+				_vertices.add(f.getTarget());
+			if (!isBoundary(f.getTarget(), entry2, exit2) && vertices2.contains(f.getTarget()))
+				_vertices.add(f.getSource());
 		}
-		return _vertices;
+		for (Flow f: _edges)
+			if (_vertices.contains(f.getSource()) && _vertices.contains(f.getTarget()))
+				fragment.addEdge(f.getSource(), f.getTarget());
+		return fragment;
+	}
+
+	private static boolean isBoundary(Vertex v, Vertex entry2, Vertex exit2) {
+		return v.equals(entry2) || v.equals(exit2);
 	}
 
 	private void processXORCyclicRigid(Set<PNPair> edges2,
-			Set<Vertex> vertices2, Vertex entry2, Vertex exit2) {
+			Set<Vertex> vertices2, Vertex entry2, Vertex exit2, Context ctx) {
 		for (Vertex v: vertices2)
-			if (!map.containsKey(v)) {
+			if (!ctx.map.containsKey(v)) {
 				Gateway gw = new Gateway(GatewayType.XOR);
-				proc.addGateway(gw);
-				map.put(v, new Pair(gw, gw));
+				ctx.proc.addGateway(gw);
+				ctx.map.put(v, new Pair(gw, gw));
 			}
 		
 		for (PNPair e: edges2) {
-			Node src = map.get(e.getSource()).getSecond();
-			Node tgt = map.get(e.getTarget()).getFirst();
-			proc.addControlFlow(src, tgt);
+			Node src = ctx.map.get(e.getSource()).getSecond();
+			Node tgt = ctx.map.get(e.getTarget()).getFirst();
+			ctx.proc.addControlFlow(src, tgt);
 		}
 		
-		Node first = map.get(entry2).getFirst();
-		Node last = map.get(exit2).getSecond();
-		map.remove(entry2);
-		map.remove(exit2);
-		foldComponent(edges2, vertices2, entry2, exit2, first, last, false);
+		Node first = ctx.map.get(entry2).getFirst();
+		Node last = ctx.map.get(exit2).getSecond();
+		ctx.map.remove(entry2);
+		ctx.map.remove(exit2);
+		foldComponent(edges2, vertices2, entry2, exit2, first, last, false, ctx);
 	}
 	
 	private void processXORAcyclicRigid(Set<PNPair> edges2,
-			Set<Vertex> vertices2, Vertex entry2, Vertex exit2) {
+			Set<Vertex> vertices2, Vertex entry2, Vertex exit2, Context ctx) {
 		Map<Vertex, Node> linstances = new HashMap<Vertex, Node>();
 		Map<Vertex, List<Vertex>> adjlist = GraphUtils.edgelist2adjlist(edges2, exit2);
 		
 		Gateway first = new Gateway(GatewayType.XOR);
-		proc.addGateway(first);
+		ctx.proc.addGateway(first);
 		linstances.put(entry2, first);
 		
 		Gateway last = new Gateway(GatewayType.XOR);
-		proc.addGateway(last);
+		ctx.proc.addGateway(last);
 		linstances.put(exit2, last);
 		
 		Stack<Vertex> worklist = new Stack<Vertex>();
@@ -423,22 +560,20 @@ public class UnfoldingRestructurer {
 		while (!worklist.isEmpty()) {
 			Vertex _curr = worklist.pop();
 			Node curr = null;
-			if (map.containsKey(_curr))
-				curr = map.get(_curr).getSecond();
+			if (ctx.map.containsKey(_curr))
+				curr = ctx.map.get(_curr).getSecond();
 			else
 				curr = linstances.get(_curr);
 			
 			for (Vertex _succ: adjlist.get(_curr)) {
 				Node succ = null;
 				if (!_succ.equals(exit2)) {
-					if (map.containsKey(_succ)) {
-						succ = map.get(_succ).getFirst();							
+					if (ctx.map.containsKey(_succ)) {
+						succ = ctx.map.get(_succ).getFirst();							
 					} else if (tasks.containsKey(_succ.getName())) {
 						succ = tasks.get(_succ.getName());
-						if (alreadyUsed.contains(succ))
+						if (!ctx.originals.remove(succ))
 							succ = (Node)((PlaceHolder) succ).clone();
-						else
-							alreadyUsed.add(succ);
 					} else if (!linstances.containsKey(_succ)) {
 						succ = new Gateway(GatewayType.XOR);
 					} else if (linstances.containsKey(_succ)) {
@@ -455,20 +590,20 @@ public class UnfoldingRestructurer {
 				} else {
 					succ = linstances.get(exit2);
 				}
-				proc.addControlFlow(curr, succ);
+				ctx.proc.addControlFlow(curr, succ);
 			}
 		}
-		foldComponent(edges2, vertices2, entry2, exit2, first, last, false);
+		foldComponent(edges2, vertices2, entry2, exit2, first, last, false, ctx);
 	}
 
 	private void visitBond(Set<PNPair> edges, Set<Vertex> vertices,
-			Vertex entry2, Vertex exit2) {
+			Vertex entry2, Vertex exit2, Context ctx) {
 		GatewayType type = entry2 instanceof Place ? GatewayType.XOR : GatewayType.AND;
 		Gateway first = new Gateway(type);
 		Gateway last = new Gateway(type);
 		
-		proc.addGateway(first);
-		proc.addGateway(last);
+		ctx.proc.addGateway(first);
+		ctx.proc.addGateway(last);
 		
 		for (PNPair e: edges) {
 			Node src = null, tgt = null;
@@ -477,23 +612,23 @@ public class UnfoldingRestructurer {
 			else if (e.getFirst().equals(exit2))
 				src = last;
 			else
-				src = map.get(e.getFirst()).getSecond();
+				src = ctx.map.get(e.getFirst()).getSecond();
 			
 			if (e.getSecond().equals(exit2))
 				tgt = last;
 			else if (e.getSecond().equals(entry2))
 				tgt = first;
 			else
-				tgt = map.get(e.getSecond()).getFirst();
+				tgt = ctx.map.get(e.getSecond()).getFirst();
 			
-			proc.addControlFlow(src, tgt);
+			ctx.proc.addControlFlow(src, tgt);
 		}
 		
-		foldComponent(edges, vertices, entry2, exit2, first, last, false);
+		foldComponent(edges, vertices, entry2, exit2, first, last, false, ctx);
 	}
 
 	private void visitPolygon(Set<PNPair> edges, Set<Vertex> vertices,
-			Vertex entry2, Vertex exit2) {				
+			Vertex entry2, Vertex exit2, Context ctx) {				
 		Map<Vertex, Vertex> successor = new HashMap<Vertex, Vertex>();
 		for (PNPair e: edges) successor.put(e.getSource(), e.getTarget());
 		
@@ -505,24 +640,22 @@ public class UnfoldingRestructurer {
 		while (!current.equals(exit2)) {
 			if (tasks.containsKey(current.getName())) {
 				Node task = tasks.get(current.getName());
-				if (alreadyUsed.contains(task))
+				if (!ctx.originals.remove(task))
 					task = (Node)((PlaceHolder) task).clone();
-				else
-					alreadyUsed.add(task);
-				proc.addVertex(task);
+				ctx.proc.addVertex(task);
 				if (first == null)
 					first = last = task;
 				else {
-					proc.addControlFlow(last, task);
+					ctx.proc.addControlFlow(last, task);
 					last = task;
 				}
-			} else if (map.containsKey(current)) {
-				Pair pair = map.get(current);
+			} else if (ctx.map.containsKey(current)) {
+				Pair pair = ctx.map.get(current);
 				
 				if (first == null)
 					first = pair.getFirst();
 				else
-					proc.addControlFlow(last, pair.getFirst());
+					ctx.proc.addControlFlow(last, pair.getFirst());
 				last = pair.getSecond();
 			}
 			current = successor.get(current);
@@ -535,23 +668,21 @@ public class UnfoldingRestructurer {
 			empty = true;
 		}
 		
-		foldComponent(edges, vertices, entry2, exit2, first, last, empty);
+		foldComponent(edges, vertices, entry2, exit2, first, last, empty, ctx);
 	}
 
 	private void foldComponent(Set<PNPair> edges, Set<Vertex> vertices,
-			Vertex entry2, Vertex exit2, Node first, Node last, boolean empty) {
-		
-		for (Vertex v: vertices)
-			if (v.equals(entry2) || v.equals(exit2)) continue;
-			else pnet.removeVertex((de.hpi.bpt.process.petri.Node) v);
-		
-
-		Transition placeHolder = new Transition("_PlaceHolder" + counter++);
-		map.put(placeHolder, new Pair(first, last));
+			Vertex entry2, Vertex exit2, Node first, Node last, boolean empty, Context ctx) {
+		Transition placeHolder = new Transition("_PlaceHolder" + ctx.placeHolders++);
+		ctx.map.put(placeHolder, new Pair(first, last));
 		
 		if (!empty)
-			nonEmpty.add(placeHolder);
-		{
+			ctx.nonEmpty.add(placeHolder);
+		synchronized (pnet) {
+			for (Vertex v: vertices)
+				if (v.equals(entry2) || v.equals(exit2)) continue;
+				else pnet.removeVertex((de.hpi.bpt.process.petri.Node) v);
+
 			Place pred = null;
 			if (entry2 instanceof Place)
 				pred = (Place)entry2;
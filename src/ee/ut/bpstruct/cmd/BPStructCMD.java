@@ -1,8 +1,6 @@
 package ee.ut.bpstruct.cmd;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintStream;
 
@@ -11,10 +9,11 @@ import org.kohsuke.args4j.CmdLineParser;
 
 import de.hpi.bpt.process.Gateway;
 import de.hpi.bpt.process.Process;
-import de.hpi.bpt.process.serialize.JSON2Process;
-import de.hpi.bpt.process.serialize.Process2DOT;
-import de.hpi.bpt.process.serialize.Process2JSON;
+import ee.ut.bpstruct.BinaryCodec;
 import ee.ut.bpstruct.Restructurer;
+import ee.ut.bpstruct.util.DOTProcessWriter;
+import ee.ut.bpstruct.util.JSONProcessReader;
+import ee.ut.bpstruct.util.JSONProcessWriter;
 
 /**
  * BPStruct Command Line Tool
@@ -25,6 +24,7 @@ import ee.ut.bpstruct.Restructurer;
  *    java -jar bpstruct.jar [options] <inputmodel>
  * Options:
  *    -dot       : Generate DOT file
+ *    -bin       : Save the output model in binary format
  *    -odir FILE : Output directory
  */
 public class BPStructCMD {
@@ -54,18 +54,12 @@ public class BPStructCMD {
 			PrintStream out = System.out;				
 			System.setOut(new PrintStream("bpstruct.log"));
 			
-			String line;
-			BufferedReader in = new BufferedReader(new FileReader(ifile));
-			StringBuilder strb = new StringBuilder();
-			while ((line = in.readLine()) != null)
-				strb.append(line);
-			Process proc = JSON2Process.convert(strb.toString());
+			// Input models are either binary (see BinaryCodec) or JSON
+			Process proc = BinaryCodec.isBinary(ifile) ? BinaryCodec.readProcess(ifile) : JSONProcessReader.parse(ifile);
 
 			if (options.dot) { // serialize given model to DOT format
 				File ofile = new File(options.odir, String.format("%s.dot", BPStructCMD.getFileNameWithoutExtension(name)));
-				PrintStream outstr = new PrintStream(ofile);
-				outstr.print(Process2DOT.convert(proc));
-				outstr.close();
+				DOTProcessWriter.write(proc, ofile);
 				out.printf("DOT file with input model serialized in: '%s'\n", ofile.getPath());
 			} 
 			else { // structure model
@@ -78,11 +72,15 @@ public class BPStructCMD {
 				Restructurer str = new Restructurer(proc);
 				
 				if (str.perform()) {
-					File ofile = new File(options.odir, String.format("%s.struct.json", BPStructCMD.getFileNameWithoutExtension(name)));
-					PrintStream outstr = new PrintStream(ofile);
-					outstr.print(Process2JSON.convert(str.proc));
-					outstr.close();
-					out.printf("JSON file with output model serialized in: '%s'\n", ofile.getPath());
+					if (options.bin) {
+						File ofile = new File(options.odir, String.format("%s.struct.bin", BPStructCMD.getFileNameWithoutExtension(name)));
+						BinaryCodec.write(str.proc, ofile);
+						out.printf("Binary file with output model serialized in: '%s'\n", ofile.getPath());
+					} else {
+						File ofile = new File(options.odir, String.format("%s.struct.json", BPStructCMD.getFileNameWithoutExtension(name)));
+						JSONProcessWriter.write(str.proc, ofile);
+						out.printf("JSON file with output model serialized in: '%s'\n", ofile.getPath());
+					}
 				}
 				else
 					out.println("Model cannot be restructured");
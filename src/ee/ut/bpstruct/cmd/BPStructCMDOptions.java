@@ -14,6 +14,9 @@ public class BPStructCMDOptions {
 	@Option(name="-dot",usage="Generate DOT file")
 	boolean dot = false;
 
+	@Option(name="-bin",usage="Save the output model in binary format")
+	boolean bin = false;
+
 	@Argument
 	List<String> arguments = new LinkedList<String>();
 }
@@ -16,43 +16,52 @@
  */
 package ee.ut.bpstruct.eventstruct;
 
-import java.util.HashSet;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 
 import ee.ut.graph.moddec.ColoredGraph;
 
+/**
+ * Generates the lattice of configurations of the event structure given by an ordering relations graph.
+ * Configurations are packed as bitsets over the vertex ids. The lattice is explored lazily (i.e. on
+ * the first call to getLattice) and its size is bounded: a LatticeTooLargeException is raised when the
+ * number of nodes exceeds the limit.
+ * 
+ * When only the prime event structure is needed, computePrimeEventStructure avoids keeping the whole
+ * lattice in memory.
+ */
 public class ConfGenerator {
+	public static final int DEFAULT_MAX_SIZE = 1 << 18;
+	
 	ColoredGraph g;
-//	Map<Integer, Set<Integer>> icausal;
+	int maxSize;
 	TupleDAG dag;
-	public ConfGenerator(ColoredGraph g, //Map<Integer, Set<Integer>> icausal, 
-			String modelName) {
-		this.g = g;
-//		this.icausal = icausal;
-		this.dag = new TupleDAG();
-
-		Set<Tuple> queue = new LinkedHashSet<Tuple>();
-		Set<Tuple> lattice = new HashSet<Tuple>();
+	
+	// Relations packed as bitsets, e.g. conflict[v] is the set of vertices in conflict with v
+	private BitSet[] conflict;
+	private BitSet[] causalPredecessors;
+	private BitSet[] concurrent;
+	
+	public ConfGenerator(ColoredGraph g, String modelName) {
+		this(g, modelName, DEFAULT_MAX_SIZE);
+	}
 
-		Tuple root = new Tuple(new LinkedHashSet<Integer>(), new HashSet<Integer>(), new HashSet<Integer>(), null);
-		
-		for (Integer v: g.vertices)
-			root.getSecond().add(v);
-		
-		queue.add(root);
-		
-		while (!queue.isEmpty()) {
-			Tuple tuple = queue.iterator().next();
-			queue.remove(tuple);
-			lattice.add(tuple);
-			Set<Tuple> succs = computeSuccessors(tuple);
-			for (Tuple succ: succs)
-				dag.add(tuple, succ);
-			succs.removeAll(lattice);
-			queue.addAll(succs);
-		}		
-		dag.pack();
+	public ConfGenerator(ColoredGraph g, String modelName, int maxSize) {
+		this.g = g;
+		this.maxSize = maxSize;
+	}
+	
+	public TupleDAG getLattice() throws LatticeTooLargeException {
+		if (dag == null) {
+			TupleDAG lattice = new TupleDAG();
+			explore(lattice);
+			lattice.pack();
+			dag = lattice;
+		}
 		
 //		try {
 //			PrintStream out = new PrintStream(String.format("output/lattice_%s.dot", modelName));
@@ -60,42 +69,149 @@ public class ConfGenerator {
 //		} catch (FileNotFoundException e) {
 //			e.printStackTrace();
 //		}
+		return dag;
 	}
 	
-	public TupleDAG getLattice() {
-		return dag;
+	/**
+	 * Breadth-first exploration of the lattice. Tuples reached from several parents are
+	 * detected through the (canonical) hash code of the packed configurations.
+	 */
+	private void explore(TupleDAG lattice) throws LatticeTooLargeException {
+		Tuple root = init();
+		
+		LinkedList<Tuple> queue = new LinkedList<Tuple>();
+		queue.add(root);
+		
+		while (!queue.isEmpty()) {
+			Tuple tuple = queue.removeFirst();
+			BitSet second = tuple.second;
+			for (int v = second.nextSetBit(0); v >= 0; v = second.nextSetBit(v + 1)) {
+				if (!isSuccessor(tuple, v)) continue;
+				Tuple succ = packSuccessor(tuple, v);
+				Tuple existing = lattice.get(succ);
+				if (existing == null) {
+					if (lattice.size() >= maxSize)
+						throw new LatticeTooLargeException(maxSize);
+					queue.add(succ);
+				} else
+					succ = existing;
+				lattice.add(tuple, succ);
+			}
+		}
 	}
 	
-	private Set<Tuple> computeSuccessors(Tuple tuple) {
-		Set<Tuple> successors = new HashSet<Tuple>();
-		Set<Integer> d1 = tuple.first;
+	/**
+	 * Computes the ordering relations graph of the prime event structure without materializing the
+	 * lattice. The lattice is explored level by level (i.e. by size of configurations): all the parents
+	 * of a configuration are in the previous level, so prime configurations (those having exactly one
+	 * parent) are known as soon as a level is complete. Only the current level and the primes are kept.
+	 * 
+	 * The result is the same as the one of getLattice().computeORG(g, labelMap): one prime is reachable
+	 * from another if its configuration includes the other's, and two primes have no common upper bound
+	 * if their configurations are in conflict.
+	 */
+	public ColoredGraph computePrimeEventStructure(Map<String, String> labelMap) throws LatticeTooLargeException {
+		List<Tuple> primes = new ArrayList<Tuple>();
+		List<Tuple> level = new ArrayList<Tuple>();
+		level.add(init());
+		int explored = 1;
 		
-//		if (d1.isEmpty()) {
-//			for (Integer v: tuple.second)
-//				if (!hasImmediatePredecessorIn(tuple.second, v))
-//					successors.add(packSuccessor(g, tuple, v));
-//		} else {
-//			for (Integer v: tuple.second)
-//				if (hasImmediatePredecessorIn(d1, v)  && !hasConflictingPeerIn(d1, v))
-//					successors.add(packSuccessor(g, tuple, v));
-//		}
+		while (!level.isEmpty()) {
+			Map<Tuple, Integer> parents = new LinkedHashMap<Tuple, Integer>();
+			for (Tuple tuple: level) {
+				BitSet second = tuple.second;
+				for (int v = second.nextSetBit(0); v >= 0; v = second.nextSetBit(v + 1)) {
+					if (!isSuccessor(tuple, v)) continue;
+					Tuple succ = packSuccessor(tuple, v);
+					Integer count = parents.get(succ);
+					if (count == null) {
+						if (explored++ >= maxSize)
+							throw new LatticeTooLargeException(maxSize);
+						parents.put(succ, 1);
+					} else
+						parents.put(succ, count + 1);
+				}
+			}
+			level = new ArrayList<Tuple>(parents.size());
+			for (Map.Entry<Tuple, Integer> entry: parents.entrySet()) {
+				level.add(entry.getKey());
+				if (entry.getValue() == 1)
+					primes.add(entry.getKey());
+			}
+		}
+		
+		ColoredGraph orgraph = new ColoredGraph();
+		String[] names = new String[primes.size()];
+		for (int i = 0; i < names.length; i++) {
+			Tuple prime = primes.get(i);
+			names[i] = prime.toString();
+			labelMap.put(names[i], g.getLabel(prime.rep));
+			orgraph.addVertex(names[i]);
+		}
+		
+		BitSet tmp = new BitSet();
+		for (int i = 0; i < names.length; i++) {
+			BitSet first0 = primes.get(i).first;
+			for (int j = 0; j < names.length; j++) {
+				if (i == j) continue;
+				Tuple t1 = primes.get(j);
+				// causality: first0 is strictly included in the configuration of t1
+				tmp.clear();
+				tmp.or(first0);
+				tmp.andNot(t1.first);
+				boolean causal = tmp.isEmpty() && !first0.equals(t1.first);
+				if (causal || first0.intersects(t1.third))
+					orgraph.addEdge(names[i], names[j]);
+			}
+		}
+		return orgraph;
+	}
+	
+	private Tuple init() {
+		packRelations();
 		
-		for (Integer v: tuple.second)
-			if (d1.isEmpty() || hasPredecessorIn(d1, v) || hasConcurrentPeerIn(d1, v)) {
-				boolean hasPredecessor = false;
-				boolean hasExternalConflictingPredecessor = false;
-				for (Integer b: tuple.second)
-					if (areCausal(b, v)) {
-						hasPredecessor = true;
-						hasExternalConflictingPredecessor = hasConflictingPeerIn(d1, b);
-						if (hasExternalConflictingPredecessor) break;
-					}
-				if (hasExternalConflictingPredecessor || !hasPredecessor)
-					successors.add(packSuccessor(g, tuple, v));
+		BitSet all = new BitSet();
+		for (Integer v: g.vertices)
+			all.set(v);
+		return new Tuple(new BitSet(), all, new BitSet(), null);
+	}
+	
+	private void packRelations() {
+		int size = 0;
+		for (Integer v: g.vertices)
+			if (v >= size) size = v + 1;
+		conflict = new BitSet[size];
+		causalPredecessors = new BitSet[size];
+		concurrent = new BitSet[size];
+		for (Integer v: g.vertices) {
+			conflict[v] = new BitSet();
+			causalPredecessors[v] = new BitSet();
+			concurrent[v] = new BitSet();
+		}
+		for (Integer b: g.vertices)
+			for (Integer c: g.vertices) {
+				if (areConflicting(b, c)) conflict[b].set(c);
+				if (areCausal(c, b)) causalPredecessors[b].set(c);
+				if (areConcurrent(b, c)) concurrent[b].set(c);
 			}
-		return successors;
 	}
 	
+	private boolean isSuccessor(Tuple tuple, int v) {
+		BitSet d1 = tuple.first;
+		if (!(d1.isEmpty() || d1.intersects(causalPredecessors[v]) || d1.intersects(concurrent[v])))
+			return false;
+		
+		boolean hasPredecessor = false;
+		boolean hasExternalConflictingPredecessor = false;
+		BitSet predecessors = causalPredecessors[v];
+		for (int b = predecessors.nextSetBit(0); b >= 0; b = predecessors.nextSetBit(b + 1))
+			if (tuple.second.get(b)) {
+				hasPredecessor = true;
+				hasExternalConflictingPredecessor = d1.intersects(conflict[b]);
+				if (hasExternalConflictingPredecessor) break;
+			}
+		return hasExternalConflictingPredecessor || !hasPredecessor;
+	}
 	
 	private boolean areConflicting(Integer b, Integer c) {
 		return g.hasEdge(b, c) && g.hasEdge(c, b);
@@ -106,48 +222,18 @@ public class ConfGenerator {
 	private boolean areCausal(Integer b, Integer c) {
 		return g.hasEdge(b, c) && !g.hasEdge(c, b);
 	}
-	
-	private boolean hasConflictingPeerIn(Set<Integer> d1, Integer b) {
-		for (Integer c: d1)
-			if (areConflicting(b, c))
-				return true;
-		return false;
-	}
-
-
-//	private boolean hasImmediatePredecessorIn(Set<Integer> d1, Integer v) {
-//		for (Integer a: d1)
-//			if (icausal.get(a).contains(v))
-//				return true;		
-//		return false;
-//	}
-	
-	private boolean hasPredecessorIn(Set<Integer> d1, Integer v) {
-		for (Integer a: d1)
-			if (areCausal(a, v))
-				return true;		
-		return false;
-	}	
-
-	private boolean hasConcurrentPeerIn(Set<Integer> d1, Integer v) {
-		for (Integer a: d1)
-			if (areConcurrent(a, v))
-				return true;		
-		return false;		
-	}
 
-	private Tuple packSuccessor(ColoredGraph g, Tuple tuple, Integer v) {
-		Tuple newtuple = (Tuple) tuple.clone();
-		newtuple.rep = v;
-		newtuple.first.add(v);
-		newtuple.second.remove(v);
-		
-		for (Integer w: tuple.second)
-			if (g.hasEdge(v, w) && g.hasEdge(w, v)) {
-				newtuple.second.remove(w);
-				newtuple.third.add(w);
-			}
+	private Tuple packSuccessor(Tuple tuple, int v) {
+		BitSet first = (BitSet) tuple.first.clone();
+		first.set(v);
+		BitSet conflicting = (BitSet) tuple.second.clone();
+		conflicting.and(conflict[v]);
+		BitSet second = (BitSet) tuple.second.clone();
+		second.clear(v);
+		second.andNot(conflicting);
+		BitSet third = (BitSet) tuple.third.clone();
+		third.or(conflicting);
 		
-		return newtuple;
+		return new Tuple(first, second, third, v);
 	}	
 }
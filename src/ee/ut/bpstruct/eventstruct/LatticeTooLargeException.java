@@ -0,0 +1,41 @@
+/* 
+ * Copyright (C) 2011 - Luciano Garcia Banuelos, Artem Polyvyanyy
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package ee.ut.bpstruct.eventstruct;
+
+import ee.ut.bpstruct.CannotStructureException;
+
+/**
+ * Signals that the configuration lattice of an event structure has more nodes than allowed.
+ */
+public class LatticeTooLargeException extends CannotStructureException {
+
+	private static final long serialVersionUID = 1L;
+	
+	private int limit;
+
+	public LatticeTooLargeException(int limit) {
+		super("FAIL: Configuration lattice exceeds " + limit + " nodes");
+		this.limit = limit;
+	}
+	
+	/**
+	 * @return maximum number of lattice nodes that was exceeded
+	 */
+	public int getLimit() {
+		return limit;
+	}
+}
@@ -0,0 +1,219 @@
+package ee.ut.bpstruct.eventstruct;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.hpi.bpt.hypergraph.abs.Vertex;
+
+/**
+ * Builds the partially ordered set of configurations of an ordering relations graph.
+ *
+ * Configurations are packed as bitsets over the events of the ordering relations graph, so that each
+ * configuration is enumerated exactly once (i.e. regardless of the order in which its events are added).
+ * Covering edges are derived in a single pass: the configurations covered by a configuration are those
+ * obtained by removing one of its events.
+ *
+ * As in POSet, every configuration is augmented with the artificial event _I_, a new (empty) root is
+ * added and every maximal configuration (i.e. one that cannot be extended) is augmented with _O_.
+ * The builder has no side effects: GML serialization is optional and streamed to a Writer.
+ */
+public class POSetBuilder {
+	OrderingRelationsGraph org;
+
+	Vertex[] events;
+	Vertex start = new Vertex("_I_");
+	Vertex end = new Vertex("_O_");
+
+	private BitSet[] conflict;
+	private BitSet[] causalPredecessors;
+	private BitSet[] enablers;
+
+	private List<BitSet> configurations;
+	private Map<BitSet, Integer> indexes;
+	private BitSet maximal;
+
+	public POSetBuilder(OrderingRelationsGraph org) {
+		this.org = org;
+	}
+
+	/**
+	 * Receives the nodes and covering edges of the poset. Nodes are reported before any of their edges.
+	 */
+	interface Visitor {
+		void node(int id, BitSet configuration, boolean start, boolean end) throws IOException;
+		void edge(int src, int tgt) throws IOException;
+	}
+
+	/**
+	 * @return number of configurations of the ordering relations graph (i.e. without augmentation)
+	 */
+	public int getConfigurationCount() {
+		enumerate();
+		return configurations.size();
+	}
+
+	public POSet build() {
+		POSet poset = new POSet();
+		populate(poset);
+		return poset;
+	}
+
+	void populate(final POSet poset) {
+		final Map<Integer, Vertex> vertices = new HashMap<Integer, Vertex>();
+		try {
+			visit(new Visitor() {
+				public void node(int id, BitSet configuration, boolean s, boolean e) {
+					POSet.Event event = poset.new Event();
+					for (int i = configuration.nextSetBit(0); i >= 0; i = configuration.nextSetBit(i + 1))
+						event.add(events[i]);
+					if (s) event.add(start);
+					if (e) event.add(end);
+
+					Vertex v = new Vertex(label(configuration, s, e));
+					v.setTag(event);
+					vertices.put(id, v);
+				}
+				public void edge(int src, int tgt) {
+					poset.addEdge(vertices.get(src), vertices.get(tgt));
+				}
+			});
+		} catch (IOException e) {
+			// Not thrown: the visitor does no I/O
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Streams the poset in GML format (the same format used by GMLUtils).
+	 */
+	public void writeGML(final Writer out) throws IOException {
+		out.write("Creator \"jbpt.jar\"\ndirected 0\ngraph [\n");
+		visit(new Visitor() {
+			public void node(int id, BitSet configuration, boolean s, boolean e) throws IOException {
+				out.write(String.format("node [ id %d label \"%s\" ]\n", id, label(configuration, s, e)));
+			}
+			public void edge(int src, int tgt) throws IOException {
+				out.write(String.format("edge [ source %d target %d ]\n", src, tgt));
+			}
+		});
+		out.write("]\n");
+		out.flush();
+	}
+
+	/**
+	 * Node ids: 0 is the new root, i + 1 is the i-th configuration (augmented with _I_) and
+	 * size + 1 + j is the j-th maximal configuration augmented with _O_.
+	 */
+	void visit(Visitor visitor) throws IOException {
+		enumerate();
+		int size = configurations.size();
+		BitSet empty = new BitSet();
+
+		visitor.node(0, empty, false, false);
+		for (int i = 0; i < size; i++) {
+			BitSet conf = configurations.get(i);
+			visitor.node(i + 1, conf, true, false);
+			if (i == 0)
+				visitor.edge(0, 1);
+			BitSet covered = (BitSet) conf.clone();
+			for (int v = conf.nextSetBit(0); v >= 0; v = conf.nextSetBit(v + 1)) {
+				covered.clear(v);
+				Integer j = indexes.get(covered);
+				if (j != null)
+					visitor.edge(j + 1, i + 1);
+				covered.set(v);
+			}
+		}
+
+		int id = size + 1;
+		for (int i = maximal.nextSetBit(0); i >= 0; i = maximal.nextSetBit(i + 1)) {
+			visitor.node(id, configurations.get(i), true, true);
+			visitor.edge(i + 1, id++);
+		}
+	}
+
+	/**
+	 * Breadth-first enumeration of configurations, starting from the empty one.
+	 */
+	private void enumerate() {
+		if (configurations != null) return;
+		packRelations();
+
+		configurations = new ArrayList<BitSet>();
+		indexes = new HashMap<BitSet, Integer>();
+		maximal = new BitSet();
+
+		BitSet root = new BitSet();
+		configurations.add(root);
+		indexes.put(root, 0);
+
+		for (int i = 0; i < configurations.size(); i++) {
+			BitSet d1 = configurations.get(i);
+			boolean extended = false;
+			for (int v = 0; v < events.length; v++) {
+				if (d1.get(v)) continue;
+				if ((d1.isEmpty() || d1.intersects(enablers[v])) && isConflictFreeExtension(d1, v)) {
+					extended = true;
+					BitSet d2 = (BitSet) d1.clone();
+					d2.set(v);
+					if (!indexes.containsKey(d2)) {
+						indexes.put(d2, configurations.size());
+						configurations.add(d2);
+					}
+				}
+			}
+			if (!extended)
+				maximal.set(i);
+		}
+	}
+
+	private boolean isConflictFreeExtension(BitSet d1, int v) {
+		if (d1.intersects(conflict[v]))
+			return false;
+
+		BitSet predecessors = causalPredecessors[v];
+		for (int b = predecessors.nextSetBit(0); b >= 0; b = predecessors.nextSetBit(b + 1))
+			if (!d1.get(b) && !d1.intersects(conflict[b]))
+				return false;
+		return true;
+	}
+
+	private void packRelations() {
+		events = org.getVertices().toArray(new Vertex[0]);
+		int n = events.length;
+		conflict = new BitSet[n];
+		causalPredecessors = new BitSet[n];
+		enablers = new BitSet[n];
+		for (int v = 0; v < n; v++) {
+			conflict[v] = new BitSet();
+			causalPredecessors[v] = new BitSet();
+			enablers[v] = new BitSet();
+			for (int a = 0; a < n; a++) {
+				if (a == v) continue;
+				if (org.areInConflict(events[a], events[v]))
+					conflict[v].set(a);
+				if (org.areCausal(events[a], events[v])) {
+					causalPredecessors[v].set(a);
+					enablers[v].set(a);
+				} else if (org.areConcurrent(events[a], events[v]))
+					enablers[v].set(a);
+			}
+		}
+	}
+
+	private String label(BitSet configuration, boolean s, boolean e) {
+		StringBuilder buff = new StringBuilder("[");
+		if (s) buff.append(start);
+		for (int i = configuration.nextSetBit(0); i >= 0; i = configuration.nextSetBit(i + 1)) {
+			if (buff.length() > 1) buff.append(", ");
+			buff.append(events[i]);
+		}
+		if (e) buff.append(", ").append(end);
+		return buff.append(']').toString();
+	}
+}
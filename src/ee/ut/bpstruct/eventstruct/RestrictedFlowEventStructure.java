@@ -26,6 +26,9 @@ public class RestrictedFlowEventStructure {
   public static final String ARTIFICIAL_END_EVENT = "_O_";
   
 	ColoredGraph orgraph;
+	int maxLatticeSize = ConfGenerator.DEFAULT_MAX_SIZE;
+	boolean streaming = true;
+	
 	public RestrictedFlowEventStructure(ColoredGraph orgraph) {
 		this.orgraph = (ColoredGraph) orgraph.clone();
 //		try {
@@ -67,9 +70,28 @@ public class RestrictedFlowEventStructure {
 
 	}
 	
-	public ColoredGraph computePrimeEventStructure(Map<String, String> labelMap, String modelName) {
-		TupleDAG lattice = new ConfGenerator(orgraph, //immediateCausality(orgraph),
-				modelName).getLattice();
+	/**
+	 * Bounds the number of configurations explored when computing the prime event structure
+	 */
+	public void setMaxLatticeSize(int maxLatticeSize) {
+		this.maxLatticeSize = maxLatticeSize;
+	}
+	
+	/**
+	 * Selects how the prime event structure is derived: either on the fly, while the configurations
+	 * are explored (default), or from the complete configuration lattice.
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+	
+	public ColoredGraph computePrimeEventStructure(Map<String, String> labelMap, String modelName) throws LatticeTooLargeException {
+		ConfGenerator generator = new ConfGenerator(orgraph, //immediateCausality(orgraph),
+				modelName, maxLatticeSize);
+		if (streaming)
+			return generator.computePrimeEventStructure(labelMap);
+		
+		TupleDAG lattice = generator.getLattice();
 //		try {
 //			String filename = String.format("bpstruct2/lattice.dot");
 //			PrintStream out = new PrintStream(filename);
@@ -16,19 +16,26 @@
  */
 package ee.ut.bpstruct.eventstruct;
 
-import java.util.HashSet;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.BitSet;
 
+/**
+ * Node of the configuration lattice: a configuration (first), the events that can still be added
+ * to it (second) and the events that are in conflict with it (third). Sets are packed as bitsets
+ * and must not be modified once the tuple is created, since the hash code is computed only once.
+ */
 public class Tuple {
-	Set<Integer> first;
-	Set<Integer> second;
-	Set<Integer> third;
+	BitSet first;
+	BitSet second;
+	BitSet third;
 	Integer rep;
+	private int hash;
 	
-	public Tuple(Set<Integer> f, Set<Integer> s, Set<Integer> t, Integer r) { first = f; second = s; third = t; rep = r;}
-	public Set<Integer> getFirst() { return first; }
-	public Set<Integer> getSecond() { return second; }
+	public Tuple(BitSet f, BitSet s, BitSet t, Integer r) {
+		first = f; second = s; third = t; rep = r;
+		hash = f.hashCode() + s.hashCode() * 37;
+	}
+	public BitSet getFirst() { return first; }
+	public BitSet getSecond() { return second; }
 	public String toString() {
 		return String.format("(%s,%s,%s)", first, second, third);
 	}
@@ -37,14 +44,9 @@ public class Tuple {
         if (!(obj instanceof Tuple)) return false;
         Tuple that = (Tuple) obj;
         
-        return this.first.equals(that.first) && this.second.equals(that.second);
+        return this.hash == that.hash && this.first.equals(that.first) && this.second.equals(that.second);
 	}
 	public int hashCode() {
-		return (first == null ? 0 : first.hashCode()) + (second == null ? 0 : second.hashCode() * 37);
-	}
-	
-	public Object clone() {
-		return new Tuple(new LinkedHashSet<Integer>(first), new HashSet<Integer>(second),
-				new HashSet<Integer>(third), rep);
+		return hash;
 	}
 }
@@ -18,115 +18,159 @@ package ee.ut.bpstruct.eventstruct;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import ee.ut.graph.moddec.ColoredGraph;
 
+/**
+ * Configuration lattice. Tuples are numbered in the order in which they are added (i.e. breadth-first
+ * order), such that the children of a tuple always have a larger index than the tuple itself. The
+ * relations are kept as arrays of indexes.
+ */
 public class TupleDAG {
-	Map<Tuple, Set<Tuple>> parents;
-	Map<Tuple, Set<Tuple>> children;
+	List<Tuple> nodes;
+	Map<Tuple, Integer> indexes;
+	int[][] children;
+	int[] childCount;
+	int[] parentCount;
 	
 	Tuple root;
-	Set<Tuple> primes;
+	BitSet primes;
 	
 	public TupleDAG() {
-		parents = new LinkedHashMap<Tuple, Set<Tuple>>();
-		children = new LinkedHashMap<Tuple, Set<Tuple>>();
+		nodes = new ArrayList<Tuple>();
+		indexes = new HashMap<Tuple, Integer>();
+		children = new int[16][];
+		childCount = new int[16];
+		parentCount = new int[16];
+	}
+	
+	public int size() {
+		return nodes.size();
+	}
+	
+	/**
+	 * @return the tuple equivalent to the one given, if it is already in the lattice; null otherwise
+	 */
+	public Tuple get(Tuple tuple) {
+		Integer i = indexes.get(tuple);
+		return i == null ? null : nodes.get(i);
 	}
 	
 	public void add(Tuple parent, Tuple child) {
-		if (!parents.containsKey(child))
-			parents.put(child, new LinkedHashSet<Tuple>());
-		if (!children.containsKey(parent))
-			children.put(parent, new LinkedHashSet<Tuple>());
-			
-		children.get(parent).add(child);
-		parents.get(child).add(parent);
+		int src = indexOf(parent);
+		int tgt = indexOf(child);
+		
+		if (children[src] == null)
+			children[src] = new int[4];
+		else if (childCount[src] == children[src].length) {
+			int[] tmp = new int[children[src].length * 2];
+			System.arraycopy(children[src], 0, tmp, 0, childCount[src]);
+			children[src] = tmp;
+		}
+		children[src][childCount[src]++] = tgt;
+		parentCount[tgt]++;
+	}
+	
+	private int indexOf(Tuple tuple) {
+		Integer i = indexes.get(tuple);
+		if (i == null) {
+			i = nodes.size();
+			if (i == children.length) {
+				int capacity = i * 2;
+				int[][] tmp = new int[capacity][];
+				System.arraycopy(children, 0, tmp, 0, i);
+				children = tmp;
+				int[] ctmp = new int[capacity];
+				System.arraycopy(childCount, 0, ctmp, 0, i);
+				childCount = ctmp;
+				int[] ptmp = new int[capacity];
+				System.arraycopy(parentCount, 0, ptmp, 0, i);
+				parentCount = ptmp;
+			}
+			nodes.add(tuple);
+			indexes.put(tuple, i);
+		}
+		return i;
 	}
 
 	public void pack() {
-		Set<Tuple> set = new HashSet<Tuple>(children.keySet());
-		set.removeAll(parents.keySet());
-		if (set.size() != 1) return;
-		
-		root = set.iterator().next();
-		primes = new HashSet<Tuple>();
-		
-		for (Tuple curr: parents.keySet())
-			if (parents.get(curr).size() == 1)
-				primes.add(curr);
-		
+		int size = nodes.size();
+		root = null;
+		primes = new BitSet(size);
+		for (int i = 0; i < size; i++)
+			if (parentCount[i] == 0) {
+				if (root != null) {
+					root = null;
+					return;
+				}
+				root = nodes.get(i);
+			} else if (parentCount[i] == 1)
+				primes.set(i);
+		if (root == null || childCount[indexes.get(root)] == 0)
+			root = null;
 	}
+	
+	/**
+	 * Computes the ordering relations graph of the prime event structure: two prime configurations
+	 * are related if one is reachable from the other (causality) or if they have no common upper
+	 * bound (conflict). Both relations are computed in a single sweep in reverse topological order.
+	 */
 	public ColoredGraph computeORG(ColoredGraph original, Map<String, String> labelMap) {
-		Set<Tuple> set = new HashSet<Tuple>(children.keySet());
-		set.addAll(parents.keySet());
-		Set<Tuple> _sinks = new HashSet<Tuple>(parents.keySet());
-		_sinks.removeAll(children.keySet());
-		Set<Integer> sinks = new HashSet<Integer>();
-
-		int size = set.size();
-		Map<Tuple, Integer> indexes = new HashMap<Tuple, Integer>();
-		Tuple []rindexes = new Tuple[size];
-		Map<Tuple, BitSet> lubs = new HashMap<Tuple, BitSet>();
-		int index = 0;
-		int [][] m = new int[size][size];
-		for (Tuple tuple: set) {
-			if (_sinks.contains(tuple)) sinks.add(index);
-			rindexes[index] = tuple;
-			indexes.put(tuple, index++);
-			lubs.put(tuple, new BitSet());			
-		}
+		int size = nodes.size();
 		
-		for (Tuple tsrc: children.keySet()) {
-			Integer src = indexes.get(tsrc);
-			for (Tuple ttgt: children.get(tsrc)) {
-				Integer tgt = indexes.get(ttgt);
-				m[src][tgt] = 1;
-			}
+		// Ordinals of sinks and primes, used to index the bitsets
+		int[] sinkOrdinal = new int[size];
+		int[] primeOrdinal = new int[size];
+		int[] primeIndexes = new int[primes.cardinality()];
+		int nsinks = 0, nprimes = 0;
+		for (int i = 0; i < size; i++) {
+			sinkOrdinal[i] = childCount[i] == 0 ? nsinks++ : -1;
+			primeOrdinal[i] = -1;
 		}
-		transitiveClosure(m);
-		for (Tuple tuple: children.keySet()) {
-			BitSet bset = lubs.get(tuple);
-			int i = indexes.get(tuple);
-			for (Integer j: sinks)
-				if (m[i][j] == 1)
-					bset.set(j);
-		}
-
-		for (Tuple tuple: _sinks) {
-			BitSet bset = lubs.get(tuple);
-			int i = indexes.get(tuple);
-			bset.set(i);
+		for (int i = primes.nextSetBit(0); i >= 0; i = primes.nextSetBit(i + 1)) {
+			primeIndexes[nprimes] = i;
+			primeOrdinal[i] = nprimes++;
 		}
 		
-		// Conflict relation		
-		for (int i = 0; i < size; i++)
-			for (int j = i + 1; j < size; j++) {
-				Tuple t0 = rindexes[i];
-				Tuple t1 = rindexes[j];
-				if (!lubs.get(t0).intersects(lubs.get(t1)))
-					m[i][j] = m[j][i] = 1;
+		BitSet[] lubs = new BitSet[size];
+		BitSet[] reach = new BitSet[size];
+		for (int i = size - 1; i >= 0; i--) {
+			BitSet lub = new BitSet(nsinks);
+			BitSet r = new BitSet(nprimes);
+			if (sinkOrdinal[i] >= 0)
+				lub.set(sinkOrdinal[i]);
+			for (int k = 0; k < childCount[i]; k++) {
+				int c = children[i][k];
+				lub.or(lubs[c]);
+				r.or(reach[c]);
+				if (primeOrdinal[c] >= 0)
+					r.set(primeOrdinal[c]);
 			}
-				
+			lubs[i] = lub;
+			reach[i] = r;
+		}
+		
 		ColoredGraph orgraph = new ColoredGraph();
 		
-		for (Tuple prime: primes) {
+		for (int i: primeIndexes) {
+			Tuple prime = nodes.get(i);
 			labelMap.put(prime.toString(), original.getLabel(prime.rep));
 			orgraph.addVertex(prime.toString());
 		}
 		
-		for (Tuple t0: primes) {
-			Integer i0 = indexes.get(t0);
-			for (Tuple t1: primes) {
-				Integer i1 = indexes.get(t1);
-				if (!i0.equals(i1) && m[i0][i1] == 1)
-					orgraph.addEdge(t0.toString(), t1.toString());
+		for (int p0 = 0; p0 < nprimes; p0++) {
+			int i0 = primeIndexes[p0];
+			Tuple t0 = nodes.get(i0);
+			for (int p1 = 0; p1 < nprimes; p1++) {
+				if (p0 == p1) continue;
+				int i1 = primeIndexes[p1];
+				if (reach[i0].get(p1) || !lubs[i0].intersects(lubs[i1]))
+					orgraph.addEdge(t0.toString(), nodes.get(i1).toString());
 			}
 		}
 		return orgraph;
@@ -140,33 +184,17 @@ public class TupleDAG {
 
 		out.println("digraph G {");
 		
-		Map<Tuple, Integer> map = new HashMap<Tuple, Integer>();
-		map.put(root, 0);
-		out.printf("\tn%d [label=\"%s\"]\n", 0, root);
-		
-		int index = 1;
-		for (Tuple tuple: parents.keySet()) {
-			map.put(tuple, index);
-			if (primes.contains(tuple))
-				out.printf("\tn%d [label=\"%s\",style=filled,color=skyblue]\n", index++, tuple);
+		for (int i = 0; i < nodes.size(); i++)
+			if (primes.get(i))
+				out.printf("\tn%d [label=\"%s\",style=filled,color=skyblue]\n", i, nodes.get(i));
 			else
-				out.printf("\tn%d [label=\"%s\"]\n", index++, tuple);
-		}
+				out.printf("\tn%d [label=\"%s\"]\n", i, nodes.get(i));
 					
-		for (Tuple parent: children.keySet())
-			for (Tuple child: children.get(parent))
-				out.printf("\tn%d -> n%d\n", map.get(parent), map.get(child));
+		for (int i = 0; i < nodes.size(); i++)
+			for (int k = 0; k < childCount[i]; k++)
+				out.printf("\tn%d -> n%d\n", i, children[i][k]);
 		
 		out.println("}");
 		return outstream.toString();
 	}
-	
-	protected void transitiveClosure(int [][] m) {
-		int n = m.length;
-		
-		for (int k = 0; k < n; k++)
-            for (int i = 0; i < n; i++)
-                for (int j = 0; j < n; j++)
-                    m[i][j] |= (m[i][k] & m[k][j]);		
-	}
 }
@@ -27,7 +27,8 @@ public class Pair {
 	}
 
 	public int hashCode() {
-		return (first.getName() + second.getName()).hashCode();
+		// consistent with equals, i.e. based on the identifiers of the nodes
+		return 31 * first.hashCode() + second.hashCode();
 	}
 	public boolean equals(Object o) {
 		if (!(o instanceof Pair)) return false;
@@ -1,16 +1,13 @@
 package ee.ut.bpstruct.test;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.PrintStream;
+import java.io.IOException;
 
 import junit.framework.TestCase;
 import de.hpi.bpt.process.Process;
-import de.hpi.bpt.process.serialize.JSON2Process;
-import de.hpi.bpt.process.serialize.Process2DOT;
 import ee.ut.bpstruct.Restructurer;
+import ee.ut.bpstruct.util.DOTProcessWriter;
+import ee.ut.bpstruct.util.JSONProcessReader;
 
 /**
  * Abstract structuring test
@@ -30,23 +27,15 @@ public abstract class StructuringTest extends TestCase {
 	public void testStructuring() throws Exception {
 		// READ PROCESS MODEL FROM FILE
 		File file = new File(MODEL_PATH_TPL + MODEL_NAME + ".json");
-		String line;
-		BufferedReader in = new BufferedReader(new FileReader(file));
-		StringBuilder strb = new StringBuilder();
-		while ((line = in.readLine()) != null)
-			strb.append(line);
-		
-		Process PM = JSON2Process.convert(strb.toString());
+		Process PM = JSONProcessReader.parse(file);
 
 		Restructurer str = new Restructurer(PM);
 		
 		if (str.perform())
 			try {
 				String filename = String.format(this.OUTPUT_PATH_TPL, this.MODEL_NAME);
-				PrintStream out = new PrintStream(filename);
-				out.print(Process2DOT.convert(str.proc));
-				out.close();
-			} catch (FileNotFoundException e) {
+				DOTProcessWriter.write(str.proc, new File(filename));
+			} catch (IOException e) {
 				e.printStackTrace();
 			}
 		else
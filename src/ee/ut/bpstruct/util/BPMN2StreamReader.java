@@ -0,0 +1,246 @@
+package ee.ut.bpstruct.util;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import de.hpi.bpt.process.ControlFlow;
+import de.hpi.bpt.process.Gateway;
+import de.hpi.bpt.process.GatewayType;
+import de.hpi.bpt.process.Node;
+import de.hpi.bpt.process.Process;
+import de.hpi.bpt.process.Task;
+
+/**
+ * Streaming (StAX) version of BPMN2Reader: the document is never built, and every <process> element
+ * of the input (e.g. the participants of a collaboration) becomes a Process, returned by read() as
+ * soon as the element has been read. The processes are built as in BPMN2Reader: tasks, start and
+ * end events become tasks, exclusive, parallel and inclusive gateways become gateways, and only
+ * the nodes connected by a sequence flow are added.
+ */
+public class BPMN2StreamReader implements Closeable {
+	private static final Set<String> BPMN2NS = new HashSet<String>(Arrays.asList(
+			"http://schema.omg.org/spec/BPMN/2.0",
+			"http://www.omg.org/spec/BPMN/20100524/MODEL"));
+
+	/**
+	 * Files with the usual extensions of BPMN 2.0 models
+	 */
+	public static final FileFilter BPMN_FILES = new FileFilter() {
+		public boolean accept(File file) {
+			String name = file.getName().toLowerCase();
+			return file.isFile() && (name.endsWith(".bpmn") || name.endsWith(".bpmn2") || name.endsWith(".xml"));
+		}
+	};
+
+	/**
+	 * Receives the processes read by parseDirectory()
+	 */
+	public interface Handler {
+		/**
+		 * Called from the threads of the loader, possibly for several files at the same time
+		 */
+		void process(File file, Process process) throws Exception;
+	}
+
+	private final InputStream stream;
+	private final XMLStreamReader reader;
+
+	/**
+	 * Reads the processes from a stream, which is closed by close()
+	 */
+	public BPMN2StreamReader(InputStream stream) throws XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		this.stream = stream;
+		this.reader = factory.createXMLStreamReader(stream);
+	}
+
+	/**
+	 * @return all the processes of the file, in document order
+	 */
+	public static List<Process> parseAll(File file) throws IOException, XMLStreamException {
+		BPMN2StreamReader reader = new BPMN2StreamReader(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			List<Process> result = new ArrayList<Process>();
+			Process process;
+			while ((process = reader.read()) != null)
+				result.add(process);
+			return result;
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Reads the files of a directory in parallel, and passes every process to the handler as soon as
+	 * it has been read. Every thread reads one file at a time, and holds one process at a time.
+	 *
+	 * @return files that could not be read (or whose processes were rejected by the handler), with the exception
+	 */
+	public static Map<File, Exception> parseDirectory(File directory, FileFilter filter, int threads, final Handler handler) throws InterruptedException {
+		File[] files = directory.listFiles(filter);
+		if (files == null)
+			throw new IllegalArgumentException("Cannot list directory: " + directory.getPath());
+		final Map<File, Exception> failures = new ConcurrentHashMap<File, Exception>();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (final File file: files)
+				executor.execute(new Runnable() {
+					public void run() {
+						try {
+							BPMN2StreamReader reader = new BPMN2StreamReader(new BufferedInputStream(new FileInputStream(file)));
+							try {
+								Process process;
+								while ((process = reader.read()) != null)
+									handler.process(file, process);
+							} finally {
+								reader.close();
+							}
+						} catch (Exception e) {
+							failures.put(file, e);
+						}
+					}
+				});
+		} finally {
+			executor.shutdown();
+		}
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		return failures;
+	}
+
+	public void close() throws IOException {
+		try {
+			reader.close();
+		} catch (XMLStreamException e) {
+			throw new IOException(e.getMessage(), e);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * @return next process of the input, or null if there are no more processes
+	 */
+	public Process read() throws XMLStreamException {
+		while (reader.hasNext())
+			if (reader.next() == XMLStreamConstants.START_ELEMENT && isBPMN("process"))
+				return readProcess();
+		return null;
+	}
+
+	private boolean isBPMN(String localName) {
+		return localName.equals(reader.getLocalName()) && BPMN2NS.contains(reader.getNamespaceURI());
+	}
+
+	private Process readProcess() throws XMLStreamException {
+		Process proc = new Process();
+		String procName = reader.getAttributeValue(null, "name");
+		if (procName != null)
+			proc.setName(procName);
+		String procId = reader.getAttributeValue(null, "id");
+		if (procId != null)
+			proc.setId(procId);
+
+		Map<String, Node> nodes = new HashMap<String, Node>();
+		// Flows may come before their nodes: {id, sourceRef, targetRef, label}
+		List<String[]> edges = new ArrayList<String[]>();
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.END_ELEMENT)
+				depth--;
+			else if (event == XMLStreamConstants.START_ELEMENT) {
+				if (depth > 1) {
+					depth++;
+					continue;
+				}
+				String elem = reader.getLocalName();
+				String id = reader.getAttributeValue(null, "id");
+				String name = reader.getAttributeValue(null, "name");
+				Node node = null;
+				if (elem.equals("task") || elem.equals("startEvent") || elem.equals("endEvent"))
+					node = new Task(name);
+				else if (elem.equals("exclusiveGateway"))
+					node = new Gateway(GatewayType.XOR, name);
+				else if (elem.equals("parallelGateway"))
+					node = new Gateway(GatewayType.AND, name);
+				else if (elem.equals("inclusiveGateway"))
+					node = new Gateway(GatewayType.OR, name);
+				else if (elem.equals("sequenceFlow")) {
+					edges.add(new String[] {id, reader.getAttributeValue(null, "sourceRef"),
+							reader.getAttributeValue(null, "targetRef"), readCondition()});
+					continue;
+				}
+				if (node != null) {
+					if (id == null || id.isEmpty())
+						throw new XMLStreamException("Missing id of <" + elem + ">", reader.getLocation());
+					node.setId(id);
+					nodes.put(id, node);
+				}
+				depth++;
+			}
+		}
+
+		for (String[] edge: edges) {
+			Node src = nodes.get(edge[1]);
+			Node tgt = nodes.get(edge[2]);
+			if (src == null || tgt == null)
+				throw new XMLStreamException("Malformed graph: sequence flow " + edge[0] + " of process "
+						+ procId + " refers to an unknown node", reader.getLocation());
+			// Multiple edges with the same source and target nodes: only the first one is kept
+			ControlFlow flow = proc.addControlFlow(src, tgt);
+			if (flow != null)
+				flow.setLabel(edge[3]);
+		}
+		return proc;
+	}
+
+	/**
+	 * Reads a sequence flow up to its end tag
+	 * @return text of its first condition expression, or "" if it has none
+	 */
+	private String readCondition() throws XMLStreamException {
+		StringBuilder label = null;
+		boolean inExpression = false;
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+				if (depth == 2 && label == null && isBPMN("conditionExpression")) {
+					label = new StringBuilder();
+					inExpression = true;
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+				if (depth == 1)
+					inExpression = false;
+			} else if (inExpression && depth == 2 && (event == XMLStreamConstants.CHARACTERS
+					|| event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE))
+				label.append(reader.getText());
+		}
+		return label == null ? "" : label.toString();
+	}
+}
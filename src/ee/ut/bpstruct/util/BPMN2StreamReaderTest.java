@@ -0,0 +1,99 @@
+package ee.ut.bpstruct.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+
+import junit.framework.TestCase;
+import de.hpi.bpt.process.ControlFlow;
+import de.hpi.bpt.process.GatewayType;
+import de.hpi.bpt.process.Process;
+
+public class BPMN2StreamReaderTest extends TestCase {
+	private static final String COLLABORATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+		+ "<definitions xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\">"
+		+ "<collaboration id=\"c\"><participant id=\"p\" processRef=\"p1\"/></collaboration>"
+		+ "<process id=\"p1\" name=\"First\">"
+		+ "<sequenceFlow id=\"f1\" sourceRef=\"s\" targetRef=\"g\"/>"
+		+ "<sequenceFlow id=\"f2\" sourceRef=\"g\" targetRef=\"a\">"
+		+ "<conditionExpression>x &gt; 1</conditionExpression></sequenceFlow>"
+		+ "<sequenceFlow id=\"f3\" sourceRef=\"g\" targetRef=\"e\"/>"
+		+ "<startEvent id=\"s\"/><exclusiveGateway id=\"g\" name=\"split\"/>"
+		+ "<task id=\"a\" name=\"A\"><extensionElements><task id=\"nested\"/></extensionElements></task>"
+		+ "<endEvent id=\"e\"/><task id=\"isolated\" name=\"I\"/>"
+		+ "</process>"
+		+ "<process id=\"p2\"><parallelGateway id=\"x\"/><task id=\"b\" name=\"B\"/>"
+		+ "<sequenceFlow id=\"f\" sourceRef=\"x\" targetRef=\"b\"/></process>"
+		+ "</definitions>";
+
+	public void testCollaboration() throws Exception {
+		BPMN2StreamReader reader = new BPMN2StreamReader(new ByteArrayInputStream(COLLABORATION.getBytes("UTF-8")));
+		Process first = reader.read();
+		assertEquals("First", first.getName());
+		// Only the nodes connected by a sequence flow
+		assertEquals(4, first.getVertices().size());
+		assertEquals(3, first.getControlFlow().size());
+		List<String> labels = new ArrayList<String>();
+		for (ControlFlow flow: first.getControlFlow())
+			labels.add(flow.getTarget().getId() + ":" + flow.getLabel());
+		Collections.sort(labels);
+		assertEquals("[a:x > 1, e:, g:]", labels.toString());
+
+		Process second = reader.read();
+		assertEquals(2, second.getVertices().size());
+		assertEquals(GatewayType.AND, second.getGateways().iterator().next().getGatewayType());
+		assertNull(reader.read());
+		reader.close();
+	}
+
+	public void testMalformedGraph() throws Exception {
+		String xml = "<definitions xmlns=\"http://schema.omg.org/spec/BPMN/2.0\"><process id=\"p\">"
+			+ "<task id=\"a\"/><sequenceFlow id=\"f\" sourceRef=\"a\" targetRef=\"b\"/></process></definitions>";
+		BPMN2StreamReader reader = new BPMN2StreamReader(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+		try {
+			reader.read();
+			fail();
+		} catch (XMLStreamException e) {
+			assertTrue(e.getMessage().contains("Malformed graph: sequence flow f of process p"));
+		}
+	}
+
+	public void testParseDirectory() throws Exception {
+		File directory = File.createTempFile("bpmn", "");
+		directory.delete();
+		directory.mkdir();
+		try {
+			for (int i = 0; i < 5; i++)
+				write(new File(directory, i + ".bpmn"), COLLABORATION);
+			write(new File(directory, "broken.bpmn"), "<definitions");
+			write(new File(directory, "notes.txt"), "");
+
+			final List<Process> processes = Collections.synchronizedList(new ArrayList<Process>());
+			Map<File, Exception> failures = BPMN2StreamReader.parseDirectory(directory, BPMN2StreamReader.BPMN_FILES, 3,
+				new BPMN2StreamReader.Handler() {
+					public void process(File file, Process process) {
+						processes.add(process);
+					}
+				});
+			assertEquals(10, processes.size());
+			assertEquals(1, failures.size());
+			assertEquals("broken.bpmn", failures.keySet().iterator().next().getName());
+		} finally {
+			for (File file: directory.listFiles())
+				file.delete();
+			directory.delete();
+		}
+	}
+
+	private static void write(File file, String content) throws Exception {
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(content.getBytes("UTF-8"));
+		out.close();
+	}
+}
@@ -0,0 +1,73 @@
+package ee.ut.bpstruct.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import de.hpi.bpt.process.ControlFlow;
+import de.hpi.bpt.process.Gateway;
+import de.hpi.bpt.process.GatewayType;
+import de.hpi.bpt.process.Process;
+import de.hpi.bpt.process.Task;
+
+/**
+ * Writes a process model in the DOT format of Process2DOT, piece by piece, instead of building the
+ * whole text in memory: tasks, then AND, XOR, OR and undefined gateways, then the control flow.
+ * Flows with an empty label are written without a label.
+ */
+public class DOTProcessWriter {
+
+	public static void write(Process process, Appendable out) throws IOException {
+		if (process == null) return;
+		out.append("digraph G {\n");
+		for (Task task: process.getTasks())
+			out.append("  n").append(nodeId(task.getId())).append("[shape=box,label=\"")
+				.append(task.getName()).append("\"];\n");
+		out.append("\n");
+		writeGateways(process, GatewayType.AND, "AND", out);
+		writeGateways(process, GatewayType.XOR, "XOR", out);
+		writeGateways(process, GatewayType.OR, "OR", out);
+		writeGateways(process, GatewayType.UNDEFINED, "?", out);
+		out.append("\n");
+		for (ControlFlow flow: process.getControlFlow()) {
+			out.append("  n").append(nodeId(flow.getSource().getId()))
+				.append("->n").append(nodeId(flow.getTarget().getId()));
+			String label = flow.getLabel();
+			if (label != null && !label.isEmpty())
+				out.append("[label=\"").append(label).append("\"]");
+			out.append(";\n");
+		}
+		out.append("}");
+	}
+
+	/**
+	 * Writes the model in UTF-8. The channel is not closed.
+	 */
+	public static void write(Process process, WritableByteChannel channel) throws IOException {
+		Writer writer = Channels.newWriter(channel, "UTF-8");
+		write(process, writer);
+		writer.flush();
+	}
+
+	public static void write(Process process, File file) throws IOException {
+		FileOutputStream stream = new FileOutputStream(file);
+		try {
+			write(process, stream.getChannel());
+		} finally {
+			stream.close();
+		}
+	}
+
+	private static void writeGateways(Process process, GatewayType type, String label, Appendable out) throws IOException {
+		for (Gateway gateway: process.getGateways(type))
+			out.append("  n").append(nodeId(gateway.getId())).append("[shape=diamond,label=\"")
+				.append(label).append("\"];\n");
+	}
+
+	private static String nodeId(String id) {
+		return id.replace("-", "");
+	}
+}
@@ -0,0 +1,35 @@
+package ee.ut.bpstruct.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+
+import junit.framework.TestCase;
+import de.hpi.bpt.process.Gateway;
+import de.hpi.bpt.process.GatewayType;
+import de.hpi.bpt.process.Process;
+import de.hpi.bpt.process.Task;
+
+public class DOTProcessWriterTest extends TestCase {
+
+	public void testWrite() throws Exception {
+		Process process = new Process();
+		Task task = new Task("\u00c4");
+		task.setId("t-1");
+		Gateway gateway = new Gateway(GatewayType.XOR);
+		gateway.setId("g-1");
+		Task other = new Task("B");
+		other.setId("t-2");
+		process.addControlFlow(task, gateway);
+		process.addControlFlow(gateway, other).setLabel("yes");
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DOTProcessWriter.write(process, Channels.newChannel(bytes));
+		String dot = bytes.toString("UTF-8");
+		assertTrue(dot.startsWith("digraph G {\n"));
+		assertTrue(dot.endsWith("}"));
+		assertTrue(dot.contains("  nt1[shape=box,label=\"\u00c4\"];\n"));
+		assertTrue(dot.contains("  ng1[shape=diamond,label=\"XOR\"];\n"));
+		assertTrue(dot.contains("  nt1->ng1;\n"));
+		assertTrue(dot.contains("  ng1->nt2[label=\"yes\"];\n"));
+	}
+}
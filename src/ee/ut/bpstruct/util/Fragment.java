@@ -0,0 +1,157 @@
+package ee.ut.bpstruct.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.hpi.bpt.process.Node;
+import ee.ut.bpstruct.jbpt.Pair;
+
+/**
+ * Directed graph whose vertices are indexed by {0, ..., n-1}, in order of insertion. The successors
+ * and predecessors of every vertex are kept in compressed sparse row form (see ee.ut.comptech.Dominators),
+ * in the order in which the edges were added.
+ */
+public class Fragment<V> {
+	private final List<V> vertices = new ArrayList<V>();
+	private final Map<V, Integer> index = new HashMap<V, Integer>();
+	private int[] sources = new int[16];
+	private int[] targets = new int[16];
+	private int edges = 0;
+
+	// Built on demand, and discarded when the fragment is modified
+	private int[] succOffsets, succs, predOffsets, preds;
+
+	/**
+	 * @return fragment with the edges (in iteration order) of a set of control flow pairs
+	 */
+	public static Fragment<Node> fromPairs(Collection<Pair> pairs) {
+		Fragment<Node> fragment = new Fragment<Node>();
+		for (Pair pair: pairs)
+			fragment.addEdge(pair.getSource(), pair.getTarget());
+		return fragment;
+	}
+
+	/**
+	 * @return index of the vertex (which is added if it is not in the fragment yet)
+	 */
+	public int addVertex(V vertex) {
+		Integer v = index.get(vertex);
+		if (v == null) {
+			index.put(vertex, v = vertices.size());
+			vertices.add(vertex);
+			succOffsets = null;
+		}
+		return v;
+	}
+
+	public void addEdge(V source, V target) {
+		int s = addVertex(source), t = addVertex(target);
+		if (edges == sources.length) {
+			sources = Arrays.copyOf(sources, edges * 2);
+			targets = Arrays.copyOf(targets, edges * 2);
+		}
+		sources[edges] = s;
+		targets[edges++] = t;
+		succOffsets = null;
+	}
+
+	public int size() {
+		return vertices.size();
+	}
+
+	public int getEdgeCount() {
+		return edges;
+	}
+
+	public V getVertex(int v) {
+		return vertices.get(v);
+	}
+
+	/**
+	 * @return index of the vertex, or -1 if it is not in the fragment
+	 */
+	public int indexOf(V vertex) {
+		Integer v = index.get(vertex);
+		return v == null ? -1 : v;
+	}
+
+	/**
+	 * The successors of vertex v are getSuccessors()[getSuccessorOffsets()[v] ... getSuccessorOffsets()[v+1]-1].
+	 * The position of a successor in this array identifies the edge.
+	 */
+	public int[] getSuccessorOffsets() {
+		compile();
+		return succOffsets;
+	}
+
+	public int[] getSuccessors() {
+		compile();
+		return succs;
+	}
+
+	public int[] getPredecessorOffsets() {
+		compile();
+		return predOffsets;
+	}
+
+	public int[] getPredecessors() {
+		compile();
+		return preds;
+	}
+
+	public int getInDegree(int v) {
+		compile();
+		return predOffsets[v + 1] - predOffsets[v];
+	}
+
+	public int getOutDegree(int v) {
+		compile();
+		return succOffsets[v + 1] - succOffsets[v];
+	}
+
+	public List<V> getSuccessors(V vertex) {
+		compile();
+		return slice(succOffsets, succs, indexOf(vertex));
+	}
+
+	public List<V> getPredecessors(V vertex) {
+		compile();
+		return slice(predOffsets, preds, indexOf(vertex));
+	}
+
+	private List<V> slice(int[] offsets, int[] array, int v) {
+		List<V> result = new ArrayList<V>();
+		if (v >= 0)
+			for (int e = offsets[v]; e < offsets[v + 1]; e++)
+				result.add(vertices.get(array[e]));
+		return result;
+	}
+
+	private void compile() {
+		if (succOffsets != null) return;
+		int n = vertices.size();
+		succOffsets = new int[n + 1];
+		predOffsets = new int[n + 1];
+		succs = new int[edges];
+		preds = new int[edges];
+		for (int e = 0; e < edges; e++) {
+			succOffsets[sources[e] + 1]++;
+			predOffsets[targets[e] + 1]++;
+		}
+		for (int v = 0; v < n; v++) {
+			succOffsets[v + 1] += succOffsets[v];
+			predOffsets[v + 1] += predOffsets[v];
+		}
+		// Stable counting sort: the edges keep their order of insertion
+		int[] succFill = Arrays.copyOf(succOffsets, n);
+		int[] predFill = Arrays.copyOf(predOffsets, n);
+		for (int e = 0; e < edges; e++) {
+			succs[succFill[sources[e]]++] = targets[e];
+			preds[predFill[targets[e]]++] = sources[e];
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package ee.ut.bpstruct.util;
+
+import de.hpi.bpt.hypergraph.abs.Vertex;
+import de.hpi.bpt.process.Gateway;
+import de.hpi.bpt.process.Node;
+import de.hpi.bpt.process.petri.Place;
+import de.hpi.bpt.process.petri.Transition;
+
+/**
+ * Classifies the fragment reachable from an entry with a single, iterative, depth-first search:
+ * back edges (hence cyclicity), logic of the routing vertices (e.g. XOR or AND gateways, or places
+ * and transitions with several inputs or outputs) and a topological order of the vertices once the
+ * back edges are removed, i.e. reverse postorder.
+ */
+public class FragmentClassifier<V> {
+
+	/**
+	 * Logic of a vertex of a fragment
+	 */
+	public interface Logic<V> {
+		/**
+		 * @return logic of vertex v (e.g. its gateway type), or null if v does not route the flow
+		 */
+		Object getLogic(Fragment<V> fragment, int v);
+	}
+
+	/**
+	 * Process models: the logic of a gateway is its type
+	 */
+	public static final Logic<Node> GATEWAY_TYPE = new Logic<Node>() {
+		public Object getLogic(Fragment<Node> fragment, int v) {
+			Node node = fragment.getVertex(v);
+			return node instanceof Gateway ? ((Gateway) node).getGatewayType() : null;
+		}
+	};
+
+	/**
+	 * Petri nets: places with several inputs or outputs are XOR logic, transitions are AND logic.
+	 * The exit (i.e. the vertex without outputs) also counts.
+	 */
+	public static final Logic<Vertex> NODE_CLASS = new Logic<Vertex>() {
+		public Object getLogic(Fragment<Vertex> fragment, int v) {
+			if (fragment.getInDegree(v) > 1 || fragment.getOutDegree(v) != 1)
+				return fragment.getVertex(v) instanceof Transition ? Transition.class : Place.class;
+			return null;
+		}
+	};
+
+	private final Fragment<V> fragment;
+	private final boolean[] backEdge;
+	private final int[] order;
+	private int backEdges = 0;
+	private boolean mixedLogic = false;
+	private Object logic = null;
+
+	public FragmentClassifier(Fragment<V> fragment, V entry, Logic<V> function) {
+		this.fragment = fragment;
+		int n = fragment.size();
+		int[] offsets = fragment.getSuccessorOffsets();
+		int[] targets = fragment.getSuccessors();
+		backEdge = new boolean[targets.length];
+
+		// 0: not visited, 1: on the current path, 2: finished
+		byte[] color = new byte[n];
+		int[] stack = new int[n];
+		int[] next = new int[n];
+		int[] postorder = new int[n];
+		int top = 0, count = 0;
+		int root = fragment.indexOf(entry);
+		if (root >= 0) {
+			visit(root, function);
+			color[root] = 1;
+			next[root] = offsets[root];
+			stack[top++] = root;
+		}
+		while (top > 0) {
+			int v = stack[top - 1];
+			if (next[v] < offsets[v + 1]) {
+				int e = next[v]++;
+				int w = targets[e];
+				if (color[w] == 0) {
+					visit(w, function);
+					color[w] = 1;
+					next[w] = offsets[w];
+					stack[top++] = w;
+				} else if (color[w] == 1) {
+					backEdge[e] = true;
+					backEdges++;
+				}
+			} else {
+				color[v] = 2;
+				postorder[count++] = v;
+				top--;
+			}
+		}
+
+		order = new int[count];
+		for (int i = 0; i < count; i++)
+			order[i] = postorder[count - 1 - i];
+	}
+
+	private void visit(int v, Logic<V> function) {
+		Object vlogic = function.getLogic(fragment, v);
+		if (vlogic == null) return;
+		if (logic == null)
+			logic = vlogic;
+		else if (!logic.equals(vlogic))
+			mixedLogic = true;
+	}
+
+	public Fragment<V> getFragment() { return fragment; }
+	public boolean isCyclic() { return backEdges > 0; }
+	public boolean isMixedLogic() { return mixedLogic; }
+
+	/**
+	 * @return logic of the first routing vertex visited (meaningful if the logic is not mixed), or null
+	 */
+	public Object getLogic() { return logic; }
+
+	/**
+	 * @param e position of the edge in fragment.getSuccessors()
+	 */
+	public boolean isBackEdge(int e) { return backEdge[e]; }
+	public int getBackEdgeCount() { return backEdges; }
+
+	/**
+	 * @return vertices reachable from the entry, such that every edge that is not a back edge goes
+	 * forward in the order
+	 */
+	public int[] getTopologicalOrder() { return order; }
+
+	/**
+	 * @return back edges, as pairs {source, target} of vertex indexes
+	 */
+	public int[][] getBackEdges() {
+		int[][] result = new int[backEdges][];
+		int[] offsets = fragment.getSuccessorOffsets();
+		int[] targets = fragment.getSuccessors();
+		int i = 0;
+		for (int v = 0; v < fragment.size(); v++)
+			for (int e = offsets[v]; e < offsets[v + 1]; e++)
+				if (backEdge[e])
+					result[i++] = new int[] {v, targets[e]};
+		return result;
+	}
+}
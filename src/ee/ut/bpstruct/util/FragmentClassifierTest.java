@@ -0,0 +1,62 @@
+package ee.ut.bpstruct.util;
+
+import junit.framework.TestCase;
+
+public class FragmentClassifierTest extends TestCase {
+	// Even vertices are XOR, odd vertices are AND
+	private static final FragmentClassifier.Logic<Integer> PARITY = new FragmentClassifier.Logic<Integer>() {
+		public Object getLogic(Fragment<Integer> fragment, int v) {
+			return fragment.getVertex(v) % 2 == 0 ? "XOR" : "AND";
+		}
+	};
+
+	public void testAcyclic() {
+		Fragment<Integer> fragment = new Fragment<Integer>();
+		fragment.addEdge(0, 2);
+		fragment.addEdge(0, 4);
+		fragment.addEdge(2, 6);
+		fragment.addEdge(4, 6);
+		fragment.addEdge(4, 2);
+		FragmentClassifier<Integer> classifier = new FragmentClassifier<Integer>(fragment, 0, PARITY);
+		assertFalse(classifier.isCyclic());
+		assertFalse(classifier.isMixedLogic());
+		assertEquals("XOR", classifier.getLogic());
+
+		int[] order = classifier.getTopologicalOrder();
+		assertEquals(4, order.length);
+		int[] position = new int[fragment.size()];
+		for (int i = 0; i < order.length; i++)
+			position[order[i]] = i;
+		int[] offsets = fragment.getSuccessorOffsets();
+		int[] targets = fragment.getSuccessors();
+		for (int v = 0; v < fragment.size(); v++)
+			for (int e = offsets[v]; e < offsets[v + 1]; e++)
+				assertTrue(position[v] < position[targets[e]]);
+	}
+
+	public void testCyclicMixed() {
+		Fragment<Integer> fragment = new Fragment<Integer>();
+		fragment.addEdge(0, 1);
+		fragment.addEdge(1, 2);
+		fragment.addEdge(2, 1);
+		fragment.addEdge(2, 4);
+		FragmentClassifier<Integer> classifier = new FragmentClassifier<Integer>(fragment, 0, PARITY);
+		assertTrue(classifier.isCyclic());
+		assertTrue(classifier.isMixedLogic());
+		assertEquals(1, classifier.getBackEdgeCount());
+		int[] edge = classifier.getBackEdges()[0];
+		assertEquals(Integer.valueOf(2), fragment.getVertex(edge[0]));
+		assertEquals(Integer.valueOf(1), fragment.getVertex(edge[1]));
+	}
+
+	public void testLongPath() {
+		// deep enough to overflow a recursive depth-first search
+		Fragment<Integer> fragment = new Fragment<Integer>();
+		int n = 200000;
+		for (int v = 0; v < n - 1; v++)
+			fragment.addEdge(2 * v, 2 * v + 2);
+		FragmentClassifier<Integer> classifier = new FragmentClassifier<Integer>(fragment, 0, PARITY);
+		assertFalse(classifier.isCyclic());
+		assertEquals(n, classifier.getTopologicalOrder().length);
+	}
+}
@@ -1,12 +1,11 @@
 package ee.ut.bpstruct.util;
 
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
 
 import de.hpi.bpt.graph.abs.AbstractDirectedEdge;
 import de.hpi.bpt.hypergraph.abs.Vertex;
@@ -14,11 +13,12 @@ import de.hpi.bpt.process.Node;
 import de.hpi.bpt.process.petri.PetriNet;
 import ee.ut.bpstruct.jbpt.PNPair;
 import ee.ut.bpstruct.jbpt.Pair;
+import ee.ut.graph.util.StronglyConnectedComponents;
 
 public class GraphUtils {
 	/**
 	 * This method takes a set of edges and builds a adjacency list representation. This is required
-	 * by some DFS-based methods (e.g. DFSLabeler). Note that the structure of the graph is modified,
+	 * by some DFS-based methods. Note that the structure of the graph is modified,
 	 * by adding/deleting edges in the set of edges "edges".
 	 */
 	public static Map<Node, List<Node>> edgelist2adjlist(Set<Pair> ledges,
@@ -52,43 +52,16 @@ public class GraphUtils {
 		return adjList;
 	}
 
-	public static Set<Set<Vertex>> computeSCCs(PetriNet rewiredUnfGraph) {
-		Set<Set<Vertex>> scc = new HashSet<Set<Vertex>>();
-		Stack<Vertex> stack = new Stack<Vertex>();
-		Set<Vertex> visited = new HashSet<Vertex>();
-		for (Vertex vertex: rewiredUnfGraph.getVertices())
-			if (!visited.contains(vertex))
-				searchForward(rewiredUnfGraph, vertex, stack, visited);			
-
-		visited.clear();
-		while(!stack.isEmpty()) {
-			Set<Vertex> component = new HashSet<Vertex>();
-			searchBackward(rewiredUnfGraph, stack.peek(), visited, component);
-			scc.add(component);
-			stack.removeAll(component);
-		}
-		return scc;
-	}
-
-	private static void searchBackward(PetriNet rewiredUnfGraph, Vertex node, Set<Vertex> visited, Set<Vertex> component) {
-		Stack<Vertex> worklist = new Stack<Vertex>();
-		worklist.push(node);
-		while (!worklist.isEmpty()) {
-			Vertex curr = worklist.pop();
-			visited.add(curr);
-			component.add(curr);
-			for (Vertex pred: rewiredUnfGraph.getPredecessors((de.hpi.bpt.process.petri.Node) curr))
-				if (!visited.contains(pred) && !worklist.contains(pred))
-					worklist.add(pred);
-		}
-	}
-
-	private static void searchForward(PetriNet rewiredUnfGraph, Vertex curr, Stack<Vertex> stack, Set<Vertex> visited) {
-		visited.add(curr);
-		for (Vertex succ: rewiredUnfGraph.getSuccessors((de.hpi.bpt.process.petri.Node) curr))
-			if (!visited.contains(succ))
-				searchForward(rewiredUnfGraph, succ, stack, visited);
-		stack.push(curr);
+	/**
+	 * @return strongly connected components of the net, in topological order
+	 */
+	public static List<Set<Vertex>> computeSCCs(final PetriNet rewiredUnfGraph) {
+		return StronglyConnectedComponents.compute(rewiredUnfGraph.getVertices(),
+				new StronglyConnectedComponents.Successors<Vertex>() {
+					public Collection<? extends Vertex> successors(Vertex vertex) {
+						return rewiredUnfGraph.getSuccessors((de.hpi.bpt.process.petri.Node) vertex);
+					}
+				});
 	}
 	
 	public static void gatherControlFlow(Set<AbstractDirectedEdge<Node>> edges,
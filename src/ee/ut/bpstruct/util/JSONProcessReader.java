@@ -0,0 +1,444 @@
+package ee.ut.bpstruct.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.hpi.bpt.process.ControlFlow;
+import de.hpi.bpt.process.Gateway;
+import de.hpi.bpt.process.GatewayType;
+import de.hpi.bpt.process.Node;
+import de.hpi.bpt.process.Process;
+import de.hpi.bpt.process.Task;
+import de.hpi.bpt.process.serialize.SerializationException;
+
+/**
+ * Reads process models in the JSON format of JSON2Process ("name", "tasks", "gateways" and "flows")
+ * directly from UTF-8 bytes, without building the text of the model or a JSONObject tree. The input
+ * may contain several models, either one after the other or as the elements of an array: read()
+ * returns them one at a time.
+ *
+ * The models are the same as the ones built by JSON2Process.convert(), members may come in any
+ * order and unknown members are skipped.
+ */
+public class JSONProcessReader implements Closeable {
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final ReadableByteChannel channel;
+	private final ByteBuffer buffer;
+	private boolean eof;
+	// Bytes consumed before the current content of the buffer
+	private long offset = 0;
+	private final StringBuilder text = new StringBuilder();
+	// 0: not started, 1: inside a top-level array, 2: sequence of models
+	private int layout = 0;
+
+	/**
+	 * Reads the models from a channel, which is closed by close()
+	 */
+	public JSONProcessReader(ReadableByteChannel channel) {
+		this(channel, BUFFER_SIZE);
+	}
+
+	JSONProcessReader(ReadableByteChannel channel, int bufferSize) {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocate(bufferSize);
+		this.buffer.flip();
+		this.eof = false;
+	}
+
+	/**
+	 * Reads the models from the remaining bytes of a buffer (e.g. a memory-mapped file)
+	 */
+	public JSONProcessReader(ByteBuffer buffer) {
+		this.channel = null;
+		this.buffer = buffer;
+		this.eof = true;
+	}
+
+	/**
+	 * @return first model of the file
+	 */
+	public static Process parse(File file) throws IOException, SerializationException {
+		FileInputStream stream = new FileInputStream(file);
+		try {
+			Process process = new JSONProcessReader(map(stream.getChannel())).read();
+			if (process == null)
+				throw new SerializationException("No process model in " + file.getPath());
+			return process;
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * @return all the models of the file, in order
+	 */
+	public static List<Process> parseAll(File file) throws IOException, SerializationException {
+		FileInputStream stream = new FileInputStream(file);
+		try {
+			JSONProcessReader reader = new JSONProcessReader(map(stream.getChannel()));
+			List<Process> result = new ArrayList<Process>();
+			Process process;
+			while ((process = reader.read()) != null)
+				result.add(process);
+			return result;
+		} finally {
+			stream.close();
+		}
+	}
+
+	private static ByteBuffer map(FileChannel channel) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+	}
+
+	public void close() throws IOException {
+		if (channel != null)
+			channel.close();
+	}
+
+	/**
+	 * @return next model, or null if there are no more models
+	 */
+	public Process read() throws IOException, SerializationException {
+		while (true) {
+			int c = skipWhitespace();
+			if (layout == 0) {
+				if (c == '[') {
+					next();
+					layout = 1;
+					if (skipWhitespace() == ',')
+						throw error("Unexpected ','");
+					continue;
+				}
+				layout = 2;
+			}
+			if (c == -1) {
+				if (layout == 1)
+					throw error("Unterminated array");
+				return null;
+			}
+			if (layout == 1) {
+				if (c == ']') {
+					next();
+					layout = 2;
+					continue;
+				}
+				if (c == ',') {
+					next();
+					c = skipWhitespace();
+				}
+			}
+			if (c != '{')
+				throw error("A process model must begin with '{'");
+			return readProcess();
+		}
+	}
+
+	private Process readProcess() throws IOException, SerializationException {
+		String name = null;
+		List<Task> tasks = null;
+		List<Gateway> gateways = null;
+		List<String[]> flows = null;
+		Map<String, String> fields = new HashMap<String, String>();
+
+		expect('{');
+		if (skipWhitespace() == '}')
+			next();
+		else
+			do {
+				String key = readString();
+				expect(':');
+				if (key.equals("name"))
+					name = readScalar();
+				else if (key.equals("tasks")) {
+					tasks = new ArrayList<Task>();
+					expect('[');
+					while (nextElement(']', tasks.isEmpty())) {
+						readFields(fields);
+						Task task = new Task(get(fields, "label"));
+						task.setId(get(fields, "id"));
+						tasks.add(task);
+					}
+				} else if (key.equals("gateways")) {
+					gateways = new ArrayList<Gateway>();
+					expect('[');
+					while (nextElement(']', gateways.isEmpty())) {
+						readFields(fields);
+						Gateway gateway = new Gateway(getGatewayType(fields));
+						gateway.setId(get(fields, "id"));
+						gateways.add(gateway);
+					}
+				} else if (key.equals("flows")) {
+					// Flows may come before the nodes: they are resolved at the end of the model
+					flows = new ArrayList<String[]>();
+					expect('[');
+					while (nextElement(']', flows.isEmpty())) {
+						readFields(fields);
+						flows.add(new String[] {get(fields, "src"), get(fields, "tgt"), get(fields, "label")});
+					}
+				} else
+					skipValue();
+			} while (nextMember());
+
+		if (name == null) throw missing("name");
+		if (tasks == null) throw missing("tasks");
+		if (gateways == null) throw missing("gateways");
+		if (flows == null) throw missing("flows");
+
+		// Same map, filled in the same order, as JSON2Process: the vertices are added in the same order
+		Process process = new Process(name);
+		Map<String, Node> nodes = new HashMap<String, Node>();
+		for (Task task: tasks)
+			nodes.put(task.getId(), task);
+		for (Gateway gateway: gateways)
+			nodes.put(gateway.getId(), gateway);
+		process.addVertices(nodes.values());
+		for (String[] flow: flows) {
+			Node src = nodes.get(flow[0]);
+			if (src == null)
+				throw new SerializationException("Unknown node " + flow[0] + " was referenced by a flow as 'src'.");
+			Node tgt = nodes.get(flow[1]);
+			if (tgt == null)
+				throw new SerializationException("Unknown node " + flow[1] + " was referenced by a flow as 'tgt'.");
+			ControlFlow cf = process.addControlFlow(src, tgt);
+			if (cf != null)
+				cf.setLabel(flow[2]);
+		}
+		return process;
+	}
+
+	private static GatewayType getGatewayType(Map<String, String> fields) throws SerializationException {
+		String type = fields.get("type");
+		if (type != null) {
+			type = type.toUpperCase();
+			if (type.equals("XOR")) return GatewayType.XOR;
+			if (type.equals("AND")) return GatewayType.AND;
+			if (type.equals("OR")) return GatewayType.OR;
+		}
+		throw new SerializationException("Couldn't determine GatewayType.");
+	}
+
+	private static String get(Map<String, String> fields, String key) throws SerializationException {
+		String value = fields.get(key);
+		if (value == null)
+			throw missing(key);
+		return value;
+	}
+
+	private static SerializationException missing(String key) {
+		return new SerializationException("JSONObject[\"" + key + "\"] not found.");
+	}
+
+	/**
+	 * Reads an object, keeping its scalar members (nested values are skipped)
+	 */
+	private void readFields(Map<String, String> fields) throws IOException, SerializationException {
+		fields.clear();
+		expect('{');
+		if (skipWhitespace() == '}') {
+			next();
+			return;
+		}
+		do {
+			String key = readString();
+			expect(':');
+			int c = skipWhitespace();
+			if (c == '{' || c == '[')
+				skipValue();
+			else
+				fields.put(key, readScalar());
+		} while (nextMember());
+	}
+
+	/**
+	 * Consumes the separator after a member of an object
+	 * @return true if there is another member
+	 */
+	private boolean nextMember() throws IOException, SerializationException {
+		int c = skipWhitespace();
+		next();
+		if (c == ',') return true;
+		if (c == '}') return false;
+		throw error("Expected ',' or '}'");
+	}
+
+	/**
+	 * Consumes the separator before an element of an array (or the end of the array)
+	 * @return true if there is another element
+	 */
+	private boolean nextElement(char end, boolean first) throws IOException, SerializationException {
+		int c = skipWhitespace();
+		if (c == end) {
+			next();
+			return false;
+		}
+		if (!first) {
+			if (c != ',')
+				throw error("Expected ',' or '" + end + "'");
+			next();
+		}
+		return true;
+	}
+
+	private void skipValue() throws IOException, SerializationException {
+		int c = skipWhitespace();
+		if (c == '{') {
+			next();
+			if (skipWhitespace() == '}') {
+				next();
+				return;
+			}
+			do {
+				readString();
+				expect(':');
+				skipValue();
+			} while (nextMember());
+		} else if (c == '[') {
+			next();
+			boolean first = true;
+			while (nextElement(']', first)) {
+				skipValue();
+				first = false;
+			}
+		} else
+			readScalar();
+	}
+
+	/**
+	 * @return value of a string, or text of a number or literal (as JSONObject.getString() does)
+	 */
+	private String readScalar() throws IOException, SerializationException {
+		int c = skipWhitespace();
+		if (c == '"')
+			return readString();
+		text.setLength(0);
+		while (c != -1 && c != ',' && c != '}' && c != ']' && c != ':' && c != '"' && !isWhitespace(c)) {
+			text.append((char) next());
+			c = peek();
+		}
+		if (text.length() == 0)
+			throw error("Missing value");
+		return text.toString();
+	}
+
+	private String readString() throws IOException, SerializationException {
+		expect('"');
+		text.setLength(0);
+		while (true) {
+			int b = next();
+			if (b == '"')
+				return text.toString();
+			if (b == '\\') {
+				b = next();
+				switch (b) {
+				case '"': case '\\': case '/': text.append((char) b); break;
+				case 'b': text.append('\b'); break;
+				case 'f': text.append('\f'); break;
+				case 'n': text.append('\n'); break;
+				case 'r': text.append('\r'); break;
+				case 't': text.append('\t'); break;
+				case 'u':
+					int code = 0;
+					for (int i = 0; i < 4; i++) {
+						int digit = Character.digit(next(), 16);
+						if (digit < 0)
+							throw error("Illegal escape");
+						code = code * 16 + digit;
+					}
+					// Surrogate pairs are written as two escapes, and end up as two chars
+					text.append((char) code);
+					break;
+				default:
+					throw error("Illegal escape");
+				}
+			} else if (b < 0x80)
+				text.append((char) b);
+			else {
+				// UTF-8 sequence
+				int count;
+				int code;
+				if ((b & 0xe0) == 0xc0) { count = 1; code = b & 0x1f; }
+				else if ((b & 0xf0) == 0xe0) { count = 2; code = b & 0x0f; }
+				else if ((b & 0xf8) == 0xf0) { count = 3; code = b & 0x07; }
+				else throw error("Malformed UTF-8");
+				for (int i = 0; i < count; i++) {
+					int cont = next();
+					if ((cont & 0xc0) != 0x80)
+						throw error("Malformed UTF-8");
+					code = (code << 6) | (cont & 0x3f);
+				}
+				if (code > Character.MAX_CODE_POINT)
+					throw error("Malformed UTF-8");
+				text.appendCodePoint(code);
+			}
+		}
+	}
+
+	private void expect(char c) throws IOException, SerializationException {
+		int found = skipWhitespace();
+		if (found == -1)
+			throw error("Unexpected end of input");
+		if (found != c)
+			throw error("Expected '" + c + "'");
+		next();
+	}
+
+	private static boolean isWhitespace(int c) {
+		return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+	}
+
+	/**
+	 * @return next byte which is not whitespace (not consumed), or -1 at the end of the input
+	 */
+	private int skipWhitespace() throws IOException {
+		int c;
+		while (isWhitespace(c = peek()))
+			buffer.get();
+		return c;
+	}
+
+	/**
+	 * @return next byte (not consumed), or -1 at the end of the input
+	 */
+	private int peek() throws IOException {
+		if (!fill()) return -1;
+		return buffer.get(buffer.position()) & 0xff;
+	}
+
+	/**
+	 * @return next byte, which is consumed
+	 */
+	private int next() throws IOException, SerializationException {
+		if (!fill())
+			throw error("Unexpected end of input");
+		return buffer.get() & 0xff;
+	}
+
+	/**
+	 * @return false if there are no more bytes
+	 */
+	private boolean fill() throws IOException {
+		while (!buffer.hasRemaining()) {
+			if (eof) return false;
+			offset += buffer.limit();
+			buffer.clear();
+			if (channel.read(buffer) < 0)
+				eof = true;
+			buffer.flip();
+		}
+		return true;
+	}
+
+	private SerializationException error(String message) {
+		return new SerializationException(message + " at byte " + (offset + buffer.position()));
+	}
+}
@@ -0,0 +1,79 @@
+package ee.ut.bpstruct.util;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+import junit.framework.TestCase;
+import de.hpi.bpt.process.ControlFlow;
+import de.hpi.bpt.process.Gateway;
+import de.hpi.bpt.process.GatewayType;
+import de.hpi.bpt.process.Node;
+import de.hpi.bpt.process.Process;
+import de.hpi.bpt.process.serialize.SerializationException;
+
+public class JSONProcessReaderTest extends TestCase {
+	// Flows before the nodes, an unknown member, escapes and non-ASCII labels
+	private static final String MODEL = "{\"flows\":[{\"label\":\"\",\"src\":\"t1\",\"tgt\":\"g1\"},"
+		+ "{\"src\":\"g1\",\"tgt\":\"t2\",\"label\":\"x > 1\"}],"
+		+ "\"bounds\":{\"x\":[1, 2.5e3, null, true]},"
+		+ "\"name\":\"M\\u00fcller \\\"1\\\"\",\n"
+		+ "\"tasks\":[{\"id\":\"t1\",\"label\":\"A\"},{\"id\":\"t2\",\"label\":\"Pr\u00fcfen \u20ac\"}],"
+		+ "\"gateways\":[{\"id\":\"g1\",\"type\":\"xor\"}]}";
+
+	public void testModel() throws Exception {
+		Process process = new JSONProcessReader(ByteBuffer.wrap(MODEL.getBytes("UTF-8"))).read();
+		assertEquals("M\u00fcller \"1\"", process.getName());
+		assertEquals(3, process.getVertices().size());
+		assertEquals(2, process.getControlFlow().size());
+		Node gateway = find(process, "g1");
+		assertEquals(GatewayType.XOR, ((Gateway) gateway).getGatewayType());
+		Node task = find(process, "t2");
+		assertEquals("Pr\u00fcfen \u20ac", task.getName());
+		assertSame(gateway, process.getPredecessors(task).iterator().next());
+		for (ControlFlow flow: process.getControlFlow())
+			assertEquals(flow.getSource() == gateway ? "x > 1" : "", flow.getLabel());
+	}
+
+	public void testSeveralModels() throws Exception {
+		String empty = "{\"name\":\"\",\"tasks\":[],\"gateways\":[],\"flows\":[]}";
+		byte[] bytes = (MODEL + "\n" + empty + " " + MODEL).getBytes("UTF-8");
+		// A small buffer, so that tokens span several reads
+		JSONProcessReader reader = new JSONProcessReader(Channels.newChannel(new ByteArrayInputStream(bytes)), 7);
+		assertEquals(3, reader.read().getVertices().size());
+		assertEquals(0, reader.read().getVertices().size());
+		assertEquals(3, reader.read().getVertices().size());
+		assertNull(reader.read());
+		reader.close();
+
+		reader = new JSONProcessReader(ByteBuffer.wrap(("[" + empty + ", " + MODEL + "]").getBytes("UTF-8")));
+		assertEquals("", reader.read().getName());
+		assertEquals(3, reader.read().getVertices().size());
+		assertNull(reader.read());
+	}
+
+	public void testErrors() throws Exception {
+		assertError("{\"name\":\"\",\"tasks\":[],\"gateways\":[],\"flows\":[{\"src\":\"a\",\"tgt\":\"b\",\"label\":\"\"}]}",
+				"Unknown node a was referenced by a flow as 'src'.");
+		assertError("{\"name\":\"\",\"tasks\":[],\"gateways\":[{\"id\":\"g\",\"type\":\"XAND\"}],\"flows\":[]}",
+				"Couldn't determine GatewayType.");
+		assertError("{\"name\":\"\",\"tasks\":[],\"gateways\":[]}", "JSONObject[\"flows\"] not found.");
+		assertError("{\"name\":\"\",\"tasks\":[", "Unexpected end of input at byte 20");
+	}
+
+	private static void assertError(String json, String message) throws Exception {
+		try {
+			new JSONProcessReader(ByteBuffer.wrap(json.getBytes("UTF-8"))).read();
+			fail();
+		} catch (SerializationException e) {
+			assertEquals(message, e.getMessage());
+		}
+	}
+
+	private static Node find(Process process, String id) {
+		for (Node node: process.getVertices())
+			if (node.getId().equals(id))
+				return node;
+		return null;
+	}
+}
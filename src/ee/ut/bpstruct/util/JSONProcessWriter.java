@@ -0,0 +1,123 @@
+package ee.ut.bpstruct.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import de.hpi.bpt.process.ControlFlow;
+import de.hpi.bpt.process.Gateway;
+import de.hpi.bpt.process.GatewayType;
+import de.hpi.bpt.process.Process;
+import de.hpi.bpt.process.Task;
+import de.hpi.bpt.process.serialize.SerializationException;
+
+/**
+ * Writes a process model in the JSON format of Process2JSON (read by JSONProcessReader), piece by
+ * piece, instead of building a JSONObject tree and then its text. As in Process2JSON, a missing
+ * name or task label is left out, a missing flow label is written as "", and gateways of undefined
+ * type cannot be written.
+ */
+public class JSONProcessWriter {
+
+	public static void write(Process process, Appendable out) throws IOException, SerializationException {
+		// Checked first, so that nothing is written for a model that cannot be serialized
+		for (Gateway gateway: process.getGateways())
+			if (gateway.getGatewayType() == GatewayType.UNDEFINED)
+				throw new SerializationException("GatewayType is UNDEFINED.");
+
+		out.append('{');
+		if (process.getName() != null) {
+			out.append("\"name\":");
+			quote(process.getName(), out);
+			out.append(',');
+		}
+		out.append("\"tasks\":[");
+		boolean first = true;
+		for (Task task: process.getTasks()) {
+			out.append(first ? "{\"id\":" : ",{\"id\":");
+			quote(task.getId(), out);
+			if (task.getName() != null) {
+				out.append(",\"label\":");
+				quote(task.getName(), out);
+			}
+			out.append('}');
+			first = false;
+		}
+		out.append("],\"gateways\":[");
+		first = true;
+		for (Gateway gateway: process.getGateways()) {
+			out.append(first ? "{\"id\":" : ",{\"id\":");
+			quote(gateway.getId(), out);
+			out.append(",\"type\":\"").append(gateway.getGatewayType().toString()).append("\"}");
+			first = false;
+		}
+		out.append("],\"flows\":[");
+		first = true;
+		for (ControlFlow flow: process.getControlFlow()) {
+			out.append(first ? "{\"src\":" : ",{\"src\":");
+			quote(flow.getSource().getId(), out);
+			out.append(",\"tgt\":");
+			quote(flow.getTarget().getId(), out);
+			out.append(",\"label\":");
+			quote(flow.getLabel() == null ? "" : flow.getLabel(), out);
+			out.append('}');
+			first = false;
+		}
+		out.append("]}");
+	}
+
+	/**
+	 * Writes the model in UTF-8. The channel is not closed.
+	 */
+	public static void write(Process process, WritableByteChannel channel) throws IOException, SerializationException {
+		Writer writer = Channels.newWriter(channel, "UTF-8");
+		write(process, writer);
+		writer.flush();
+	}
+
+	public static void write(Process process, File file) throws IOException, SerializationException {
+		FileOutputStream stream = new FileOutputStream(file);
+		try {
+			write(process, stream.getChannel());
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Writes a JSON string, escaped as by JSONObject.quote()
+	 */
+	private static void quote(String string, Appendable out) throws IOException {
+		out.append('"');
+		int start = 0;
+		char previous = 0;
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			String escape = null;
+			switch (c) {
+			case '"': escape = "\\\""; break;
+			case '\\': escape = "\\\\"; break;
+			case '/': if (previous == '<') escape = "\\/"; break;
+			case '\b': escape = "\\b"; break;
+			case '\t': escape = "\\t"; break;
+			case '\n': escape = "\\n"; break;
+			case '\f': escape = "\\f"; break;
+			case '\r': escape = "\\r"; break;
+			default:
+				if (c < ' ' || (c >= '\u0080' && c < '\u00a0') || (c >= '\u2000' && c < '\u2100')) {
+					String hex = Integer.toHexString(c);
+					escape = "\\u0000".substring(0, 6 - hex.length()) + hex;
+				}
+			}
+			if (escape != null) {
+				out.append(string, start, i).append(escape);
+				start = i + 1;
+			}
+			previous = c;
+		}
+		out.append(string, start, string.length()).append('"');
+	}
+}
@@ -0,0 +1,49 @@
+package ee.ut.bpstruct.util;
+
+import java.nio.ByteBuffer;
+
+import junit.framework.TestCase;
+import de.hpi.bpt.process.ControlFlow;
+import de.hpi.bpt.process.Gateway;
+import de.hpi.bpt.process.GatewayType;
+import de.hpi.bpt.process.Process;
+import de.hpi.bpt.process.Task;
+import de.hpi.bpt.process.serialize.SerializationException;
+
+public class JSONProcessWriterTest extends TestCase {
+
+	public void testRoundTrip() throws Exception {
+		Process process = new Process("a \"quoted\" </name>");
+		Task task = new Task("tab\there \u00e9\u2028");
+		task.setId("t");
+		Gateway gateway = new Gateway(GatewayType.AND);
+		gateway.setId("g");
+		process.addControlFlow(task, gateway).setLabel("x\\y\n");
+
+		StringBuilder json = new StringBuilder();
+		JSONProcessWriter.write(process, json);
+		assertTrue(json.indexOf("<\\/name>") > 0);
+		assertTrue(json.indexOf("\\u2028") > 0);
+
+		Process copy = new JSONProcessReader(ByteBuffer.wrap(json.toString().getBytes("UTF-8"))).read();
+		assertEquals(process.getName(), copy.getName());
+		assertEquals(task.getName(), copy.getTasks().iterator().next().getName());
+		assertEquals(GatewayType.AND, copy.getGateways().iterator().next().getGatewayType());
+		ControlFlow flow = copy.getControlFlow().iterator().next();
+		assertEquals("t", flow.getSource().getId());
+		assertEquals("x\\y\n", flow.getLabel());
+	}
+
+	public void testUndefinedGateway() throws Exception {
+		Process process = new Process("p");
+		process.addGateway(new Gateway(GatewayType.UNDEFINED));
+		StringBuilder json = new StringBuilder();
+		try {
+			JSONProcessWriter.write(process, json);
+			fail();
+		} catch (SerializationException e) {
+			assertEquals("GatewayType is UNDEFINED.", e.getMessage());
+		}
+		assertEquals(0, json.length());
+	}
+}
@@ -17,6 +17,22 @@ import ee.ut.bpstruct.jbpt.Pair;
 public class ProcessUtils {
 	
 	Map<String, ControlFlow> materializedFlow = new HashMap<String, ControlFlow>();
+	boolean stableLabels = false;
+	
+	/**
+	 * When set, the tasks materializing decisions are labeled after the identifiers of the gateway
+	 * and the successor, such that a decision gets the same label in every revision of a model.
+	 */
+	public void setStableLabels(boolean stableLabels) {
+		this.stableLabels = stableLabels;
+	}
+	
+	/**
+	 * @return true if the node is a task materializing a decision
+	 */
+	public boolean isMaterialized(Node node) {
+		return node instanceof Task && materializedFlow.containsKey(node.getName());
+	}
 	
 	/**
 	 * This is a quite important method. It adds a graph node representing XOR split outgoing edges.
@@ -35,10 +51,11 @@ public class ProcessUtils {
 		for (Gateway gw: proc.getGateways()) {
 			if (gw.isXOR() && proc.getOutgoingEdges(gw).size() > 1) {
 				for (ControlFlow outflow: proc.getOutgoingEdges(gw)) {
-					String label = String.format("_flow_%d_", counter++);
+					Node succ = outflow.getTarget();
+					String label = stableLabels ? String.format("_flow_%s_%s_", gw.getId(), succ.getId())
+							: String.format("_flow_%d_", counter++);
 					Task task = new Task(label);
 //					proc.addTask(task);
-					Node succ = outflow.getTarget();
 					proc.addControlFlow(task, succ);
 					outflow.setTarget(task);
 					materializedFlow.put(label, outflow);
@@ -64,8 +81,9 @@ public class ProcessUtils {
 				for (ControlFlow edge: proc.getOutgoingEdges(gw)) {
 					Node succ = edge.getTarget();
 					// XOR split cannot precede XOR gateways (there should be one task in
-					// between, i.e. representing the branching condition) 
-					if (succ instanceof Gateway && ((Gateway)succ).isXOR()) {						
+					// between, i.e. representing the branching condition). A join, however,
+					// may directly follow a split (e.g. loops duplicated by node splitting).
+					if (succ instanceof Gateway && ((Gateway)succ).isXOR() && proc.getIncomingEdges(succ).size() == 1) {						
 						List<Gateway> succs = map.get(gw);
 						if (succs == null)
 							map.put(gw, succs = new LinkedList<Gateway>());
@@ -19,7 +19,11 @@ package ee.ut.comptech;
 import java.util.List;
 import java.util.Set;
 
+/**
+ * Receives the loops identified by DJGraph.identifyLoops, with their entries (vertices with a
+ * predecessor out of the loop, or the root) and their exits (vertices with a successor out of the loop)
+ */
 public interface DJGraphHelper {
-	List<Integer> processSEME(Set<Integer> loopbody);
-	List<Integer> processMEME(Set<Integer> loopbody);
+	List<Integer> processSEME(Set<Integer> loopbody, Set<Integer> entries, Set<Integer> exits);
+	List<Integer> processMEME(Set<Integer> loopbody, Set<Integer> entries, Set<Integer> exits);
 }
@@ -16,24 +16,27 @@
  */
 package ee.ut.comptech;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Dominator tree of a graph given as an adjacency list over arbitrary vertex identifiers. The
+ * vertices are mapped to {0, ..., n-1} and the tree is computed by Dominators.
+ */
 public class DominatorTree {
 	Map<Integer, List<Integer>> adjList;
 	HashMap<Integer, InfoNode> map = new HashMap<Integer, InfoNode>();
 	LinkedList<InfoNode> vertex = new LinkedList<InfoNode>();
 
+	private Map<Integer, Integer> ids = new HashMap<Integer, Integer>();
+	private List<Integer> nodes = new ArrayList<Integer>();
+	private Dominators dominators;
+
 	public class InfoNode {
 		int dfsnum;
-		int semi;
-		InfoNode parent;
-		InfoNode ancestor;
-		InfoNode label;
-		LinkedList<InfoNode> pred = new LinkedList<InfoNode>();
-		LinkedList<InfoNode> bucket = new LinkedList<InfoNode>();
 		InfoNode dom;
 		Integer node;
 		
@@ -44,79 +47,57 @@ public class DominatorTree {
 	public DominatorTree(Map<Integer, List<Integer>> adjList) {
 		this.adjList = adjList;
 	}
-	
-	public void DFS(Integer node, Integer parent) {
-		InfoNode info = new InfoNode();
-		info.node = node;
-		info.parent = map.get(parent);
-		info.dfsnum = vertex.size();
-		info.semi = info.dfsnum;
-		info.label = info;
 
-		vertex.add(info);
-		map.put(node, info);
-		for (Integer succ : adjList.get(node)) {
-			if (!map.containsKey(succ))
-				DFS(succ, node);
-			map.get(succ).pred.add(info);
+	public void analyse(Integer root) {
+		for (Map.Entry<Integer, List<Integer>> entry: adjList.entrySet()) {
+			id(entry.getKey());
+			for (Integer succ: entry.getValue())
+				id(succ);
 		}
-	}
-
-	
-
-	public void COMPRESS(InfoNode v) {
-		if (v.ancestor.ancestor != null) {
-			COMPRESS(v.ancestor);
-			if (v.ancestor.label.semi < v.label.semi)
-				v.label = v.ancestor.label;
-			v.ancestor = v.ancestor.ancestor;
+		int[] offsets = new int[nodes.size() + 1];
+		for (int v = 0; v < nodes.size(); v++) {
+			List<Integer> succs = adjList.get(nodes.get(v));
+			offsets[v + 1] = offsets[v] + (succs == null ? 0 : succs.size());
 		}
-	}
-
-	public InfoNode EVAL(InfoNode v) {
-		if (v.ancestor == null)
-			return v;
-		else {
-			COMPRESS(v);
-			return v.label;
+		int[] targets = new int[offsets[nodes.size()]];
+		for (int v = 0, e = 0; v < nodes.size(); v++) {
+			List<Integer> succs = adjList.get(nodes.get(v));
+			if (succs != null)
+				for (Integer succ: succs)
+					targets[e++] = ids.get(succ);
 		}
-	}
+		dominators = Dominators.dominators(offsets, targets, id(root));
 
-	public void LINK(InfoNode v, InfoNode w) {
-		w.ancestor = v;
+		// Vertices are listed in depth-first preorder, hence the dominator of a vertex precedes it
+		for (int v: dominators.getPreorder()) {
+			InfoNode info = new InfoNode();
+			info.node = nodes.get(v);
+			info.dfsnum = vertex.size();
+			if (dominators.getIdom(v) >= 0)
+				info.dom = map.get(nodes.get(dominators.getIdom(v)));
+			vertex.add(info);
+			map.put(info.node, info);
+		}
 	}
 
-	public void analyse(Integer root) {
-		// STEP 1
-		DFS(root, null);
-		for (int i = vertex.size() - 1; i > 0; i--) {
-			InfoNode w = vertex.get(i);
-			// STEP 2
-			for (InfoNode v : w.pred) {
-				InfoNode u = EVAL(v);
-				if (u.semi < w.semi)
-					w.semi = u.semi;
-			}
-			vertex.get(w.semi).bucket.add(w);
-			LINK(w.parent, w);
-
-			// STEP 3
-			for (InfoNode v : w.parent.bucket) {
-				InfoNode u = EVAL(v);
-				v.dom = u.semi < v.semi ? u : w.parent;
-			}
-			w.parent.bucket.clear();
+	private int id(Integer node) {
+		Integer id = ids.get(node);
+		if (id == null) {
+			ids.put(node, id = nodes.size());
+			nodes.add(node);
 		}
-		// STEP 4
-		for (int i = 1; i < vertex.size(); i++) {
-			InfoNode w = vertex.get(i);
-			if (w.dom != vertex.get(w.semi))
-				w.dom = w.dom.dom;
-		}
-		map.get(root).dom = null;
+		return id;
 	}
-	
+
 	public InfoNode getInfo(Integer node) {
 		return map.get(node);
 	}
+
+	/**
+	 * @return true if v1 dominates v2 (in constant time)
+	 */
+	public boolean dominates(Integer v1, Integer v2) {
+		Integer id1 = ids.get(v1), id2 = ids.get(v2);
+		return id1 != null && id2 != null && dominators.dominates(id1, id2);
+	}
 }
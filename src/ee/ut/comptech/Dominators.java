@@ -0,0 +1,313 @@
+package ee.ut.comptech;
+
+import java.util.Arrays;
+
+/**
+ * Dominator (or post-dominator) tree of a flow graph whose vertices are {0, ..., n-1}, given in
+ * compressed sparse row form: the successors of vertex v are targets[offsets[v]] ... targets[offsets[v+1]-1].
+ *
+ * Two algorithms are available: Lengauer and Tarjan's, with path compression ("A fast algorithm for
+ * finding dominators in a flowgraph", TOPLAS 1(1):121-141, 1979) and the iterative algorithm by Cooper,
+ * Harvey and Kennedy ("A simple, fast dominance algorithm", 2001), which is usually faster on small
+ * graphs. Both are implemented over arrays, with explicit stacks.
+ *
+ * Vertices that are not reachable from the root have no immediate dominator (as the root itself) and
+ * neither dominate nor are dominated by any other vertex.
+ */
+public class Dominators {
+	public enum Algorithm { LENGAUER_TARJAN, COOPER_HARVEY_KENNEDY }
+
+	/**
+	 * Graphs with at most this number of vertices are analysed with Cooper-Harvey-Kennedy by default
+	 */
+	public static final int SMALL_GRAPH = 64;
+
+	private final int root;
+	private final int[] idom;
+	private final int[] preorder;
+	// Interval of each vertex in a depth-first traversal of the dominator tree
+	private final int[] enter;
+	private final int[] leave;
+
+	/**
+	 * @return dominator tree of the graph, rooted at "root"
+	 */
+	public static Dominators dominators(int[] offsets, int[] targets, int root) {
+		return dominators(offsets, targets, root, defaultAlgorithm(offsets));
+	}
+
+	public static Dominators dominators(int[] offsets, int[] targets, int root, Algorithm algorithm) {
+		return new Dominators(offsets, targets, root, algorithm);
+	}
+
+	/**
+	 * @return post-dominator tree of the graph, rooted at "exit" (i.e. the dominator tree of the reverse graph)
+	 */
+	public static Dominators postDominators(int[] offsets, int[] targets, int exit) {
+		return postDominators(offsets, targets, exit, defaultAlgorithm(offsets));
+	}
+
+	public static Dominators postDominators(int[] offsets, int[] targets, int exit, Algorithm algorithm) {
+		int[] roffsets = new int[offsets.length];
+		int[] rtargets = new int[targets.length];
+		reverse(offsets, targets, roffsets, rtargets);
+		return new Dominators(roffsets, rtargets, exit, algorithm);
+	}
+
+	private static Algorithm defaultAlgorithm(int[] offsets) {
+		return offsets.length - 1 <= SMALL_GRAPH ? Algorithm.COOPER_HARVEY_KENNEDY : Algorithm.LENGAUER_TARJAN;
+	}
+
+	private Dominators(int[] offsets, int[] targets, int root, Algorithm algorithm) {
+		int n = offsets.length - 1;
+		this.root = root;
+
+		// Depth-first search: preorder numbering, spanning tree and postorder numbering
+		int[] dfnum = new int[n];
+		Arrays.fill(dfnum, -1);
+		int[] vertex = new int[n];
+		int[] parent = new int[n];
+		int[] postnum = new int[n];
+		int count = dfs(offsets, targets, root, dfnum, vertex, parent, postnum);
+		preorder = Arrays.copyOf(vertex, count);
+
+		int[] poffsets = new int[n + 1];
+		int[] ptargets = new int[targets.length];
+		reverse(offsets, targets, poffsets, ptargets);
+
+		idom = new int[n];
+		Arrays.fill(idom, -1);
+		if (algorithm == Algorithm.LENGAUER_TARJAN)
+			lengauerTarjan(poffsets, ptargets, dfnum, vertex, parent, count);
+		else
+			cooperHarveyKennedy(poffsets, ptargets, dfnum, vertex, postnum, count);
+
+		enter = new int[n];
+		leave = new int[n];
+		numberTree(n);
+	}
+
+	/**
+	 * @return number of vertices reached from the root
+	 */
+	private static int dfs(int[] offsets, int[] targets, int root, int[] dfnum, int[] vertex,
+			int[] parent, int[] postnum) {
+		int[] stack = new int[vertex.length];
+		int[] next = new int[vertex.length];
+		int count = 0, post = 0, top = 0;
+		dfnum[root] = count;
+		vertex[count++] = root;
+		parent[root] = -1;
+		next[root] = offsets[root];
+		stack[top++] = root;
+		while (top > 0) {
+			int v = stack[top - 1];
+			if (next[v] < offsets[v + 1]) {
+				int w = targets[next[v]++];
+				if (dfnum[w] < 0) {
+					dfnum[w] = count;
+					vertex[count++] = w;
+					parent[w] = v;
+					next[w] = offsets[w];
+					stack[top++] = w;
+				}
+			} else {
+				postnum[v] = post++;
+				top--;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Lengauer-Tarjan, simple version. The semi-dominators, labels and ancestors are indexed by
+	 * preorder number.
+	 */
+	private void lengauerTarjan(int[] poffsets, int[] ptargets, int[] dfnum, int[] vertex, int[] parent, int count) {
+		int[] semi = new int[count];
+		int[] label = new int[count];
+		int[] ancestor = new int[count];
+		int[] dom = new int[count];
+		int[] bucket = new int[count];
+		int[] nextInBucket = new int[count];
+		int[] stack = new int[count];
+		for (int i = 0; i < count; i++) {
+			semi[i] = label[i] = i;
+			ancestor[i] = bucket[i] = -1;
+		}
+
+		for (int w = count - 1; w > 0; w--) {
+			int p = dfnum[parent[vertex[w]]];
+			for (int e = poffsets[vertex[w]]; e < poffsets[vertex[w] + 1]; e++) {
+				int v = dfnum[ptargets[e]];
+				if (v < 0) continue;
+				int u = eval(v, ancestor, label, semi, stack);
+				if (semi[u] < semi[w])
+					semi[w] = semi[u];
+			}
+			nextInBucket[w] = bucket[semi[w]];
+			bucket[semi[w]] = w;
+			ancestor[w] = p;
+
+			for (int v = bucket[p]; v >= 0; v = nextInBucket[v]) {
+				int u = eval(v, ancestor, label, semi, stack);
+				dom[v] = semi[u] < semi[v] ? u : p;
+			}
+			bucket[p] = -1;
+		}
+
+		for (int w = 1; w < count; w++) {
+			if (dom[w] != semi[w])
+				dom[w] = dom[dom[w]];
+			idom[vertex[w]] = vertex[dom[w]];
+		}
+	}
+
+	private static int eval(int v, int[] ancestor, int[] label, int[] semi, int[] stack) {
+		if (ancestor[v] < 0)
+			return v;
+		// Path compression, from the vertex closest to the root of the forest down to v
+		int top = 0;
+		for (int x = v; ancestor[ancestor[x]] >= 0; x = ancestor[x])
+			stack[top++] = x;
+		while (top > 0) {
+			int x = stack[--top];
+			int a = ancestor[x];
+			if (semi[label[a]] < semi[label[x]])
+				label[x] = label[a];
+			ancestor[x] = ancestor[a];
+		}
+		return label[v];
+	}
+
+	/**
+	 * Cooper-Harvey-Kennedy: iterates over the vertices in reverse postorder until the immediate
+	 * dominators are stable. The dominators are indexed by postorder number.
+	 */
+	private void cooperHarveyKennedy(int[] poffsets, int[] ptargets, int[] dfnum, int[] vertex, int[] postnum, int count) {
+		int[] byPost = new int[count];
+		for (int i = 0; i < count; i++)
+			byPost[postnum[vertex[i]]] = vertex[i];
+		int[] dom = new int[count];
+		Arrays.fill(dom, -1);
+		int r = postnum[root];
+		dom[r] = r;
+
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int b = r - 1; b >= 0; b--) {
+				int v = byPost[b];
+				int newIdom = -1;
+				for (int e = poffsets[v]; e < poffsets[v + 1]; e++) {
+					int p = ptargets[e];
+					if (dfnum[p] < 0 || dom[postnum[p]] < 0) continue;
+					newIdom = newIdom < 0 ? postnum[p] : intersect(postnum[p], newIdom, dom);
+				}
+				if (dom[b] != newIdom) {
+					dom[b] = newIdom;
+					changed = true;
+				}
+			}
+		}
+
+		for (int b = 0; b < r; b++)
+			idom[byPost[b]] = byPost[dom[b]];
+	}
+
+	private static int intersect(int b1, int b2, int[] dom) {
+		while (b1 != b2) {
+			while (b1 < b2)
+				b1 = dom[b1];
+			while (b2 < b1)
+				b2 = dom[b2];
+		}
+		return b1;
+	}
+
+	/**
+	 * Numbers the dominator tree, such that a dominates b iff the interval of a contains that of b
+	 */
+	private void numberTree(int n) {
+		int[] offsets = new int[n + 1];
+		for (int v: preorder)
+			if (idom[v] >= 0)
+				offsets[idom[v] + 1]++;
+		for (int v = 0; v < n; v++)
+			offsets[v + 1] += offsets[v];
+		int[] children = new int[Math.max(preorder.length - 1, 0)];
+		int[] fill = Arrays.copyOf(offsets, n);
+		for (int v: preorder)
+			if (idom[v] >= 0)
+				children[fill[idom[v]]++] = v;
+
+		Arrays.fill(enter, -1);
+		Arrays.fill(leave, -1);
+		int[] stack = new int[n];
+		int[] next = new int[n];
+		int top = 0, counter = 0;
+		enter[root] = counter++;
+		next[root] = offsets[root];
+		stack[top++] = root;
+		while (top > 0) {
+			int v = stack[top - 1];
+			if (next[v] < offsets[v + 1]) {
+				int w = children[next[v]++];
+				enter[w] = counter++;
+				next[w] = offsets[w];
+				stack[top++] = w;
+			} else {
+				leave[v] = counter++;
+				top--;
+			}
+		}
+	}
+
+	/**
+	 * Builds the reverse graph, in compressed sparse row form
+	 *
+	 * @param roffsets OUT: array of the same length as offsets
+	 * @param rtargets OUT: array of the same length as targets
+	 */
+	public static void reverse(int[] offsets, int[] targets, int[] roffsets, int[] rtargets) {
+		int n = offsets.length - 1;
+		Arrays.fill(roffsets, 0);
+		for (int e = 0; e < offsets[n]; e++)
+			roffsets[targets[e] + 1]++;
+		for (int v = 0; v < n; v++)
+			roffsets[v + 1] += roffsets[v];
+		int[] fill = Arrays.copyOf(roffsets, n);
+		for (int v = 0; v < n; v++)
+			for (int e = offsets[v]; e < offsets[v + 1]; e++)
+				rtargets[fill[targets[e]]++] = v;
+	}
+
+	public int getRoot() {
+		return root;
+	}
+
+	/**
+	 * @return immediate dominator of v, or -1 for the root and the vertices not reachable from it
+	 */
+	public int getIdom(int v) {
+		return idom[v];
+	}
+
+	public boolean isReachable(int v) {
+		return enter[v] >= 0;
+	}
+
+	/**
+	 * @return vertices reachable from the root, in depth-first preorder
+	 */
+	public int[] getPreorder() {
+		return preorder;
+	}
+
+	/**
+	 * @return true if a dominates b (every vertex dominates itself)
+	 */
+	public boolean dominates(int a, int b) {
+		return enter[a] >= 0 && enter[b] >= 0 && enter[a] <= enter[b] && leave[b] <= leave[a];
+	}
+}
@@ -0,0 +1,110 @@
+package ee.ut.comptech;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import ee.ut.comptech.Dominators.Algorithm;
+
+public class DominatorsTest extends TestCase {
+	// 0 -> 1 -> {2, 3}, 2 -> 4, 3 -> 4, 4 -> {1, 5}, 6 (unreachable) -> 5
+	private static final int[] OFFSETS = {0, 1, 3, 4, 5, 7, 7, 8};
+	private static final int[] TARGETS = {1, 2, 3, 4, 4, 1, 5, 5};
+
+	public void testDominators() {
+		for (Algorithm algorithm: Algorithm.values()) {
+			Dominators dom = Dominators.dominators(OFFSETS, TARGETS, 0, algorithm);
+			int[] expected = {-1, 0, 1, 1, 1, 4, -1};
+			for (int v = 0; v < expected.length; v++)
+				assertEquals(expected[v], dom.getIdom(v));
+			assertTrue(dom.dominates(1, 5));
+			assertTrue(dom.dominates(4, 4));
+			assertFalse(dom.dominates(2, 4));
+			assertFalse(dom.isReachable(6));
+			assertFalse(dom.dominates(0, 6));
+		}
+	}
+
+	public void testPostDominators() {
+		for (Algorithm algorithm: Algorithm.values()) {
+			Dominators pdom = Dominators.postDominators(OFFSETS, TARGETS, 5, algorithm);
+			int[] expected = {1, 4, 4, 4, 5, -1, 5};
+			for (int v = 0; v < expected.length; v++)
+				assertEquals(expected[v], pdom.getIdom(v));
+		}
+	}
+
+	public void testRandomGraphs() {
+		Random random = new Random(42);
+		for (int round = 0; round < 200; round++) {
+			int n = 1 + random.nextInt(40);
+			List<List<Integer>> succs = new ArrayList<List<Integer>>();
+			for (int v = 0; v < n; v++) {
+				succs.add(new ArrayList<Integer>());
+				int degree = random.nextInt(4);
+				for (int i = 0; i < degree; i++)
+					succs.get(v).add(random.nextInt(n));
+			}
+			int[] offsets = new int[n + 1];
+			for (int v = 0; v < n; v++)
+				offsets[v + 1] = offsets[v] + succs.get(v).size();
+			int[] targets = new int[offsets[n]];
+			for (int v = 0, e = 0; v < n; v++)
+				for (Integer w: succs.get(v))
+					targets[e++] = w;
+
+			Dominators lt = Dominators.dominators(offsets, targets, 0, Algorithm.LENGAUER_TARJAN);
+			Dominators chk = Dominators.dominators(offsets, targets, 0, Algorithm.COOPER_HARVEY_KENNEDY);
+			for (int v = 0; v < n; v++) {
+				assertEquals(lt.getIdom(v), chk.getIdom(v));
+				for (int w = 0; w < n; w++)
+					assertEquals(dominates(offsets, targets, v, w), lt.dominates(v, w));
+			}
+		}
+	}
+
+	public void testLongPath() {
+		// deep enough to overflow a recursive depth-first search
+		int n = 200000;
+		int[] offsets = new int[n + 1];
+		int[] targets = new int[n - 1];
+		for (int v = 0; v < n - 1; v++) {
+			targets[v] = v + 1;
+			offsets[v + 1] = v + 1;
+		}
+		offsets[n] = n - 1;
+		for (Algorithm algorithm: Algorithm.values()) {
+			Dominators dom = Dominators.dominators(offsets, targets, 0, algorithm);
+			assertEquals(n - 2, dom.getIdom(n - 1));
+			assertTrue(dom.dominates(1, n - 1));
+		}
+	}
+
+	/**
+	 * By definition: v dominates w iff w is reachable from the root, and not without going through v
+	 */
+	private boolean dominates(int[] offsets, int[] targets, int v, int w) {
+		if (!reachable(offsets, targets, -1).get(w))
+			return false;
+		return v == w || !reachable(offsets, targets, v).get(w);
+	}
+
+	private BitSet reachable(int[] offsets, int[] targets, int removed) {
+		BitSet visited = new BitSet();
+		if (removed == 0) return visited;
+		List<Integer> worklist = new ArrayList<Integer>();
+		worklist.add(0);
+		visited.set(0);
+		while (!worklist.isEmpty()) {
+			int v = worklist.remove(worklist.size() - 1);
+			for (int e = offsets[v]; e < offsets[v + 1]; e++)
+				if (targets[e] != removed && !visited.get(targets[e])) {
+					visited.set(targets[e]);
+					worklist.add(targets[e]);
+				}
+		}
+		return visited;
+	}
+}
@@ -0,0 +1,297 @@
+package ee.ut.comptech;
+
+import java.util.Arrays;
+
+/**
+ * Loop nesting forest of a flow graph whose vertices are {0, ..., n-1}, given in compressed sparse
+ * row form (see Dominators). The loops are computed with Havlak's algorithm ("Nesting of reducible
+ * and irreducible loops", TOPLAS 19(4):557-567, 1997), including the correction by Ramalingam
+ * ("Identifying loops in almost linear time", TOPLAS 21(2):175-188, 1999), in O(e log* n) time: the
+ * vertices are visited in reverse depth-first preorder and the body of each loop is collapsed into its
+ * header with a union-find structure.
+ *
+ * Every loop is identified by its header, i.e. the first vertex of the loop reached by the depth-first
+ * search. A loop is reducible if the header is its only entry, and irreducible otherwise. Vertices not
+ * reachable from the root belong to no loop.
+ */
+public class LoopNestingForest {
+	public enum LoopType { NONE, SELF, REDUCIBLE, IRREDUCIBLE }
+
+	private final int n;
+	private final int[] offsets;
+	private final int[] targets;
+	private final int root;
+
+	private final int[] header;
+	private final LoopType[] type;
+	private final int[] headers;
+
+	// Loop nesting forest: the children of a header are the vertices whose innermost header it is
+	private final int[] childOffsets;
+	private final int[] children;
+
+	// Predecessors, in compressed sparse row form
+	private final int[] poffsets;
+	private final int[] ptargets;
+
+	// Scratch arrays shared by the queries: the body of a loop (compacted in place into the
+	// result), and the marks of its vertices
+	private final int[] buffer;
+	private final int[] mark;
+	private int stamp = 0;
+
+	public LoopNestingForest(int[] offsets, int[] targets, int root) {
+		this.n = offsets.length - 1;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.root = root;
+		this.header = new int[n];
+		this.type = new LoopType[n];
+		this.buffer = new int[n];
+		this.mark = new int[n];
+		Arrays.fill(header, -1);
+		Arrays.fill(type, LoopType.NONE);
+
+		// Depth-first search: preorder numbers and, for each vertex, the last number in its subtree
+		int[] number = new int[n];
+		Arrays.fill(number, -1);
+		int[] vertex = new int[n];
+		int[] last = new int[n];
+		int count = dfs(number, vertex, last);
+
+		poffsets = new int[n + 1];
+		ptargets = new int[targets.length];
+		Dominators.reverse(offsets, targets, poffsets, ptargets);
+
+		// Everything below is indexed by preorder number
+		int[] parent = new int[count];
+		int[] hdr = new int[count];
+		boolean[] irreducible = new boolean[count];
+		boolean[] self = new boolean[count];
+		boolean[] isHeader = new boolean[count];
+		boolean[] nested = new boolean[count];
+		// Predecessors that are not back edges, extended with the entries of nested irreducible loops
+		int[][] entries = new int[count][];
+		int[] entryCount = new int[count];
+		for (int w = 0; w < count; w++) {
+			parent[w] = w;
+			hdr[w] = -1;
+		}
+		for (int w = 0; w < count; w++) {
+			int v = vertex[w];
+			entries[w] = new int[poffsets[v + 1] - poffsets[v]];
+			for (int e = poffsets[v]; e < poffsets[v + 1]; e++) {
+				int p = number[ptargets[e]];
+				if (p >= 0 && !isAncestor(w, p, last))
+					entries[w][entryCount[w]++] = p;
+			}
+		}
+
+		int[] body = new int[count];
+		int[] inBody = new int[count];
+		Arrays.fill(inBody, -1);
+		for (int w = count - 1; w >= 0; w--) {
+			int size = 0;
+			int v = vertex[w];
+			for (int e = poffsets[v]; e < poffsets[v + 1]; e++) {
+				int p = number[ptargets[e]];
+				if (p < 0 || !isAncestor(w, p, last)) continue;
+				if (p == w) {
+					self[w] = true;
+					continue;
+				}
+				int x = find(p, parent);
+				if (inBody[x] != w) {
+					inBody[x] = w;
+					body[size++] = x;
+				}
+			}
+
+			for (int i = 0; i < size; i++) {
+				int x = body[i];
+				for (int j = 0; j < entryCount[x]; j++) {
+					int y = find(entries[x][j], parent);
+					if (!isAncestor(w, y, last)) {
+						// The loop is entered from y, which is not below the header
+						irreducible[w] = true;
+						entries[w] = append(entries[w], entryCount[w]++, y);
+					} else if (y != w && inBody[y] != w) {
+						inBody[y] = w;
+						body[size++] = y;
+					}
+				}
+			}
+
+			nested[w] = size > 0;
+			isHeader[w] = nested[w] || self[w];
+			for (int i = 0; i < size; i++) {
+				hdr[body[i]] = w;
+				parent[body[i]] = w;
+			}
+		}
+
+		int loops = 0;
+		for (int w = 0; w < count; w++) {
+			if (hdr[w] >= 0)
+				header[vertex[w]] = vertex[hdr[w]];
+			if (isHeader[w]) {
+				type[vertex[w]] = irreducible[w] ? LoopType.IRREDUCIBLE : nested[w] ? LoopType.REDUCIBLE : LoopType.SELF;
+				loops++;
+			}
+		}
+		// Innermost loops first: a header is visited after the headers of the loops nested in it
+		headers = new int[loops];
+		for (int w = count - 1, i = 0; w >= 0; w--)
+			if (isHeader[w])
+				headers[i++] = vertex[w];
+
+		childOffsets = new int[n + 1];
+		for (int v = 0; v < n; v++)
+			if (header[v] >= 0)
+				childOffsets[header[v] + 1]++;
+		for (int v = 0; v < n; v++)
+			childOffsets[v + 1] += childOffsets[v];
+		children = new int[childOffsets[n]];
+		int[] fill = Arrays.copyOf(childOffsets, n);
+		for (int v = 0; v < n; v++)
+			if (header[v] >= 0)
+				children[fill[header[v]]++] = v;
+	}
+
+	private int dfs(int[] number, int[] vertex, int[] last) {
+		int[] stack = new int[n];
+		int[] next = new int[n];
+		int count = 0, top = 0;
+		number[root] = count;
+		vertex[count++] = root;
+		next[root] = offsets[root];
+		stack[top++] = root;
+		while (top > 0) {
+			int v = stack[top - 1];
+			if (next[v] < offsets[v + 1]) {
+				int w = targets[next[v]++];
+				if (number[w] < 0) {
+					number[w] = count;
+					vertex[count++] = w;
+					next[w] = offsets[w];
+					stack[top++] = w;
+				}
+			} else {
+				last[number[v]] = count - 1;
+				top--;
+			}
+		}
+		return count;
+	}
+
+	private static boolean isAncestor(int w, int v, int[] last) {
+		return w <= v && v <= last[w];
+	}
+
+	/**
+	 * Union-find with path halving
+	 */
+	private static int find(int x, int[] parent) {
+		while (parent[x] != x) {
+			parent[x] = parent[parent[x]];
+			x = parent[x];
+		}
+		return x;
+	}
+
+	private static int[] append(int[] array, int size, int value) {
+		if (size == array.length)
+			array = Arrays.copyOf(array, size * 2 + 1);
+		array[size] = value;
+		return array;
+	}
+
+	/**
+	 * @return headers of the loops, such that nested loops precede the loops containing them
+	 */
+	public int[] getHeaders() {
+		return headers;
+	}
+
+	public boolean isHeader(int v) {
+		return type[v] != LoopType.NONE;
+	}
+
+	/**
+	 * @return type of the loop with header v (NONE if v is not a header)
+	 */
+	public LoopType getType(int v) {
+		return type[v];
+	}
+
+	/**
+	 * @return header of the innermost loop containing v (other than the loop with header v), or -1
+	 */
+	public int getHeader(int v) {
+		return header[v];
+	}
+
+	/**
+	 * @return vertices of the loop with header h, including h and the vertices of nested loops
+	 */
+	public int[] getBody(int h) {
+		return Arrays.copyOf(buffer, collectBody(h));
+	}
+
+	/**
+	 * @return vertices of the loop with header h that are reached from outside the loop (or the root)
+	 */
+	public int[] getEntries(int h) {
+		int size = markBody(h);
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			int v = buffer[i];
+			boolean entry = v == root;
+			for (int e = poffsets[v]; e < poffsets[v + 1] && !entry; e++)
+				entry = mark[ptargets[e]] != stamp;
+			if (entry)
+				buffer[count++] = v;
+		}
+		return Arrays.copyOf(buffer, count);
+	}
+
+	/**
+	 * @return vertices of the loop with header h that have a successor outside the loop
+	 */
+	public int[] getExits(int h) {
+		int size = markBody(h);
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			int v = buffer[i];
+			boolean exit = false;
+			for (int e = offsets[v]; e < offsets[v + 1] && !exit; e++)
+				exit = mark[targets[e]] != stamp;
+			if (exit)
+				buffer[count++] = v;
+		}
+		return Arrays.copyOf(buffer, count);
+	}
+
+	/**
+	 * Collects the body of the loop with header h at the beginning of the scratch buffer
+	 * @return size of the body
+	 */
+	private int collectBody(int h) {
+		int size = 0;
+		buffer[size++] = h;
+		for (int i = 0; i < size; i++) {
+			int v = buffer[i];
+			for (int c = childOffsets[v]; c < childOffsets[v + 1]; c++)
+				buffer[size++] = children[c];
+		}
+		return size;
+	}
+
+	private int markBody(int h) {
+		int size = collectBody(h);
+		stamp++;
+		for (int i = 0; i < size; i++)
+			mark[buffer[i]] = stamp;
+		return size;
+	}
+}
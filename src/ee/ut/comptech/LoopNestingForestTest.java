@@ -0,0 +1,64 @@
+package ee.ut.comptech;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import ee.ut.comptech.LoopNestingForest.LoopType;
+
+public class LoopNestingForestTest extends TestCase {
+
+	public void testNestedLoops() {
+		// 0 -> 1 -> 2 -> 3 -> {2, 4}, 4 -> {1, 5}, 5 -> 5
+		int[] offsets = {0, 1, 2, 3, 5, 7, 8};
+		int[] targets = {1, 2, 3, 2, 4, 1, 5, 5};
+		LoopNestingForest forest = new LoopNestingForest(offsets, targets, 0);
+		assertTrue(Arrays.equals(new int[] {5, 2, 1}, forest.getHeaders()));
+		assertEquals(LoopType.REDUCIBLE, forest.getType(1));
+		assertEquals(LoopType.REDUCIBLE, forest.getType(2));
+		assertEquals(LoopType.SELF, forest.getType(5));
+		assertEquals(LoopType.NONE, forest.getType(3));
+		assertEquals(2, forest.getHeader(3));
+		assertEquals(1, forest.getHeader(2));
+		assertEquals(-1, forest.getHeader(1));
+		assertEquals(-1, forest.getHeader(5));
+		assertTrue(Arrays.equals(new int[] {1, 2, 3, 4}, sorted(forest.getBody(1))));
+		assertTrue(Arrays.equals(new int[] {2, 3}, sorted(forest.getBody(2))));
+		assertTrue(Arrays.equals(new int[] {1}, forest.getEntries(1)));
+		assertTrue(Arrays.equals(new int[] {4}, forest.getExits(1)));
+		assertTrue(Arrays.equals(new int[] {3}, forest.getExits(2)));
+	}
+
+	public void testIrreducibleLoop() {
+		// 0 -> {1, 2}, 1 -> 2, 2 -> {1, 3}
+		int[] offsets = {0, 2, 3, 5, 5};
+		int[] targets = {1, 2, 2, 1, 3};
+		LoopNestingForest forest = new LoopNestingForest(offsets, targets, 0);
+		assertEquals(1, forest.getHeaders().length);
+		int header = forest.getHeaders()[0];
+		assertEquals(LoopType.IRREDUCIBLE, forest.getType(header));
+		assertTrue(Arrays.equals(new int[] {1, 2}, sorted(forest.getBody(header))));
+		assertTrue(Arrays.equals(new int[] {1, 2}, sorted(forest.getEntries(header))));
+		assertTrue(Arrays.equals(new int[] {2}, forest.getExits(header)));
+	}
+
+	public void testLongCycle() {
+		// a cycle deep enough to overflow a recursive depth-first search
+		int n = 200000;
+		int[] offsets = new int[n + 1];
+		int[] targets = new int[n];
+		for (int v = 0; v < n; v++) {
+			targets[v] = (v + 1) % n;
+			offsets[v + 1] = v + 1;
+		}
+		LoopNestingForest forest = new LoopNestingForest(offsets, targets, 0);
+		assertTrue(Arrays.equals(new int[] {0}, forest.getHeaders()));
+		assertEquals(LoopType.REDUCIBLE, forest.getType(0));
+		assertEquals(n, forest.getBody(0).length);
+	}
+
+	private static int[] sorted(int[] array) {
+		int[] result = array.clone();
+		Arrays.sort(result);
+		return result;
+	}
+}
@@ -1,16 +1,33 @@
 package ee.ut.comptech;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
 
 import de.bpt.hpi.graph.Graph;
-import ee.ut.comptech.DominatorTree.InfoNode;
+import ee.ut.graph.util.StronglyConnectedComponents;
+import ee.ut.graph.util.StronglyConnectedComponents.Successors;
 
+/**
+ * Controlled node splitting: transforms a flow graph into a reducible one by duplicating nodes of
+ * the multiple entry loops. See: Janssen and Corporaal, "Making graphs reducible with controlled node
+ * splitting", TOPLAS 19(6):1031-1052, 1997.
+ *
+ * For every strongly connected component with several entries, the SED-set of an entry (i.e. the nodes
+ * of the component dominated by the entry) is weighted by its size. The entry with the heaviest SED-set
+ * becomes the header of the loop, and the SED-sets of the other entries are copied for the control flow
+ * reaching them from inside the component. Splitting stops when the graph would grow beyond a given
+ * number of nodes, in which case the graph is left (partially split and) irreducible.
+ */
 public class Processor {
-	
+
 	public class Node {
 		List<Node> preds = new LinkedList<Node>();
 		List<Node> succs = new LinkedList<Node>();
@@ -20,213 +37,180 @@ public class Processor {
 		int weight;
 		Node copy;
 		Node header;
-		boolean done;
-		boolean active;
+		int index;
 		String label;
 		Integer original;
-		
+
 		public String toString() { return label; }
-		
+
 		public List<Node> getSuccs() { return succs; }
-		
+
 		public List<Node> getPreds() { return preds; }
-		
+
 		public Integer getOriginal() { return original; }
-		
+
 		public void setOriginal(Integer o) { original = o; }
-		
+
 		public Object clone() {
 			Node theOther = new Node();
-			theOther.preds = new LinkedList<Node>(this.preds);
-			theOther.succs = new LinkedList<Node>(this.succs);
-			theOther.idom = this.idom;
-			theOther.succs_dom = new LinkedList<Node>(this.succs_dom);
 			theOther.level = this.level;
-			theOther.weight = this.weight;
-			theOther.copy = null;
-			theOther.header = this.header;
-			theOther.done = this.done;
-			theOther.active = this.active;
-			theOther.label = this.label+"p";
+			theOther.label = this.label + "_" + copies++;
 			theOther.original = this.original;
 			return theOther;
 		}
-		
-		public int hashCode() {
-			return label.hashCode();
-		}
-		public boolean equals(Object _theOther) {
-			Node theOther = (Node)_theOther;
-			return theOther.label.equals(label);
-		}
 	}
-	
-	class Edge {
-		Node source, target;
-		
-		public Edge(Node source, Node target) {
-			this.source = source;
-			this.target = target;
-		}
-		public int hashCode() {
-			return source.hashCode() + target.hashCode();
-		}
-		public boolean equals(Object o) {
-			boolean result = false;
-			if (o instanceof Edge) {
-				Edge e = (Edge) o;
-				result = this.source.equals(e.source) && this.target.equals(e.target);
-			}
-			return result;
-		}
-		
-		public String toString() { return String.format("(%s, %s)", source.label, target.label);}
-	}
-	
-	HashMap<Integer, Node> map = new HashMap<Integer, Node>();
-	HashSet<Edge> marks = new HashSet<Edge>();
-	Node start;
-	
-	
+
+	private HashMap<Integer, Node> map = new HashMap<Integer, Node>();
+	private List<Node> nodes = new ArrayList<Node>();
+	private Node start;
+	private int maxSize;
+	private int copies = 0;
+	private boolean reducible;
+
 	public Node getStart() {
 		return start;
 	}
-	
-	public Processor(Graph g, Map<Integer, List<Integer>> adjList, Integer entry) {
-		DominatorTree dt = new DominatorTree(adjList);
-		dt.analyse(entry);
-		copyGraphNDomtree(g, dt);
-		start = getNode(g, entry);
 
-		setLevel(start, 1);
-		markUndone(start);
-		searchSPBack(start);
-		markUndone(start);
-		
-		spltLoops(start, new HashSet<Node>());
-	}
-	
-	private boolean spltLoops(Node topNode, HashSet<Node> set) {
-		boolean cross = false;
-		
-		for (Node child : topNode.succs_dom)
-			if (set.isEmpty() || set.contains(child))
-				if (spltLoops(child, set))
-					cross = true;
-		
-		if (cross)
-			handleIRChildren(topNode, set);
-		
-		for (Node pred : topNode.preds)
-			if (marks.contains(new Edge(pred, topNode)) &&
-				!dom(topNode, pred))
-				return true;
-		
-		return false;
+	/**
+	 * @return the nodes of the (split) graph; copies of a node share its original identifier
+	 */
+	public List<Node> getNodes() {
+		return nodes;
 	}
 
-	private void handleIRChildren(Node topNode, HashSet<Node> set) {
-		List<Node> dfslist = new LinkedList<Node>();
-		List<List<Node>> scclist = new LinkedList<List<Node>>();
-		
-		for (Node child : topNode.succs_dom)
-			if (!child.done &&
-				(set.isEmpty() || set.contains(child)))
-				SCC1(dfslist, child, set, topNode.level);
-		
-		for (Node tmp : dfslist) {
-			if (tmp.done) {
-				List<Node> scc = new LinkedList<Node>();
-				SCC2(scc, tmp, topNode.level);
-				scclist.add(scc);
-			}
-		}
-		
-		for (List<Node> scc : scclist) {
-			if (scc.size() > 1)
-				handleSCC(topNode, scc);
-		}
+	/**
+	 * @return false if splitting was stopped because the graph would have exceeded the maximum size
+	 */
+	public boolean isReducible() {
+		return reducible;
 	}
 
-	private void handleSCC(Node topNode, List<Node> scc) {
-		List<Node> msed = new LinkedList<Node>();
-		for (Node tmp : scc)
-			if (tmp.level == topNode.level + 1) {
-				getWeight(tmp, tmp, scc);
-				msed.add(tmp);
-			}
-		
-		if (msed.size() <= 1)
-			return;
-		
-		Node tmp = chooseNode(msed);
-		splitSCC(tmp, scc);
+	public Processor(Graph g, Map<Integer, List<Integer>> adjList, Integer entry) {
+		this(g, adjList, entry, Integer.MAX_VALUE);
 	}
 
-	private void splitSCC(Node hdrnode, List<Node> scc) {
-		
-		for (Node tmp : scc) {
-			if (tmp.header != hdrnode) {
-				tmp.copy = (Node)tmp.clone();
-				System.out.println("Cloning: " + tmp);
+	/**
+	 * @param maxSize maximum number of nodes of the split graph
+	 */
+	public Processor(Graph g, Map<Integer, List<Integer>> adjList, Integer entry, int maxSize) {
+		this.maxSize = maxSize;
+		copyGraph(g, adjList, entry);
+		start = getNode(g, entry);
+
+		while (true) {
+			computeDominators();
+			List<Node> scc = new ArrayList<Node>();
+			Set<Node> entries = new LinkedHashSet<Node>();
+			if (!findIrreducibleSCC(scc, entries)) {
+				reducible = true;
+				break;
 			}
+			if (!splitSCC(scc, entries))
+				break;
 		}
-		
-		for (Node tmp : scc) {
-			if (tmp.header != hdrnode) {
-				if (tmp.idom.copy == null)
-					tmp.idom.succs_dom.add(tmp.copy);
-				else {
-					tmp.idom.copy.succs_dom.remove(tmp);
-					tmp.idom.copy.succs_dom.remove(tmp.copy);
-					tmp.copy.idom = tmp.idom.copy;
-				}
-				
-				for (Node tmp1 : tmp.succs_dom)
-					if (tmp1.copy == null)
-						tmp.copy.succs_dom.remove(tmp1);
-				
-				for (Node tmp1 : tmp.succs) {
-					if (tmp1.copy != null) {
-						tmp.copy.succs.remove(tmp1);
-						tmp.copy.succs.add(tmp1.copy);
-						tmp1.copy.preds.remove(tmp);
-						tmp1.copy.preds.add(tmp.copy);
-					} else {
-						tmp1.preds.add(tmp.copy);
+	}
+
+	/**
+	 * Looks for a strongly connected component with several entries. Components are searched
+	 * from the outermost ones: once the header of a single entry component is removed, the
+	 * components nested in it are searched.
+	 */
+	private boolean findIrreducibleSCC(List<Node> result, Set<Node> entries) {
+		LinkedList<Set<Node>> regions = new LinkedList<Set<Node>>();
+		regions.add(new HashSet<Node>(nodes));
+		while (!regions.isEmpty()) {
+			Set<Node> region = regions.removeFirst();
+			for (Set<Node> scc: StronglyConnectedComponents.compute(order(region), successors)) {
+				if (scc.size() < 2) continue;
+				Node header = null;
+				for (Node node: scc) {
+					boolean entry = node == start;
+					for (Node pred: node.preds)
+						if (!scc.contains(pred))
+							entry = true;
+					if (entry) {
+						entries.add(node);
+						header = node;
 					}
 				}
-				
-				List<Node> toRemove = new LinkedList<Node>();
-				for (Node tmp1 : tmp.preds) {
-					if (tmp1.copy == null) {
-						if (!scc.contains(tmp1))
-							tmp.copy.preds.remove(tmp1);
-						else {
-							toRemove.remove(tmp1);
-							tmp1.succs.remove(tmp);
-							tmp1.succs.add(tmp.copy);
-						}
-					}
+				if (entries.size() > 1) {
+					result.addAll(scc);
+					return true;
 				}
-				tmp.preds.removeAll(toRemove);
+				entries.clear();
+				scc.remove(header);
+				regions.add(scc);
 			}
 		}
-		
-		List<Node> toAdd = new LinkedList<Node>();
-		for (Node tmp : scc) {
-			if (tmp.copy != null)
-				toAdd.add(tmp.copy);
-			tmp.copy = null;
+		return false;
+	}
+
+	/**
+	 * Copies the SED-sets of all the entries but the heaviest one.
+	 *
+	 * @return false if the split graph would exceed the maximum size
+	 */
+	private boolean splitSCC(List<Node> scc, Set<Node> entries) {
+		Set<Node> members = new HashSet<Node>(scc);
+		for (Node node: scc) {
+			Node curr = node;
+			while (curr != null && members.contains(curr) && !entries.contains(curr))
+				curr = curr.idom;
+			node.header = entries.contains(curr) ? curr : null;
+		}
+
+		Map<Node, List<Node>> sedsets = new HashMap<Node, List<Node>>();
+		for (Node entry: entries) {
+			entry.weight = 0;
+			sedsets.put(entry, new ArrayList<Node>());
+		}
+		for (Node node: scc)
+			if (node.header != null) {
+				node.header.weight++;
+				sedsets.get(node.header).add(node);
+			}
+
+		Node hdrnode = chooseNode(scc, entries);
+		int size = nodes.size();
+		for (Node entry: entries)
+			if (entry != hdrnode)
+				size += entry.weight;
+		if (size > maxSize)
+			return false;
+
+		for (Node entry: entries)
+			if (entry != hdrnode)
+				copySEDSet(entry, sedsets.get(entry), members);
+		return true;
+	}
+
+	/**
+	 * The copy of the SED-set receives the control flow reaching the entry from the rest of the
+	 * component, whereas the original keeps the control flow coming from outside the component.
+	 */
+	private void copySEDSet(Node entry, List<Node> sedset, Set<Node> scc) {
+		for (Node node: sedset) {
+			node.copy = (Node)node.clone();
+			addNode(node.copy);
 		}
-		scc.addAll(toAdd);
+		for (Node node: sedset)
+			for (Node succ: node.succs)
+				addEdge(node.copy, succ.copy != null ? succ.copy : succ);
+		for (Node pred: new ArrayList<Node>(entry.preds))
+			if (scc.contains(pred) && pred.header != entry) {
+				pred.succs.remove(entry);
+				entry.preds.remove(pred);
+				addEdge(pred, entry.copy);
+			}
+		for (Node node: sedset)
+			node.copy = null;
 	}
 
-	private Node chooseNode(List<Node> msed) {
+	private Node chooseNode(List<Node> scc, Set<Node> entries) {
 		int maxWeight = 0;
 		Node maxNode = null;
-		for (Node tmp : msed) {
-			if (tmp.weight > maxWeight) {
+		for (Node tmp : scc) {
+			if (entries.contains(tmp) && tmp.weight > maxWeight) {
 				maxWeight = tmp.weight;
 				maxNode = tmp;
 			}
@@ -234,74 +218,60 @@ public class Processor {
 		return maxNode;
 	}
 
-	private void getWeight(Node tmp, Node hdnode, List<Node> scc) {
-		tmp.weight = 1;
-		for (Node child : tmp.succs_dom) {
-			if (scc.contains(child)) {
-				getWeight(child, hdnode, scc);
-				tmp.weight = tmp.weight + child.weight;
-			}
+	private Successors<Node> successors = new Successors<Node>() {
+		public Collection<Node> successors(Node node) {
+			return node.succs;
 		}
-		tmp.header = hdnode; 
-	}
+	};
 
-	private void SCC2(List<Node> scc, Node cnode, int level) {
-		cnode.done = false;
-		for (Node pred : cnode.preds)
-			if (pred.done && pred.level > level)
-				SCC2(scc, pred, level);
-		scc.add(cnode);
+	/**
+	 * @return nodes of the region, in the order of the graph (i.e. independent of the set)
+	 */
+	private List<Node> order(Set<Node> region) {
+		List<Node> result = new ArrayList<Node>();
+		for (Node node: nodes)
+			if (region.contains(node))
+				result.add(node);
+		return result;
 	}
 
-	private void SCC1(List<Node> dfslist, Node cnode, HashSet<Node> set,
-			int level) {
-		cnode.done = true;
-		for (Node child : cnode.succs) {
-			if (!child.done && child.level > level &&
-				(set.isEmpty() || set.contains(child)))
-				SCC1(dfslist, child, set, level);
+	private void computeDominators() {
+		int[] offsets = new int[nodes.size() + 1];
+		for (Node node: nodes)
+			offsets[node.index + 1] = offsets[node.index] + node.succs.size();
+		int[] targets = new int[offsets[nodes.size()]];
+		for (Node node: nodes) {
+			int e = offsets[node.index];
+			for (Node succ: node.succs)
+				targets[e++] = succ.index;
 		}
-		dfslist.add(cnode);
-	}
+		Dominators dt = Dominators.dominators(offsets, targets, start.index);
 
-	private boolean dom(Node topNode, Node pred) {
-		// TODO Auto-generated method stub
-		return false;
-	}
-
-	private void searchSPBack(Node cnode) {
-		cnode.done = true;
-		cnode.active = true;
-
-		removeMarks(cnode);
-
-		for (Node child : cnode.succs)
-			if (child.active)
-				marks.add(new Edge(cnode, child));
-			else if (!child.done)
-				searchSPBack(child);
-		
-		cnode.active = false;
+		for (Node node: nodes) {
+			node.idom = null;
+			node.succs_dom.clear();
+		}
+		for (Node node: nodes)
+			if (dt.getIdom(node.index) >= 0) {
+				node.idom = nodes.get(dt.getIdom(node.index));
+				node.idom.succs_dom.add(node);
+			}
+		setLevel(start, 1);
 	}
 
-	private void removeMarks(Node cnode) {
-		for (Node succ : cnode.succs_dom)
-			marks.remove(new Edge(cnode, succ));
+	private void setLevel(Node root, int level) {
+		Stack<Node> worklist = new Stack<Node>();
+		root.level = level;
+		worklist.push(root);
+		while (!worklist.isEmpty()) {
+			Node cnode = worklist.pop();
+			for (Node child : cnode.succs_dom) {
+				child.level = cnode.level + 1;
+				worklist.push(child);
+			}
+		}
 	}
 
-	private void markUndone(Node cnode) {
-		cnode.done = false;
-		cnode.active = false;
-		for (Node child : cnode.succs_dom)
-			markUndone(child);
-	}
-	
-	private void setLevel(Node cnode, int level) {
-		cnode.level = level;
-		for (Node child : cnode.succs_dom)
-			setLevel(child, level + 1);
-	}
-	
 
 	// Auxiliary, nasty stuff !!!
 	// --------------------------------
@@ -312,29 +282,34 @@ public class Processor {
 			node.original = act;
 			map.put(act, node);
 			node.label = graph.getLabel(act);
+			addNode(node);
 		}
 		return node;
 	}
-	
-	private void copyGraphNDomtree(Graph graph, DominatorTree dt) {
-		HashSet<Integer> acts = new HashSet<Integer>(dt.map.keySet());
-		
-		for (Integer act : acts) {
+
+	private void addNode(Node node) {
+		node.index = nodes.size();
+		nodes.add(node);
+	}
+
+	private void addEdge(Node source, Node target) {
+		source.succs.add(target);
+		target.preds.add(source);
+	}
+
+	private void copyGraph(Graph graph, Map<Integer, List<Integer>> adjList, Integer entry) {
+		// Only the nodes reachable from the entry are considered
+		Stack<Integer> worklist = new Stack<Integer>();
+		Set<Integer> visited = new HashSet<Integer>();
+		worklist.push(entry);
+		visited.add(entry);
+		while (!worklist.isEmpty()) {
+			Integer act = worklist.pop();
 			Node node = getNode(graph, act);
-			for (Integer _succ : dt.adjList.get(act)) {
-				Node succ = getNode(graph, _succ);
-				node.succs.add(succ); succ.preds.add(node);
-			}
-		}
-		
-		for (InfoNode inode : dt.map.values()) {
-			InfoNode inparent = inode.dom;
-			if (inparent != null) {
-				Node node = getNode(graph, inode.node);
-				Node nparent = getNode(graph, inparent.node);
-				
-				node.idom = nparent;
-				nparent.succs_dom.add(node);
+			for (Integer _succ : adjList.get(act)) {
+				addEdge(node, getNode(graph, _succ));
+				if (visited.add(_succ))
+					worklist.push(_succ);
 			}
 		}
 	}
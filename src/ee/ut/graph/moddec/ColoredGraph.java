@@ -18,16 +18,27 @@ package ee.ut.graph.moddec;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import ee.ut.graph.util.StronglyConnectedComponents;
+import ee.ut.graph.util.StronglyConnectedComponents.Successors;
 
 /**
  * Efficient implementation of a simple graph: (Vertices, Edges, labels)
- * Only for reading, cannot be modified
+ * 
+ * Subgraphs and clones are views: they share the adjacency of the graph they were derived from
+ * and use their vertex set as a mask. The structures are copied only when either side is modified
+ * (copy-on-write), so deriving a view costs O(|vertices in the view|).
  */
 public class ColoredGraph {
 	public Set<Integer> vertices;
@@ -38,6 +49,16 @@ public class ColoredGraph {
 	public Map<String, Integer> inverse;
 	private int vertexId = 0;
 	
+	// Views derived from this graph alias its structures: copy them before the next update
+	private boolean shared = false;
+	// This graph aliases the structures of another graph: materialize before the first update
+	private boolean view = false;
+	// Adjacency of the parent graph, when this view is restricted to a subset of its vertices.
+	// In that case "outgoingEdges" and "incomingEdges" cache the restricted adjacency, lazily: the
+	// caches are filled by read methods, possibly from several threads, hence they are concurrent maps.
+	private Map<Integer,Set<Integer>> baseOutgoingEdges;
+	private Map<Integer,Set<Integer>> baseIncomingEdges;
+	
 	private ColoredGraph(Set<Integer> vertices, Map<Integer,Set<Integer>> outgoingEdges, Map<Integer,Set<Integer>> incomingEdges, Map<Integer,String> labels, Map<String, Integer> inverse){
 		this.vertices = vertices;
 		this.outgoingEdges = outgoingEdges;
@@ -51,6 +72,22 @@ public class ColoredGraph {
 		this.vertexId = max + 1;
 	}
 	
+	/**
+	 * Creates a view aliasing all the structures of the given graph.
+	 */
+	private ColoredGraph(ColoredGraph graph) {
+		this.vertices = graph.vertices;
+		this.outgoingEdges = graph.outgoingEdges;
+		this.incomingEdges = graph.incomingEdges;
+		this.labels = graph.labels;
+		this.inverse = graph.inverse;
+		this.vertexId = graph.vertexId;
+		this.baseOutgoingEdges = graph.baseOutgoingEdges;
+		this.baseIncomingEdges = graph.baseIncomingEdges;
+		this.view = true;
+		graph.shared = true;
+	}
+	
 	public ColoredGraph() {
 		vertices = new HashSet<Integer>();
 		outgoingEdges = new HashMap<Integer, Set<Integer>>();
@@ -60,6 +97,7 @@ public class ColoredGraph {
 	}
 	
 	public Integer addVertex(String label) {
+		prepareUpdate();
 		Integer v = vertexId++;
 		vertices.add(v);
 		labels.put(v, label);
@@ -70,6 +108,7 @@ public class ColoredGraph {
 	}
 		
 	public void addEdge(String v1, String v2) {
+		prepareUpdate();
 		Integer _v1 = inverse.get(v1);
 		Integer _v2 = inverse.get(v2);
 		outgoingEdges.get(_v1).add(_v2);
@@ -81,11 +120,56 @@ public class ColoredGraph {
 	}
 	
 	public Set<Integer> postSet(int vertex) {
-		return outgoingEdges.get(vertex);
+		Set<Integer> set = outgoingEdges.get(vertex);
+		if (set == null && baseOutgoingEdges != null)
+			set = restrict(vertex, baseOutgoingEdges, (ConcurrentMap<Integer,Set<Integer>>) outgoingEdges);
+		return set;
 	}
 
 	public Set<Integer> preSet(int vertex) {
-		return incomingEdges.get(vertex);
+		Set<Integer> set = incomingEdges.get(vertex);
+		if (set == null && baseIncomingEdges != null)
+			set = restrict(vertex, baseIncomingEdges, (ConcurrentMap<Integer,Set<Integer>>) incomingEdges);
+		return set;
+	}
+	
+	/**
+	 * Computes (and caches) the adjacency of a vertex in a restricted view: the adjacency in the
+	 * parent graph, without self loops and without the vertices outside of the view. Threads that
+	 * compute the same adjacency at the same time all get the set cached first.
+	 */
+	private Set<Integer> restrict(int vertex, Map<Integer,Set<Integer>> base, ConcurrentMap<Integer,Set<Integer>> cache) {
+		if (!vertices.contains(vertex)) return null;
+		Set<Integer> set = new HashSet<Integer>();
+		for (Integer other: base.get(vertex))
+			if (other != vertex && vertices.contains(other))
+				set.add(other);
+		Set<Integer> cached = cache.putIfAbsent(vertex, set);
+		return cached != null ? cached : set;
+	}
+	
+	private Set<Integer> adjacentSet(int vertex, boolean forward) {
+		return forward ? postSet(vertex) : preSet(vertex);
+	}
+	
+	/**
+	 * Copy-on-write: gives this graph its own structures before it is modified.
+	 */
+	private void prepareUpdate() {
+		if (!view && !shared) return;
+		Map<Integer,Set<Integer>> newOutgoingEdges = new HashMap<Integer,Set<Integer>>();
+		Map<Integer,Set<Integer>> newIncomingEdges = new HashMap<Integer,Set<Integer>>();
+		for (Integer v: vertices) {
+			newOutgoingEdges.put(v, new HashSet<Integer>(postSet(v)));
+			newIncomingEdges.put(v, new HashSet<Integer>(preSet(v)));
+		}
+		vertices = new HashSet<Integer>(vertices);
+		labels = new HashMap<Integer,String>(labels);
+		inverse = new HashMap<String,Integer>(inverse);
+		outgoingEdges = newOutgoingEdges;
+		incomingEdges = newIncomingEdges;
+		baseOutgoingEdges = baseIncomingEdges = null;
+		view = shared = false;
 	}
 
 	public LinkedList<String> getLabels(){
@@ -119,7 +203,7 @@ public class ColoredGraph {
 	public Set<Integer> sourceVertices(){
 		Set<Integer> result = new HashSet<Integer>();
 		for (Integer i: vertices){
-			if (incomingEdges.get(i).isEmpty()){
+			if (preSet(i).isEmpty()){
 				result.add(i);
 			}
 		}
@@ -132,7 +216,7 @@ public class ColoredGraph {
 	public Set<Integer> sinkVertices(){
 		Set<Integer> result = new HashSet<Integer>();
 		for (Integer i: vertices){
-			if (outgoingEdges.get(i).isEmpty()){
+			if (postSet(i).isEmpty()){
 				result.add(i);
 			}
 		}
@@ -143,13 +227,13 @@ public class ColoredGraph {
 		String result = "";
 		for (Integer i: vertices){
 			result += i + "(" + labels.get(i) + ") {";
-			for (Iterator<Integer> j = incomingEdges.get(i).iterator(); j.hasNext();){
+			for (Iterator<Integer> j = preSet(i).iterator(); j.hasNext();){
 				int vertex = j.next();
 				result += vertex;// + "(" + labels.get(vertex) + ")";
 				result += j.hasNext()?",":"";
 			}
 			result += "} {";
-			for (Iterator<Integer> j = outgoingEdges.get(i).iterator(); j.hasNext();){
+			for (Iterator<Integer> j = postSet(i).iterator(); j.hasNext();){
 				int vertex = j.next();
 				result += vertex;// + "(" + labels.get(vertex) + ")";
 				result += j.hasNext()?",":"";
@@ -165,17 +249,44 @@ public class ColoredGraph {
 	 * @return the postSet(vertex), in which all v \in silent are (recursively) replaced by their postSet(v)
 	 */
 	public Set<Integer> nonSilentPostSet(Integer vertex, Set<Integer> silent){
-		return nonSilentPostSetHelper(vertex, silent, new HashSet<Integer>()); 
+		return nonSilentNeighbors(vertex, silent, true);
 	}
-	private Set<Integer> nonSilentPostSetHelper(Integer vertex, Set<Integer> silent, Set<Integer> visited){
+	
+	/**
+	 * @param vertex Vertex to determine the preSet for
+	 * @param silent Set of vertices that should not be considered
+	 * @return the preSet(vertex), in which all v \in silent are (recursively) replaced by their preSet(v)
+	 */
+	public Set<Integer> nonSilentPreSet(Integer vertex, Set<Integer> silent){
+		return nonSilentNeighbors(vertex, silent, false);
+	}
+	
+	/**
+	 * Single worklist traversal through the silent vertices reachable from "vertex". Each silent
+	 * vertex is expanded at most once, hence the cost is linear in the size of the graph.
+	 */
+	private Set<Integer> nonSilentNeighbors(Integer vertex, Set<Integer> silent, boolean forward){
 		Set<Integer> result = new HashSet<Integer>();
-		Set<Integer> visitedP = new HashSet<Integer>(visited);
-		visitedP.add(vertex);
+		Set<Integer> visited = new HashSet<Integer>();
+		Stack<Integer> worklist = new Stack<Integer>();
+		visited.add(vertex);
+		
+		for (Integer post: adjacentSet(vertex, forward)){
+			if (silent.contains(post)){
+				if (visited.add(post))
+					worklist.push(post);
+			}else{
+				result.add(post);
+			}
+		}
 		
-		for (Integer post: postSet(vertex)){
-			if (!visited.contains(post)){
+		while (!worklist.isEmpty()){
+			Integer curr = worklist.pop();
+			for (Integer post: adjacentSet(curr, forward)){
+				if (post.equals(vertex)) continue;
 				if (silent.contains(post)){
-					result.addAll(nonSilentPostSetHelper(post,silent,visitedP));
+					if (visited.add(post))
+						worklist.push(post);
 				}else{
 					result.add(post);
 				}
@@ -185,30 +296,80 @@ public class ColoredGraph {
 	}
 	
 	/**
-	 * @param vertex Vertex to determine the preSet for
+	 * Bulk variant of nonSilentPostSet: computes the non-silent postSet of every vertex of the graph at once.
+	 * The strongly connected components of the silent vertices are condensed, so that the non-silent
+	 * vertices reachable from each silent vertex are computed only once and shared afterwards.
+	 * 
 	 * @param silent Set of vertices that should not be considered
-	 * @return the preSet(vertex), in which all v \in silent are (recursively) replaced by their preSet(v)
+	 * @return a map assigning nonSilentPostSet(v, silent) to every vertex v
 	 */
-	public Set<Integer> nonSilentPreSet(Integer vertex, Set<Integer> silent){
-		return nonSilentPreSetHelper(vertex, silent, new HashSet<Integer>()); 
+	public Map<Integer, Set<Integer>> nonSilentPostSets(Set<Integer> silent){
+		return nonSilentNeighborhoods(silent, true);
 	}
-	private Set<Integer> nonSilentPreSetHelper(Integer vertex, Set<Integer> silent, Set<Integer> visited){
-		Set<Integer> result = new HashSet<Integer>();
-		Set<Integer> visitedP = new HashSet<Integer>(visited);
-		visitedP.add(vertex);
+	
+	/**
+	 * Bulk variant of nonSilentPreSet: computes the non-silent preSet of every vertex of the graph at once.
+	 * 
+	 * @param silent Set of vertices that should not be considered
+	 * @return a map assigning nonSilentPreSet(v, silent) to every vertex v
+	 */
+	public Map<Integer, Set<Integer>> nonSilentPreSets(Set<Integer> silent){
+		return nonSilentNeighborhoods(silent, false);
+	}
+	
+	private Map<Integer, Set<Integer>> nonSilentNeighborhoods(Set<Integer> silent, boolean forward){
+		Map<Integer, Set<Integer>> reach = silentReach(silent, forward);
+		Map<Integer, Set<Integer>> result = new HashMap<Integer, Set<Integer>>();
 		
-		for (Integer pre: preSet(vertex)){
-			if (!visited.contains(pre)){
-				if (silent.contains(pre)){
-					result.addAll(nonSilentPreSetHelper(pre,silent,visitedP));
-				}else{
-					result.add(pre);
-				}
-			}
+		for (Integer vertex: vertices){
+			Set<Integer> neighbors = new HashSet<Integer>();
+			for (Integer post: adjacentSet(vertex, forward))
+				if (silent.contains(post))
+					neighbors.addAll(reach.get(post));
+			// The vertex itself is only kept when it is a direct (non-silent) neighbor
+			neighbors.remove(vertex);
+			for (Integer post: adjacentSet(vertex, forward))
+				if (!silent.contains(post))
+					neighbors.add(post);
+			result.put(vertex, neighbors);
 		}
 		return result;
 	}
 	
+	/**
+	 * Computes, for every silent vertex, the set of non-silent vertices reachable through silent vertices only.
+	 * The strongly connected components of the silent vertices are visited in reverse topological order, so
+	 * the sets of all successor components are already available when a component is visited. All the
+	 * vertices in one component share the same set.
+	 */
+	private Map<Integer, Set<Integer>> silentReach(Set<Integer> silent, final boolean forward){
+		Set<Integer> present = new HashSet<Integer>();
+		for (Integer v: silent)
+			if (vertices.contains(v))
+				present.add(v);
+		List<Set<Integer>> components = StronglyConnectedComponents.compute(present, new Successors<Integer>() {
+			public Collection<Integer> successors(Integer vertex) {
+				return adjacentSet(vertex, forward);
+			}
+		});
+		
+		Map<Integer, Set<Integer>> reach = new HashMap<Integer, Set<Integer>>();
+		for (int i = components.size() - 1; i >= 0; i--){
+			Set<Integer> component = components.get(i);
+			Set<Integer> set = new HashSet<Integer>();
+			for (Integer s: component)
+				for (Integer post: adjacentSet(s, forward)){
+					if (!silent.contains(post))
+						set.add(post);
+					else if (!component.contains(post))
+						set.addAll(reach.get(post));
+				}
+			for (Integer s: component)
+				reach.put(s, set);
+		}
+		return reach;
+	}
+	
 	/**
 	 * Returns A COPY OF the graph, such that all vertices from the given set are removed.
 	 * All paths (v1,v),(v,v2) via a vertex v from that set are replaced by direct arcs (v1,v2). 
@@ -227,9 +388,12 @@ public class ColoredGraph {
 		Map<Integer,String> newLabels = new HashMap<Integer,String>();
 		Map<String, Integer> newInverse = new HashMap<String, Integer>();
 		
+		Map<Integer,Set<Integer>> postSets = nonSilentPostSets(toRemove);
+		Map<Integer,Set<Integer>> preSets = nonSilentPreSets(toRemove);
+		
 		for (Integer newVertex: newVertices){
-			newOutgoingEdges.put(newVertex, nonSilentPostSet(newVertex,toRemove));
-			newIncomingEdges.put(newVertex, nonSilentPreSet(newVertex,toRemove));
+			newOutgoingEdges.put(newVertex, postSets.get(newVertex));
+			newIncomingEdges.put(newVertex, preSets.get(newVertex));
 			newLabels.put(newVertex, labels.get(newVertex));
 			newInverse.put(labels.get(newVertex), newVertex);
 			
@@ -240,49 +404,45 @@ public class ColoredGraph {
 	
 	/**
 	 * Given subset of vertices of this graph, the method builds the corresponding subgraph.
+	 * The subgraph is a view sharing the adjacency of this graph (self loops are discarded).
 	 * 
 	 * @param _vertices Set of vertices in the subgraph
 	 * @return The subgraph
 	 */
 	public ColoredGraph subgraph(Set<Integer> _vertices) {
-		Set<Integer> newVertices = new HashSet<Integer>(vertices);
-		newVertices.retainAll(_vertices);
+		ColoredGraph subgraph = new ColoredGraph();
+		subgraph.baseOutgoingEdges = baseOutgoingEdges != null ? baseOutgoingEdges : outgoingEdges;
+		subgraph.baseIncomingEdges = baseIncomingEdges != null ? baseIncomingEdges : incomingEdges;
+		subgraph.outgoingEdges = new ConcurrentHashMap<Integer, Set<Integer>>();
+		subgraph.incomingEdges = new ConcurrentHashMap<Integer, Set<Integer>>();
+		subgraph.view = true;
+		shared = true;
+		// Same table size as a copy of the whole vertex set, so that the iteration order is the same
+		subgraph.vertices = new HashSet<Integer>(Math.max((int) (vertices.size() / .75f) + 1, 16));
 
-		Map<Integer,Set<Integer>> newOutgoingEdges = new HashMap<Integer,Set<Integer>>();
-		Map<Integer,Set<Integer>> newIncomingEdges = new HashMap<Integer,Set<Integer>>();;
-		Map<Integer,String> newLabels = new HashMap<Integer,String>();
-		Map<String, Integer> newInverse = new HashMap<String, Integer>();
-
-		for (Integer newVertex: newVertices) {
-			HashSet<Integer> vertexSet = new HashSet<Integer>();
-			for (Integer source: preSet(newVertex)) {
-				if (newVertex == source) continue;
-				if (newVertices.contains(source))
-					vertexSet.add(source);
-			}
-			newIncomingEdges.put(newVertex, vertexSet);
-			
-			vertexSet = new HashSet<Integer>();
-			for (Integer target: postSet(newVertex)) {
-				if (newVertex == target) continue;
-				if (newVertices.contains(target))
-					vertexSet.add(target);
-			}
-			newOutgoingEdges.put(newVertex, vertexSet);
-			
-			newLabels.put(newVertex, labels.get(newVertex));
-			newInverse.put(labels.get(newVertex), newVertex);
+		int max = Integer.MIN_VALUE;
+		for (Integer newVertex: _vertices) {
+			if (!vertices.contains(newVertex)) continue;
+			subgraph.vertices.add(newVertex);
+			subgraph.labels.put(newVertex, labels.get(newVertex));
+			subgraph.inverse.put(labels.get(newVertex), newVertex);
+			if (newVertex > max)
+				max = newVertex;
 		}
+		subgraph.vertexId = max + 1;
 		
-		return new ColoredGraph(newVertices, newOutgoingEdges, newIncomingEdges, newLabels, newInverse);
+		return subgraph;
 	}
 	
+	/**
+	 * @return a view of this graph, which is copied on the first update of either graph
+	 */
 	public Object clone() {
-		return new ColoredGraph(vertices, outgoingEdges, incomingEdges, labels, inverse);
+		return new ColoredGraph(this);
 	}
 	
 	public boolean hasEdge(int s, int t) {
-		return outgoingEdges.get(s).contains(t);
+		return postSet(s).contains(t);
 	}
 	
 	public boolean distinguishes(int x, int y, int z) {
@@ -332,8 +492,8 @@ public class ColoredGraph {
 		int[][] adjMatrix = new int[index][index];
 		int[][] adjMatrixp = new int[index][index];
 		
-		for (Integer s: outgoingEdges.keySet())
-			for (Integer t: outgoingEdges.get(s))
+		for (Integer s: vertices)
+			for (Integer t: postSet(s))
 				if (s != t)  // avoid self loops
 					adjMatrix[indexMap.get(s)][indexMap.get(t)] = adjMatrixp[indexMap.get(s)][indexMap.get(t)] = 1;
 		
@@ -17,11 +17,15 @@
 package ee.ut.graph.moddec;
 
 import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
+
+import ee.ut.graph.util.StronglyConnectedComponents;
+import ee.ut.graph.util.StronglyConnectedComponents.Successors;
 
 public class ComponentGraph {
 	ColoredGraph graph = new ColoredGraph();
@@ -117,7 +121,7 @@ public class ComponentGraph {
 //	}
 	
 	public void computeSCC() {		
-		Set<Set<Integer>> scc = kosaraju();
+		List<Set<Integer>> scc = computeSCCs();
 		
 		for (Set<Integer> cc : scc) {
 			if (cc.size() > 1) {
@@ -130,44 +134,12 @@ public class ComponentGraph {
 		}
 	}
 	
-	private Set<Set<Integer>> kosaraju() {
-		Set<Set<Integer>> scc = new HashSet<Set<Integer>>();
-		Stack<Integer> stack = new Stack<Integer>();
-		Set<Integer> visited = new HashSet<Integer>();
-		for (Integer vertex: graph.getVertices())
-			if (!visited.contains(vertex))
-				searchForward(vertex, stack, visited);			
-
-		//graph.toDot(System.out);
-		visited.clear();
-		while(!stack.isEmpty()) {
-			Set<Integer> component = new HashSet<Integer>();
-			searchBackward(stack.peek(), visited, component);
-			scc.add(component);
-			stack.removeAll(component);
-		}
-		return scc;
-	}
-
-	private void searchBackward(Integer node, Set<Integer> visited, Set<Integer> component) {
-		Stack<Integer> worklist = new Stack<Integer>();
-		worklist.push(node);
-		while (!worklist.isEmpty()) {
-			Integer curr = worklist.pop();
-			visited.add(curr);
-			component.add(curr);
-			for (Integer pred: graph.preSet(curr))
-				if (!visited.contains(pred) && !worklist.contains(pred))
-					worklist.add(pred);
-		}
-	}
-
-	private void searchForward(Integer curr, Stack<Integer> stack, Set<Integer> visited) {
-		visited.add(curr);
-		for (Integer succ: graph.postSet(curr))
-			if (!visited.contains(succ))
-				searchForward(succ, stack, visited);
-		stack.push(curr);
+	private List<Set<Integer>> computeSCCs() {
+		return StronglyConnectedComponents.compute(graph.getVertices(), new Successors<Integer>() {
+			public Collection<Integer> successors(Integer vertex) {
+				return graph.postSet(vertex);
+			}
+		});
 	}
 
 }
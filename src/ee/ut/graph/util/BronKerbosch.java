@@ -0,0 +1,97 @@
+package ee.ut.graph.util;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Enumeration of maximal cliques of an undirected graph, using the Bron-Kerbosch algorithm
+ * with pivoting (Tomita et al.). The graph is given as an array of bitsets, where adjacency[v]
+ * is the set of neighbors of vertex v (the relation must be symmetric and irreflexive).
+ *
+ * The number of cliques to be enumerated can be bounded: when the limit is reached the
+ * enumeration stops and the caller is informed, so that it can fall back to another strategy.
+ */
+public class BronKerbosch {
+	private BitSet[] adjacency;
+	private int limit = Integer.MAX_VALUE;
+	private int count;
+
+	public BronKerbosch(BitSet[] adjacency) {
+		this.adjacency = adjacency;
+	}
+
+	/**
+	 * @param limit Maximum number of cliques reported by a call to enumerate
+	 */
+	public void setLimit(int limit) {
+		this.limit = limit;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Computes the maximal cliques of the subgraph induced by the given set of vertices.
+	 *
+	 * @param vertices Set of vertices inducing the subgraph
+	 * @param cliques OUT: Collection to which the maximal cliques are added (none if the set of vertices is empty)
+	 * @return false if the enumeration was interrupted because the limit was reached
+	 */
+	public boolean enumerate(BitSet vertices, Collection<BitSet> cliques) {
+		count = 0;
+		if (vertices.isEmpty()) return true;
+		return expand(new BitSet(), (BitSet) vertices.clone(), new BitSet(), cliques);
+	}
+
+	private boolean expand(BitSet R, BitSet P, BitSet X, Collection<BitSet> cliques) {
+		if (P.isEmpty()) {
+			if (X.isEmpty()) {
+				if (count++ >= limit) return false;
+				cliques.add((BitSet) R.clone());
+			}
+			return true;
+		}
+
+		BitSet candidates = (BitSet) P.clone();
+		candidates.andNot(adjacency[pivot(P, X)]);
+
+		for (int v = candidates.nextSetBit(0); v >= 0; v = candidates.nextSetBit(v + 1)) {
+			BitSet newP = (BitSet) P.clone();
+			newP.and(adjacency[v]);
+			BitSet newX = (BitSet) X.clone();
+			newX.and(adjacency[v]);
+
+			R.set(v);
+			boolean complete = expand(R, newP, newX, cliques);
+			R.clear(v);
+			if (!complete) return false;
+
+			P.clear(v);
+			X.set(v);
+		}
+		return true;
+	}
+
+	/**
+	 * Chooses the vertex in P U X with the largest number of neighbors in P
+	 */
+	private int pivot(BitSet P, BitSet X) {
+		int pivot = -1, max = -1;
+		BitSet tmp = new BitSet();
+		for (int i = 0; i < 2; i++) {
+			BitSet set = i == 0 ? P : X;
+			for (int u = set.nextSetBit(0); u >= 0; u = set.nextSetBit(u + 1)) {
+				tmp.clear();
+				tmp.or(P);
+				tmp.and(adjacency[u]);
+				int degree = tmp.cardinality();
+				if (degree > max) {
+					max = degree;
+					pivot = u;
+				}
+			}
+		}
+		return pivot;
+	}
+}
@@ -1,13 +1,11 @@
 package ee.ut.graph.util;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
-
-import com.google.gwt.dev.util.collect.HashSet;
 
 import de.bpt.hpi.graph.Edge;
 import de.bpt.hpi.graph.Graph;
@@ -15,7 +13,7 @@ import de.bpt.hpi.graph.Graph;
 public class GraphUtils {
 	/**
 	 * This method takes a set of edges and builds a adjacency list representation. This is required
-	 * by some DFS-based methods (e.g. DFSLabeler). Note that the structure of the graph is modified,
+	 * by some DFS-based methods. Note that the structure of the graph is modified,
 	 * by adding/deleting edges in the set of edges "edges".
 	 */
 	public static Map<Integer, List<Integer>> edgelist2adjlist(Set<Edge> edges,
@@ -36,7 +34,7 @@ public class GraphUtils {
 
 	/**
 	 * This method takes a set of edges and builds a adjacency list representation. This is required
-	 * by some DFS-based methods (e.g. DFSLabeler). Note that the structure of the graph is modified,
+	 * by some DFS-based methods. Note that the structure of the graph is modified,
 	 * by adding/deleting edges in the set of edges "edges".
 	 */
 	public static Map<Integer, List<Integer>> edgelist2adjlist(Set<Edge> edges,
@@ -55,44 +53,15 @@ public class GraphUtils {
 		return adjList;
 	}
 
-	public static Set<Set<Integer>> computeSCCs(Graph graph) {
-		Set<Set<Integer>> scc = new HashSet<Set<Integer>>();
-		Stack<Integer> stack = new Stack<Integer>();
-		Set<Integer> visited = new HashSet<Integer>();
-		for (Integer vertex: graph.getVertices())
-			if (!visited.contains(vertex))
-				searchForward(graph, vertex, stack, visited);			
-
-		visited.clear();
-		while(!stack.isEmpty()) {
-			Set<Integer> component = new HashSet<Integer>();
-			searchBackward(graph, stack.peek(), visited, component);
-			scc.add(component);
-			stack.removeAll(component);
-		}
-		return scc;
-	}
-
-	private static void searchBackward(Graph graph, Integer node, Set<Integer> visited, Set<Integer> component) {
-		Stack<Integer> worklist = new Stack<Integer>();
-		worklist.push(node);
-		while (!worklist.isEmpty()) {
-			Integer curr = worklist.pop();
-			visited.add(curr);
-			component.add(curr);
-			for (Integer pred: graph.getPredecessorsOfVertex(curr))
-				if (!visited.contains(pred) && !worklist.contains(pred))
-					worklist.add(pred);
-		}
-	}
-
-	private static void searchForward(Graph graph, Integer curr, Stack<Integer> stack, Set<Integer> visited) {
-		visited.add(curr);
-		for (Integer succ: graph.getSuccessorsOfVertex(curr))
-			if (!visited.contains(succ))
-				searchForward(graph, succ, stack, visited);
-		stack.push(curr);
+	/**
+	 * @return strongly connected components of the graph, in topological order
+	 */
+	public static List<Set<Integer>> computeSCCs(final Graph graph) {
+		return StronglyConnectedComponents.compute(graph.getVertices(),
+				new StronglyConnectedComponents.Successors<Integer>() {
+					public Collection<Integer> successors(Integer vertex) {
+						return graph.getSuccessorsOfVertex(vertex);
+					}
+				});
 	}
-
-
 }
@@ -0,0 +1,150 @@
+package ee.ut.graph.util;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Enumerates the r-combinations of {0, ..., n-1} in lexicographic order (i.e. the same order as
+ * CombinationGenerator), using long counters instead of BigInteger.
+ *
+ * The enumeration can be restricted to a range of ranks and split, such that the combinations can
+ * be explored in parallel (e.g. within a fork-join task). The array returned by next() is reused
+ * by the iterator: callers must copy it if they need to keep it.
+ */
+public class IntCombinationIterator {
+	private final int n;
+	private final int r;
+	private final long[][] binomial;
+	private final int[] a;
+	private long next;
+	private long end;
+	private boolean started;
+
+	/**
+	 * Iterates over all the r-combinations of {0, ..., n-1}
+	 */
+	public IntCombinationIterator(int n, int r) {
+		this(n, r, 0, count(n, r));
+	}
+
+	/**
+	 * Iterates over the r-combinations of {0, ..., n-1} whose rank is in [from, to)
+	 */
+	public IntCombinationIterator(int n, int r, long from, long to) {
+		this(n, r, binomials(n, r), from, to);
+	}
+
+	private IntCombinationIterator(int n, int r, long[][] binomial, long from, long to) {
+		long total = binomial[n][r];
+		if (from < 0 || from > to || to > total)
+			throw new IllegalArgumentException("Invalid range [" + from + ", " + to + ") for " + total + " combinations");
+		this.n = n;
+		this.r = r;
+		this.binomial = binomial;
+		this.a = new int[r];
+		this.next = from;
+		this.end = to;
+		if (from < to)
+			unrank(from, a);
+	}
+
+	/**
+	 * @return number of r-combinations of n elements
+	 * @throws IllegalArgumentException if the number does not fit in a long
+	 */
+	public static long count(int n, int r) {
+		return binomials(n, r)[n][r];
+	}
+
+	public boolean hasNext() {
+		return next < end;
+	}
+
+	/**
+	 * @return number of combinations not yet generated
+	 */
+	public long getNumLeft() {
+		return end - next;
+	}
+
+	public int[] next() {
+		if (next >= end)
+			throw new NoSuchElementException();
+		if (started) {
+			// algorithm from Rosen p. 286
+			int i = r - 1;
+			while (a[i] == n - r + i)
+				i--;
+			a[i]++;
+			for (int j = i + 1; j < r; j++)
+				a[j] = a[i] + j - i;
+		} else
+			started = true;
+		next++;
+		return a;
+	}
+
+	/**
+	 * Splits the remaining combinations: the iterator keeps the first half and the second half
+	 * is returned as a new iterator (null if there are less than two combinations left).
+	 */
+	public IntCombinationIterator split() {
+		long left = end - next;
+		if (left < 2) return null;
+		long middle = next + left / 2;
+		IntCombinationIterator other = new IntCombinationIterator(n, r, binomial, middle, end);
+		end = middle;
+		return other;
+	}
+
+	/**
+	 * @return the lexicographic rank of an r-combination (sorted in increasing order)
+	 */
+	public long rank(int[] combination) {
+		long rank = 0;
+		int j = 0;
+		for (int i = 0; i < r; i++) {
+			for (; j < combination[i]; j++)
+				rank += binomial[n - 1 - j][r - 1 - i];
+			j++;
+		}
+		return rank;
+	}
+
+	/**
+	 * Computes the combination with the given lexicographic rank
+	 *
+	 * @param combination OUT: array of size r
+	 */
+	public void unrank(long rank, int[] combination) {
+		int j = 0;
+		for (int i = 0; i < r; i++) {
+			long b;
+			while (rank >= (b = binomial[n - 1 - j][r - 1 - i])) {
+				rank -= b;
+				j++;
+			}
+			combination[i] = j++;
+		}
+	}
+
+	/**
+	 * Pascal's triangle up to C(n, r), detecting overflows. Only the entries C(i, k) with
+	 * i - k <= n - r are needed (and computed), all of them being bounded by C(n, r).
+	 */
+	private static long[][] binomials(int n, int r) {
+		if (n < 0 || r < 0 || r > n)
+			throw new IllegalArgumentException();
+		long[][] binomial = new long[n + 1][r + 1];
+		for (int i = 0; i <= n; i++) {
+			if (i <= n - r)
+				binomial[i][0] = 1;
+			for (int k = Math.max(1, i - (n - r)); k <= Math.min(i, r); k++) {
+				long sum = binomial[i - 1][k - 1] + binomial[i - 1][k];
+				if (sum < 0)
+					throw new IllegalArgumentException("Too many combinations: C(" + n + ", " + r + ")");
+				binomial[i][k] = sum;
+			}
+		}
+		return binomial;
+	}
+}
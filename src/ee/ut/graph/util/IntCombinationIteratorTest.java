@@ -0,0 +1,51 @@
+package ee.ut.graph.util;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class IntCombinationIteratorTest extends TestCase {
+	public void testSameOrderAsCombinationGenerator() {
+		for (int n = 1; n <= 7; n++)
+			for (int r = 0; r <= n; r++) {
+				CombinationGenerator gen = new CombinationGenerator(n, r);
+				IntCombinationIterator it = new IntCombinationIterator(n, r);
+				assertEquals(gen.getTotal().longValue(), it.getNumLeft());
+				long rank = 0;
+				while (gen.hasMore()) {
+					assertTrue(it.hasNext());
+					int[] comb = it.next();
+					assertTrue(Arrays.equals(gen.getNext(), comb));
+					assertEquals(rank, it.rank(comb));
+					int[] unranked = new int[r];
+					it.unrank(rank++, unranked);
+					assertTrue(Arrays.equals(comb, unranked));
+				}
+				assertFalse(it.hasNext());
+			}
+	}
+
+	public void testSplit() {
+		IntCombinationIterator it = new IntCombinationIterator(10, 4);
+		IntCombinationIterator other = it.split();
+		long count = 0;
+		long last = -1;
+		for (IntCombinationIterator part: new IntCombinationIterator[] {it, other})
+			while (part.hasNext()) {
+				long rank = part.rank(part.next());
+				assertEquals(last + 1, rank);
+				last = rank;
+				count++;
+			}
+		assertEquals(210, count);
+	}
+
+	public void testLargeCount() {
+		assertEquals(90858768L, IntCombinationIterator.count(66, 60));
+		try {
+			IntCombinationIterator.count(100, 50);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
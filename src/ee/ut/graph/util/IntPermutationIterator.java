@@ -0,0 +1,144 @@
+package ee.ut.graph.util;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Enumerates the permutations of {0, ..., n-1} in lexicographic order (i.e. the same order as
+ * PermutationGenerator), using long counters instead of BigInteger. Hence, n is limited to 20.
+ *
+ * The enumeration can be restricted to a range of ranks and split, such that the permutations can
+ * be explored in parallel (e.g. within a fork-join task). The array returned by next() is reused
+ * by the iterator: callers must copy it if they need to keep it.
+ */
+public class IntPermutationIterator {
+	public static final int MAX_SIZE = 20;
+
+	private static final long[] FACTORIALS = new long[MAX_SIZE + 1];
+	static {
+		FACTORIALS[0] = 1;
+		for (int i = 1; i <= MAX_SIZE; i++)
+			FACTORIALS[i] = FACTORIALS[i - 1] * i;
+	}
+
+	private final int n;
+	private final int[] a;
+	private long next;
+	private long end;
+	private boolean started;
+
+	/**
+	 * Iterates over all the permutations of {0, ..., n-1}
+	 */
+	public IntPermutationIterator(int n) {
+		this(n, 0, count(n));
+	}
+
+	/**
+	 * Iterates over the permutations of {0, ..., n-1} whose rank is in [from, to)
+	 */
+	public IntPermutationIterator(int n, long from, long to) {
+		long total = count(n);
+		if (from < 0 || from > to || to > total)
+			throw new IllegalArgumentException("Invalid range [" + from + ", " + to + ") for " + total + " permutations");
+		this.n = n;
+		this.a = new int[n];
+		this.next = from;
+		this.end = to;
+		if (from < to)
+			unrank(from, a);
+	}
+
+	/**
+	 * @return number of permutations of n elements
+	 */
+	public static long count(int n) {
+		if (n < 1 || n > MAX_SIZE)
+			throw new IllegalArgumentException("Size must be in [1, " + MAX_SIZE + "]");
+		return FACTORIALS[n];
+	}
+
+	public boolean hasNext() {
+		return next < end;
+	}
+
+	/**
+	 * @return number of permutations not yet generated
+	 */
+	public long getNumLeft() {
+		return end - next;
+	}
+
+	public int[] next() {
+		if (next >= end)
+			throw new NoSuchElementException();
+		if (started) {
+			// algorithm from Rosen p. 284
+			int j = n - 2;
+			while (a[j] > a[j + 1])
+				j--;
+			int k = n - 1;
+			while (a[j] > a[k])
+				k--;
+			swap(j, k);
+			for (int r = n - 1, s = j + 1; r > s; r--, s++)
+				swap(r, s);
+		} else
+			started = true;
+		next++;
+		return a;
+	}
+
+	private void swap(int i, int j) {
+		int temp = a[i];
+		a[i] = a[j];
+		a[j] = temp;
+	}
+
+	/**
+	 * Splits the remaining permutations: the iterator keeps the first half and the second half
+	 * is returned as a new iterator (null if there are less than two permutations left).
+	 */
+	public IntPermutationIterator split() {
+		long left = end - next;
+		if (left < 2) return null;
+		long middle = next + left / 2;
+		IntPermutationIterator other = new IntPermutationIterator(n, middle, end);
+		end = middle;
+		return other;
+	}
+
+	/**
+	 * @return the lexicographic rank of a permutation of {0, ..., n-1}
+	 */
+	public long rank(int[] permutation) {
+		long rank = 0;
+		int used = 0;
+		for (int i = 0; i < n; i++) {
+			// number of unused elements smaller than permutation[i]
+			int smaller = permutation[i] - Integer.bitCount(used & ((1 << permutation[i]) - 1));
+			rank += smaller * FACTORIALS[n - 1 - i];
+			used |= 1 << permutation[i];
+		}
+		return rank;
+	}
+
+	/**
+	 * Computes the permutation with the given lexicographic rank
+	 *
+	 * @param permutation OUT: array of size n
+	 */
+	public void unrank(long rank, int[] permutation) {
+		int used = 0;
+		for (int i = 0; i < n; i++) {
+			long f = FACTORIALS[n - 1 - i];
+			int smaller = (int) (rank / f);
+			rank %= f;
+			// select the (smaller + 1)-th unused element
+			int e = -1;
+			for (int k = 0; k <= smaller; k++)
+				do e++; while ((used & (1 << e)) != 0);
+			permutation[i] = e;
+			used |= 1 << e;
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package ee.ut.graph.util;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class IntPermutationIteratorTest extends TestCase {
+	public void testSameOrderAsPermutationGenerator() {
+		for (int n = 1; n <= 6; n++) {
+			PermutationGenerator gen = new PermutationGenerator(n);
+			IntPermutationIterator it = new IntPermutationIterator(n);
+			assertEquals(gen.getTotal().longValue(), it.getNumLeft());
+			long rank = 0;
+			while (gen.hasMore()) {
+				assertTrue(it.hasNext());
+				int[] perm = it.next();
+				assertTrue(Arrays.equals(gen.getNext(), perm));
+				assertEquals(rank, it.rank(perm));
+				int[] unranked = new int[n];
+				it.unrank(rank++, unranked);
+				assertTrue(Arrays.equals(perm, unranked));
+			}
+			assertFalse(it.hasNext());
+		}
+	}
+
+	public void testSplit() {
+		IntPermutationIterator it = new IntPermutationIterator(5);
+		IntPermutationIterator other = it.split();
+		IntPermutationIterator third = other.split();
+		long count = 0;
+		long last = -1;
+		for (IntPermutationIterator part: new IntPermutationIterator[] {it, other, third})
+			while (part.hasNext()) {
+				long rank = part.rank(part.next());
+				assertEquals(last + 1, rank);
+				last = rank;
+				count++;
+			}
+		assertEquals(120, count);
+	}
+
+	public void testRange() {
+		IntPermutationIterator it = new IntPermutationIterator(20, 2432902008176639999L, 2432902008176640000L);
+		int[] last = it.next();
+		for (int i = 0; i < 20; i++)
+			assertEquals(19 - i, last[i]);
+		assertFalse(it.hasNext());
+	}
+}
@@ -0,0 +1,124 @@
+package ee.ut.graph.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tarjan's algorithm for the strongly connected components of a directed graph, in O(n + e).
+ *
+ * The vertices are {0, ..., n-1} and the depth-first search uses an explicit stack, hence the size
+ * of the graph is not bounded by the call stack. Tarjan's algorithm completes the components in
+ * reverse topological order: they are returned in topological order, i.e. if there is an edge from
+ * a component to another one, the former comes first.
+ */
+public class StronglyConnectedComponents {
+
+	/**
+	 * Successor function of a graph whose vertices are arbitrary objects
+	 */
+	public interface Successors<V> {
+		Collection<? extends V> successors(V vertex);
+	}
+
+	/**
+	 * @param successors successors[v] are the successors of vertex v
+	 * @return strongly connected components, in topological order
+	 */
+	public static List<int[]> compute(int[][] successors) {
+		int n = successors.length;
+		List<int[]> result = new ArrayList<int[]>();
+		int[] order = new int[n];
+		int[] low = new int[n];
+		int[] next = new int[n];
+		boolean[] onStack = new boolean[n];
+		int[] component = new int[n];
+		int[] path = new int[n];
+		int counter = 1, top = 0, depth = 0;
+
+		for (int root = 0; root < n; root++) {
+			if (order[root] != 0) continue;
+			order[root] = low[root] = counter++;
+			component[top++] = root;
+			onStack[root] = true;
+			path[depth++] = root;
+
+			while (depth > 0) {
+				int v = path[depth - 1];
+				if (next[v] < successors[v].length) {
+					int w = successors[v][next[v]++];
+					if (order[w] == 0) {
+						order[w] = low[w] = counter++;
+						component[top++] = w;
+						onStack[w] = true;
+						path[depth++] = w;
+					} else if (onStack[w] && order[w] < low[v])
+						low[v] = order[w];
+				} else {
+					depth--;
+					if (depth > 0 && low[v] < low[path[depth - 1]])
+						low[path[depth - 1]] = low[v];
+					if (low[v] == order[v]) {
+						int from = top;
+						do onStack[component[--from]] = false; while (component[from] != v);
+						int[] scc = new int[top - from];
+						System.arraycopy(component, from, scc, 0, scc.length);
+						result.add(scc);
+						top = from;
+					}
+				}
+			}
+		}
+		Collections.reverse(result);
+		return result;
+	}
+
+	/**
+	 * Computes the strongly connected components of a graph whose vertices are arbitrary objects.
+	 * Successors that are not in "vertices" are ignored, hence the components of a subgraph can be
+	 * computed without building it.
+	 *
+	 * @return strongly connected components, in topological order
+	 */
+	public static <V> List<Set<V>> compute(Collection<? extends V> vertices, Successors<V> graph) {
+		List<V> index = new ArrayList<V>(vertices);
+		Map<V, Integer> ids = new HashMap<V, Integer>();
+		for (V v: index)
+			ids.put(v, ids.size());
+
+		int[][] successors = new int[index.size()][];
+		int[] buffer = new int[index.size()];
+		for (int v = 0; v < successors.length; v++) {
+			int size = 0;
+			for (V w: graph.successors(index.get(v))) {
+				Integer id = ids.get(w);
+				if (id != null) {
+					if (size == buffer.length) buffer = grow(buffer);
+					buffer[size++] = id;
+				}
+			}
+			successors[v] = new int[size];
+			System.arraycopy(buffer, 0, successors[v], 0, size);
+		}
+
+		List<Set<V>> result = new ArrayList<Set<V>>();
+		for (int[] scc: compute(successors)) {
+			Set<V> component = new LinkedHashSet<V>();
+			for (int v: scc)
+				component.add(index.get(v));
+			result.add(component);
+		}
+		return result;
+	}
+
+	private static int[] grow(int[] buffer) {
+		int[] result = new int[buffer.length * 2 + 1];
+		System.arraycopy(buffer, 0, result, 0, buffer.length);
+		return result;
+	}
+}
@@ -0,0 +1,44 @@
+package ee.ut.graph.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class StronglyConnectedComponentsTest extends TestCase {
+	public void testTopologicalOrder() {
+		// 0 -> {1 <-> 2} -> 3 -> {4 <-> 5 <-> 6}, 2 -> 4
+		int[][] successors = {{1}, {2}, {1, 3, 4}, {4}, {5}, {6}, {4}};
+		List<int[]> sccs = StronglyConnectedComponents.compute(successors);
+		assertEquals(4, sccs.size());
+		int[] component = new int[successors.length];
+		for (int i = 0; i < sccs.size(); i++)
+			for (int v: sccs.get(i))
+				component[v] = i;
+		assertTrue(Arrays.equals(new int[] {0, 1, 1, 2, 3, 3, 3}, component));
+	}
+
+	public void testSelfLoopsAndIsolatedVertices() {
+		int[][] successors = {{0}, {}, {1}};
+		List<int[]> sccs = StronglyConnectedComponents.compute(successors);
+		assertEquals(3, sccs.size());
+		int first = -1, second = -1;
+		for (int i = 0; i < sccs.size(); i++) {
+			assertEquals(1, sccs.get(i).length);
+			if (sccs.get(i)[0] == 2) first = i;
+			if (sccs.get(i)[0] == 1) second = i;
+		}
+		assertTrue(first < second);
+	}
+
+	public void testLongPath() {
+		// a cycle deep enough to overflow a recursive search
+		int n = 200000;
+		int[][] successors = new int[n][];
+		for (int v = 0; v < n; v++)
+			successors[v] = new int[] {(v + 1) % n};
+		List<int[]> sccs = StronglyConnectedComponents.compute(successors);
+		assertEquals(1, sccs.size());
+		assertEquals(n, sccs.get(0).length);
+	}
+}